@@ -8,11 +8,16 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
-@Table(name = "account")
+@Table(name = "account",
+        uniqueConstraints = @UniqueConstraint(name = "ux_account_last_name", columnNames = "last_name"),
+        indexes = @Index(name = "ix_account_first_name", columnList = "first_name"))
 public class Account {
 
+    public static final String DEFAULT_TIER = "standard";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 50)
     private int id;
 
     @Column(name = "balance")
@@ -27,6 +32,16 @@ public class Account {
     @Column(name = "notification_preference")
     private String notificationPreference;
 
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    @Column(name = "balance_slots")
+    private int balanceSlots;
+
+    @Column(name = "tier")
+    private String tier = DEFAULT_TIER;
+
     @OneToMany(mappedBy = "account")
     private List<Transaction> transactionList;
 
@@ -78,6 +93,30 @@ public class Account {
         this.notificationPreference = notificationPreference;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    public void setBalanceSlots(int balanceSlots) {
+        this.balanceSlots = balanceSlots;
+    }
+
+    public boolean isSplitBalance() {
+        return balanceSlots > 0;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
 //    public List<Transaction> getTransactionList() {
 //        return transactionList;
 //    }
@@ -0,0 +1,136 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Running deposit and withdrawal aggregates of one account for one calendar month, kept up to date by every
+ * posting so statistics never need to be computed from the transaction history.
+ *
+ * The aggregates of an account whose balance is split across slots are striped the same way, over as many rows as
+ * it has slots, so its concurrent postings do not all update one row. The aggregates of a month are the sum of its
+ * stripes.
+ */
+@Entity
+@Table(name = "account_monthly_stats",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "period", "stripe"}))
+public class AccountMonthlyStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+
+    @Column(name = "account_id")
+    private int accountId;
+
+    /**
+     * The month, formatted as yyyy-MM
+     */
+    @Column(name = "period", length = 7)
+    private String period;
+
+    @Column(name = "stripe")
+    private int stripe;
+
+    @Column(name = "deposit_count")
+    private long depositCount;
+
+    @Column(name = "deposit_total")
+    private BigDecimal depositTotal;
+
+    @Column(name = "withdrawal_count")
+    private long withdrawalCount;
+
+    @Column(name = "withdrawal_total")
+    private BigDecimal withdrawalTotal;
+
+    public AccountMonthlyStats() {}
+
+    public AccountMonthlyStats(int accountId, String period) {
+        this(accountId, period, 0);
+    }
+
+    public AccountMonthlyStats(int accountId, String period, int stripe) {
+        this.accountId = accountId;
+        this.period = period;
+        this.stripe = stripe;
+        this.depositTotal = BigDecimal.ZERO;
+        this.withdrawalTotal = BigDecimal.ZERO;
+    }
+
+    public void addDeposits(long count, BigDecimal total) {
+        depositCount += count;
+        depositTotal = depositTotal.add(total);
+    }
+
+    public void addWithdrawals(long count, BigDecimal total) {
+        withdrawalCount += count;
+        withdrawalTotal = withdrawalTotal.add(total);
+    }
+
+    public void add(AccountMonthlyStats other) {
+        addDeposits(other.depositCount, other.depositTotal);
+        addWithdrawals(other.withdrawalCount, other.withdrawalTotal);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public long getDepositCount() {
+        return depositCount;
+    }
+
+    public BigDecimal getDepositTotal() {
+        return depositTotal;
+    }
+
+    public long getWithdrawalCount() {
+        return withdrawalCount;
+    }
+
+    public BigDecimal getWithdrawalTotal() {
+        return withdrawalTotal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AccountMonthlyStats)) return false;
+        AccountMonthlyStats that = (AccountMonthlyStats) o;
+        return accountId == that.accountId &&
+                stripe == that.stripe &&
+                Objects.equals(period, that.period);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, period, stripe);
+    }
+
+    @Override
+    public String toString() {
+        return "AccountMonthlyStats{" +
+                "accountId=" + accountId +
+                ", period='" + period + '\'' +
+                ", stripe=" + stripe +
+                ", depositCount=" + depositCount +
+                ", depositTotal=" + depositTotal +
+                ", withdrawalCount=" + withdrawalCount +
+                ", withdrawalTotal=" + withdrawalTotal +
+                '}';
+    }
+}
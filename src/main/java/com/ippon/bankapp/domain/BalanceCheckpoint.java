@@ -0,0 +1,54 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Closing balance of an account at the end of a day it was posted to, so the balance at any past date is the
+ * latest checkpoint before it plus the few postings since.
+ */
+@Entity
+@Table(name = "balance_checkpoint",
+        uniqueConstraints = @UniqueConstraint(name = "ux_balance_checkpoint_account_date",
+                columnNames = {"account_id", "date"}))
+public class BalanceCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_checkpoint_seq")
+    @SequenceGenerator(name = "balance_checkpoint_seq", sequenceName = "balance_checkpoint_seq", allocationSize = 50)
+    private int id;
+
+    @Column(name = "account_id")
+    private int accountId;
+
+    @Column(name = "date")
+    private LocalDate date;
+
+    @Column(name = "balance")
+    private BigDecimal balance;
+
+    public BalanceCheckpoint() {}
+
+    public BalanceCheckpoint(int accountId, LocalDate date, BigDecimal balance) {
+        this.accountId = accountId;
+        this.date = date;
+        this.balance = balance;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
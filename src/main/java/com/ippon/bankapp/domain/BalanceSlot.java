@@ -0,0 +1,87 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * One share of the balance of a split-balance account. The account balance is the sum of its slots, and each slot
+ * row is updated independently so concurrent postings do not all contend on the same row.
+ */
+@Entity
+@Table(name = "balance_slot",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "slot"}))
+public class BalanceSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+
+    @Column(name = "account_id")
+    private int accountId;
+
+    @Column(name = "slot")
+    private int slot;
+
+    @Column(name = "balance")
+    private BigDecimal balance;
+
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    public BalanceSlot() {}
+
+    public BalanceSlot(int accountId, int slot, BigDecimal balance) {
+        this.accountId = accountId;
+        this.slot = slot;
+        this.balance = balance;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BalanceSlot)) return false;
+        BalanceSlot that = (BalanceSlot) o;
+        return accountId == that.accountId &&
+                slot == that.slot;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, slot);
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceSlot{" +
+                "accountId=" + accountId +
+                ", slot=" + slot +
+                ", balance=" + balance +
+                '}';
+    }
+}
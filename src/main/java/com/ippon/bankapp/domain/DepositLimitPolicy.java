@@ -0,0 +1,67 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Deposit limits of one account tier. A limit left empty does not apply.
+ */
+@Entity
+@Table(name = "deposit_limit_policy")
+public class DepositLimitPolicy {
+
+    @Id
+    @Column(name = "tier")
+    private String tier;
+
+    @Column(name = "per_transaction_limit")
+    private BigDecimal perTransactionLimit;
+
+    @Column(name = "daily_limit")
+    private BigDecimal dailyLimit;
+
+    @Column(name = "weekly_limit")
+    private BigDecimal weeklyLimit;
+
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    public DepositLimitPolicy() {}
+
+    public DepositLimitPolicy(String tier) {
+        this.tier = tier;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public BigDecimal getPerTransactionLimit() {
+        return perTransactionLimit;
+    }
+
+    public void setPerTransactionLimit(BigDecimal perTransactionLimit) {
+        this.perTransactionLimit = perTransactionLimit;
+    }
+
+    public BigDecimal getDailyLimit() {
+        return dailyLimit;
+    }
+
+    public void setDailyLimit(BigDecimal dailyLimit) {
+        this.dailyLimit = dailyLimit;
+    }
+
+    public BigDecimal getWeeklyLimit() {
+        return weeklyLimit;
+    }
+
+    public void setWeeklyLimit(BigDecimal weeklyLimit) {
+        this.weeklyLimit = weeklyLimit;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ippon.bankapp.domain;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Running totals credited to one account on its latest day and over that day's week, counted against the deposit
+ * limits of its tier. A total whose day or week has passed counts as zero, and is restarted by the next credit.
+ *
+ * Kept apart from the account so credits check and count their limits without updating the account row; see
+ * {@link com.ippon.bankapp.service.limits.DepositUsageTracker}.
+ */
+@Entity
+@Table(name = "deposit_usage")
+public class DepositUsage implements Persistable<Integer> {
+
+    @Id
+    @Column(name = "account_id")
+    private int accountId;
+
+    @Column(name = "usage_day")
+    private LocalDate day;
+
+    @Column(name = "day_total")
+    private BigDecimal dayTotal;
+
+    /**
+     * The Monday of the week of the day
+     */
+    @Column(name = "week_start")
+    private LocalDate weekStart;
+
+    @Column(name = "week_total")
+    private BigDecimal weekTotal;
+
+    /**
+     * The id is the account's, so whether the totals are new cannot be told from it
+     */
+    @Transient
+    private boolean stored;
+
+    public DepositUsage() {}
+
+    public DepositUsage(int accountId, LocalDate day, BigDecimal dayTotal, LocalDate weekStart, BigDecimal weekTotal) {
+        this.accountId = accountId;
+        this.day = day;
+        this.dayTotal = dayTotal;
+        this.weekStart = weekStart;
+        this.weekTotal = weekTotal;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+
+    @Override
+    public Integer getId() {
+        return accountId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public BigDecimal getDayTotal() {
+        return dayTotal;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public BigDecimal getWeekTotal() {
+        return weekTotal;
+    }
+
+    @Override
+    public String toString() {
+        return "DepositUsage{" +
+                "accountId=" + accountId +
+                ", day=" + day +
+                ", dayTotal=" + dayTotal +
+                ", weekStart=" + weekStart +
+                ", weekTotal=" + weekTotal +
+                '}';
+    }
+}
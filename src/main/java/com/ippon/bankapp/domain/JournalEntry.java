@@ -0,0 +1,125 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One deposit, withdrawal or transfer, posted as balanced legs: the amounts of its {@link Transaction legs} add up
+ * to zero. A leg credits its account with a positive amount and debits it with a negative one. Deposits and
+ * withdrawals are balanced by a leg without an account, standing for the bank's cash book.
+ *
+ * The legs are saved with their entry.
+ */
+@Entity
+@Table(name = "journal_entry")
+public class JournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "journal_entry_seq")
+    @SequenceGenerator(name = "journal_entry_seq", sequenceName = "journal_entry_seq", allocationSize = 50)
+    private int id;
+
+    @Column(name = "type")
+    private TransactionType type;
+
+    @Column(name = "amount")
+    private BigDecimal amount;
+
+    @Column(name = "date")
+    private LocalDate date;
+
+    @OneToMany(mappedBy = "entry", cascade = CascadeType.PERSIST)
+    private List<Transaction> legs = new ArrayList<>();
+
+    public JournalEntry() {}
+
+    private JournalEntry(TransactionType type, BigDecimal amount) {
+        this.type = type;
+        this.amount = amount;
+        this.date = LocalDate.now();
+    }
+
+    /**
+     * @param account   account deposited into
+     * @param amount    amount deposited
+     * @return          entry moving the amount from the cash book to the account
+     */
+    public static JournalEntry deposit(Account account, BigDecimal amount) {
+        return new JournalEntry(TransactionType.DEPOSIT, amount)
+                .leg(null, amount.negate())
+                .leg(account, amount);
+    }
+
+    /**
+     * @param account   account withdrawn from
+     * @param amount    amount withdrawn
+     * @return          entry moving the amount from the account to the cash book
+     */
+    public static JournalEntry withdrawal(Account account, BigDecimal amount) {
+        return new JournalEntry(TransactionType.WITHDRAWAL, amount)
+                .leg(account, amount.negate())
+                .leg(null, amount);
+    }
+
+    /**
+     * @param from      account transferred from
+     * @param to        account transferred to
+     * @param amount    amount transferred
+     * @return          entry moving the amount between the accounts
+     */
+    public static JournalEntry transfer(Account from, Account to, BigDecimal amount) {
+        return new JournalEntry(TransactionType.TRANSFER, amount)
+                .leg(from, amount.negate())
+                .leg(to, amount);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<Transaction> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * @return  true if the amounts of the legs add up to zero
+     */
+    public boolean isBalanced() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Transaction leg : legs) {
+            sum = sum.add(leg.getAmount());
+        }
+        return sum.signum() == 0;
+    }
+
+    private JournalEntry leg(Account account, BigDecimal legAmount) {
+        legs.add(new Transaction(this, account, legAmount));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{" +
+                "id=" + id +
+                ", type=" + type +
+                ", amount=" + amount +
+                ", legs=" + legs.size() +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A notification waiting in the outbox. It is written in the same transaction as the change it is about and
+ * deleted once the relay has delivered it. One that failed too many attempts is dead-lettered: kept, but no longer
+ * relayed.
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class OutboxNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+
+    @Column(name = "channel")
+    private String channel;
+
+    @Column(name = "source")
+    private String source;
+
+    @Column(name = "destination")
+    private String destination;
+
+    @Column(name = "subject")
+    private String subject;
+
+    @Column(name = "message", length = 2000)
+    private String message;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "claim_token")
+    private String claimToken;
+
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    @Column(name = "dead_lettered_at")
+    private Instant deadLetteredAt;
+
+    public OutboxNotification() {}
+
+    public OutboxNotification(String channel, String source, String destination, String subject, String message) {
+        this.channel = channel;
+        this.source = source;
+        this.destination = destination;
+        this.subject = subject;
+        this.message = message;
+        this.createdAt = Instant.now();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    public Instant getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(Instant claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    public Instant getDeadLetteredAt() {
+        return deadLetteredAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OutboxNotification)) return false;
+        OutboxNotification that = (OutboxNotification) o;
+        return id == that.id &&
+                Objects.equals(channel, that.channel) &&
+                Objects.equals(destination, that.destination);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, channel, destination);
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxNotification{" +
+                "id=" + id +
+                ", channel='" + channel + '\'' +
+                ", destination='" + destination + '\'' +
+                ", subject='" + subject + '\'' +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
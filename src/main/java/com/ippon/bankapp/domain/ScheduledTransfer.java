@@ -0,0 +1,144 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A transfer to be executed at a given time, once or repeatedly (a standing order). The next run time is moved
+ * forward when a run is claimed, so every occurrence runs at most once even across restarts.
+ */
+@Entity
+@Table(name = "scheduled_transfer",
+        indexes = @Index(name = "ix_scheduled_transfer_due", columnList = "active, next_run_at"))
+public class ScheduledTransfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+
+    @Column(name = "from_account_id")
+    private int fromAccountId;
+
+    @Column(name = "to_account_id")
+    private int toAccountId;
+
+    @Column(name = "amount")
+    private BigDecimal amount;
+
+    @Column(name = "next_run_at")
+    private Instant nextRunAt;
+
+    @Column(name = "interval_days")
+    private int intervalDays;
+
+    @Column(name = "active")
+    private boolean active;
+
+    @Column(name = "run_count")
+    private int runCount;
+
+    @Column(name = "failure_count")
+    private int failureCount;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    public ScheduledTransfer() {}
+
+    public ScheduledTransfer(int fromAccountId, int toAccountId, BigDecimal amount, Instant firstRunAt, int intervalDays) {
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.nextRunAt = firstRunAt;
+        this.intervalDays = intervalDays;
+        this.active = true;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getFromAccountId() {
+        return fromAccountId;
+    }
+
+    public int getToAccountId() {
+        return toAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public Instant getNextRunAt() {
+        return nextRunAt;
+    }
+
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+
+    public boolean isRecurring() {
+        return intervalDays > 0;
+    }
+
+    /**
+     * Gets the run time following a given run: one interval later for standing orders, the same time for one-off
+     * transfers, which are deactivated instead
+     *
+     * @param runAt     the run time
+     * @return          the next run time
+     */
+    public Instant nextRunAfter(Instant runAt) {
+        return isRecurring() ? runAt.plus(Duration.ofDays(intervalDays)) : runAt;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ScheduledTransfer)) return false;
+        ScheduledTransfer that = (ScheduledTransfer) o;
+        return id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledTransfer{" +
+                "id=" + id +
+                ", fromAccountId=" + fromAccountId +
+                ", toAccountId=" + toAccountId +
+                ", amount=" + amount +
+                ", nextRunAt=" + nextRunAt +
+                ", intervalDays=" + intervalDays +
+                ", active=" + active +
+                '}';
+    }
+}
@@ -1,45 +1,61 @@
 package com.ippon.bankapp.domain;
 
 import javax.persistence.*;
-import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Objects;
 
+/**
+ * One leg of a {@link JournalEntry}: the amount it credits (positive) or debits (negative) to an account, or to the
+ * bank's cash book when it has no account. The entry's type and date are copied onto the leg, so the per-account
+ * history and limit queries read this table alone.
+ */
 @Entity
-@Table(name = "transaction")
+@Table(name = "transaction",
+        indexes = {
+                @Index(name = "ix_transaction_account_date_type", columnList = "account_id, date, type"),
+                @Index(name = "ix_transaction_date", columnList = "date")})
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private int id;
 
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "journal_entry_id")
+    private JournalEntry entry;
+
     @Column(name = "type")
-    private String type;
+    private TransactionType type;
 
     @Column(name = "amount")
     private BigDecimal amount;
 
     private LocalDate date;
 
-    @NotNull
     @ManyToOne
     private Account account;
 
     public Transaction() {}
 
-    public Transaction(Account account, String type, BigDecimal amount) {
+    Transaction(JournalEntry entry, Account account, BigDecimal amount) {
+        this.entry = entry;
         this.account = account;
-        this.type = type;
+        this.type = entry.getType();
         this.amount = amount;
-        date = LocalDate.now();
+        this.date = entry.getDate();
     }
 
     public int getId() {
         return id;
     }
 
-    public String getType() {
+    public JournalEntry getEntry() {
+        return entry;
+    }
+
+    public TransactionType getType() {
         return type;
     }
 
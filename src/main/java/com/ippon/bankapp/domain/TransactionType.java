@@ -0,0 +1,38 @@
+package com.ippon.bankapp.domain;
+
+/**
+ * Type of a journal entry and of its legs, stored as a stable small code rather than its name or ordinal
+ */
+public enum TransactionType {
+    DEPOSIT((short) 1, "deposit"),
+    WITHDRAWAL((short) 2, "withdraw"),
+    TRANSFER((short) 3, "transfer");
+
+    private final short code;
+    private final String name;
+
+    TransactionType(short code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * @return  name shown in transaction history and balance events
+     */
+    public String getName() {
+        return name;
+    }
+
+    public static TransactionType fromCode(short code) {
+        for (TransactionType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction type code " + code);
+    }
+}
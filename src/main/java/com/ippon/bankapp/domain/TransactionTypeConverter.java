@@ -0,0 +1,21 @@
+package com.ippon.bankapp.domain;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a {@link TransactionType} as its smallint code
+ */
+@Converter(autoApply = true)
+public class TransactionTypeConverter implements AttributeConverter<TransactionType, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionType type) {
+        return type == null ? null : type.getCode();
+    }
+
+    @Override
+    public TransactionType convertToEntityAttribute(Short code) {
+        return code == null ? null : TransactionType.fromCode(code);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ippon.bankapp.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Data source reporting every connection acquisition, statement execution and fetched row to
+ * {@link SqlStatistics}. Connections, statements and result sets are wrapped in JDK proxies that count and then
+ * delegate.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+    public CountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countConnection(super.getConnection(username, password));
+    }
+
+    private static Connection countConnection(Connection connection) {
+        SqlStatistics.connectionAcquired();
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof CallableStatement) {
+                return countStatement(CallableStatement.class, (CallableStatement) result);
+            }
+            if (result instanceof PreparedStatement) {
+                return countStatement(PreparedStatement.class, (PreparedStatement) result);
+            }
+            if (result instanceof Statement) {
+                return countStatement(Statement.class, (Statement) result);
+            }
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S countStatement(Class<S> type, S statement) {
+        return proxy(type, statement, (target, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                SqlStatistics.statementExecuted();
+            }
+            Object result = invoke(target, method, args);
+            if (result instanceof ResultSet) {
+                return countRows((ResultSet) result);
+            }
+            return result;
+        });
+    }
+
+    private static ResultSet countRows(ResultSet resultSet) {
+        return proxy(ResultSet.class, resultSet, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                SqlStatistics.rowFetched();
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, TargetInvocationHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+        return (T) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface TargetInvocationHandler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ippon.bankapp.monitoring;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application data source in a {@link CountingDataSource}. Disabled with
+ * {@code bankapp.sql-statistics.enabled=false}, and not registered in the prod profile
+ */
+@Component
+@Profile("!prod")
+@ConditionalOnProperty(name = "bankapp.sql-statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class CountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
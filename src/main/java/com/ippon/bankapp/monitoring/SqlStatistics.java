@@ -0,0 +1,86 @@
+package com.ippon.bankapp.monitoring;
+
+/**
+ * Counts the SQL statements, fetched rows and connection acquisitions made by the current thread while a scope is
+ * open. Scopes nest: counts are added to the innermost scope and every scope enclosing it.
+ *
+ * <pre>
+ * try (SqlStatistics statistics = SqlStatistics.open()) {
+ *     accountService.deposit("Scott", BigDecimal.TEN);
+ *     assertThat(statistics.getStatements(), lessThanOrEqualTo(5L));
+ * }
+ * </pre>
+ */
+public final class SqlStatistics implements AutoCloseable {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private final SqlStatistics parent;
+
+    private long statements;
+    private long rows;
+    private long connections;
+
+    private SqlStatistics(SqlStatistics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a scope on the current thread
+     *
+     * @return  the scope, to be closed on the same thread
+     */
+    public static SqlStatistics open() {
+        SqlStatistics statistics = new SqlStatistics(CURRENT.get());
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    static void statementExecuted() {
+        for (SqlStatistics scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statements++;
+        }
+    }
+
+    static void rowFetched() {
+        for (SqlStatistics scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.rows++;
+        }
+    }
+
+    static void connectionAcquired() {
+        for (SqlStatistics scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.connections++;
+        }
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getConnections() {
+        return connections;
+    }
+
+    @Override
+    public void close() {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SqlStatistics{" +
+                "statements=" + statements +
+                ", rows=" + rows +
+                ", connections=" + connections +
+                '}';
+    }
+}
@@ -0,0 +1,89 @@
+package com.ippon.bankapp.monitoring;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Reports the SQL work done by each request in the X-Sql-Statements, X-Sql-Rows and X-Sql-Connections response
+ * headers. The headers are written when the response body is first opened, so work done while streaming the body
+ * is not included. Not registered in the prod profile
+ */
+@Component
+@Profile("!prod")
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String ROWS_HEADER = "X-Sql-Rows";
+    public static final String CONNECTIONS_HEADER = "X-Sql-Connections";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            StatisticsResponse statisticsResponse = new StatisticsResponse(response, statistics);
+            filterChain.doFilter(request, statisticsResponse);
+            statisticsResponse.writeHeaders();
+        }
+    }
+
+    private static class StatisticsResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatistics statistics;
+        private boolean headersWritten;
+
+        StatisticsResponse(HttpServletResponse response, SqlStatistics statistics) {
+            super(response);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        void writeHeaders() {
+            if (headersWritten || isCommitted()) {
+                return;
+            }
+            headersWritten = true;
+            setHeader(STATEMENTS_HEADER, Long.toString(statistics.getStatements()));
+            setHeader(ROWS_HEADER, Long.toString(statistics.getRows()));
+            setHeader(CONNECTIONS_HEADER, Long.toString(statistics.getConnections()));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.AccountMonthlyStats;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountMonthlyStatsRepository extends CrudRepository<AccountMonthlyStats, Integer> {
+
+    /**
+     * Inserts aggregates and flushes straight away, so a row inserted concurrently is reported by the unique index to
+     * the caller instead of at commit
+     */
+    AccountMonthlyStats saveAndFlush(AccountMonthlyStats stats);
+
+    List<AccountMonthlyStats> findAllByAccountIdOrderByPeriod(int accountId);
+
+    @Modifying
+    @Query("update AccountMonthlyStats s " +
+            "set s.depositCount = s.depositCount + :count, s.depositTotal = s.depositTotal + :total " +
+            "where s.accountId = :accountId and s.period = :period and s.stripe = :stripe")
+    int addDeposits(@Param("accountId") int accountId,
+                    @Param("period") String period,
+                    @Param("stripe") int stripe,
+                    @Param("count") long count,
+                    @Param("total") BigDecimal total);
+
+    @Modifying
+    @Query("update AccountMonthlyStats s " +
+            "set s.withdrawalCount = s.withdrawalCount + :count, s.withdrawalTotal = s.withdrawalTotal + :total " +
+            "where s.accountId = :accountId and s.period = :period and s.stripe = :stripe")
+    int addWithdrawals(@Param("accountId") int accountId,
+                       @Param("period") String period,
+                       @Param("stripe") int stripe,
+                       @Param("count") long count,
+                       @Param("total") BigDecimal total);
+}
@@ -2,15 +2,64 @@ package com.ippon.bankapp.repository;
 
 
 import com.ippon.bankapp.domain.Account;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface AccountRepository  extends CrudRepository<Account, Integer> {
+
+    String SELECT_VIEW = "select new com.ippon.bankapp.repository.AccountView(" +
+            "a.id, a.firstName, a.lastName, a.balance, a.notificationPreference, a.balanceSlots, a.version, a.tier) " +
+            "from Account a ";
 
-public interface AccountRepository  extends CrudRepository<Account, String> {
+    /**
+     * Inserts or updates an account and flushes straight away, so a duplicate last name is reported by the unique
+     * index to the caller instead of at commit
+     */
+    Account saveAndFlush(Account account);
 
     Optional<Account> findByLastName(String lastName);
 
     Optional<Account> findByFirstName(String firstName);
 
-    Optional<Account> findById(int id);
+    @Query("select a.id from Account a where a.lastName = :lastName")
+    Optional<Integer> findIdByLastName(@Param("lastName") String lastName);
+
+    @Query(SELECT_VIEW + "where a.id = :id")
+    Optional<AccountView> findViewById(@Param("id") int id);
+
+    @Query(SELECT_VIEW + "where a.lastName = :lastName")
+    Optional<AccountView> findViewByLastName(@Param("lastName") String lastName);
+
+    @Query(SELECT_VIEW + "where a.firstName = :firstName")
+    Optional<AccountView> findViewByFirstName(@Param("firstName") String firstName);
+
+    @Query(SELECT_VIEW + "where a.lastName in :lastNames")
+    List<AccountView> findAllViewsByLastNameIn(@Param("lastNames") Collection<String> lastNames);
+
+    @Query("select a.id from Account a order by a.id")
+    List<Integer> findAllIds();
+
+    /**
+     * Reads the page of accounts following a cursor, a range read of the primary key whatever the page number
+     */
+    @Query(SELECT_VIEW + "where a.id > :after order by a.id")
+    List<AccountView> findViewsAfter(@Param("after") int after, Pageable pageable);
+
+    /**
+     * Streams every account in id order through a forward-only cursor fetching a few hundred rows at a time. Must be
+     * read in a transaction and closed
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(SELECT_VIEW + "order by a.id")
+    Stream<AccountView> streamAllViews();
 }
@@ -0,0 +1,82 @@
+package com.ippon.bankapp.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only row of the account table, selected directly by read queries instead of hydrating a managed
+ * {@link com.ippon.bankapp.domain.Account}
+ */
+public class AccountView {
+
+    private final int id;
+    private final String firstName;
+    private final String lastName;
+    private final BigDecimal balance;
+    private final String notificationPreference;
+    private final int balanceSlots;
+    private final long version;
+    private final String tier;
+
+    public AccountView(int id,
+                       String firstName,
+                       String lastName,
+                       BigDecimal balance,
+                       String notificationPreference,
+                       int balanceSlots,
+                       long version,
+                       String tier) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.balance = balance;
+        this.notificationPreference = notificationPreference;
+        this.balanceSlots = balanceSlots;
+        this.version = version;
+        this.tier = tier;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public String getNotificationPreference() {
+        return notificationPreference;
+    }
+
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    public boolean isSplitBalance() {
+        return balanceSlots > 0;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountView{" +
+                "id=" + id +
+                ", firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                '}';
+    }
+}
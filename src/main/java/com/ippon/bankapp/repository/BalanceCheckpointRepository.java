@@ -0,0 +1,26 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.BalanceCheckpoint;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface BalanceCheckpointRepository extends CrudRepository<BalanceCheckpoint, Integer> {
+
+    /**
+     * Finds the latest checkpoint of an account up to a day, served by the (account_id, date) unique index
+     */
+    Optional<BalanceCheckpoint> findFirstByAccountIdAndDateLessThanEqualOrderByDateDesc(int accountId, LocalDate date);
+
+    @Query("select max(c.date) from BalanceCheckpoint c")
+    Optional<LocalDate> findLatestDate();
+
+    @Modifying
+    @Query("delete from BalanceCheckpoint c")
+    int deleteAllInBulk();
+}
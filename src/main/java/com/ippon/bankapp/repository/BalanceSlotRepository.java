@@ -0,0 +1,53 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.BalanceSlot;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface BalanceSlotRepository extends CrudRepository<BalanceSlot, Integer> {
+
+    @Modifying
+    @Query("update versioned BalanceSlot s set s.balance = s.balance + :amount " +
+            "where s.accountId = :accountId and s.slot = :slot")
+    int credit(@Param("accountId") int accountId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    /**
+     * Takes an amount out of a slot only if the slot alone covers it, so a slot never goes negative
+     */
+    @Modifying
+    @Query("update versioned BalanceSlot s set s.balance = s.balance - :amount " +
+            "where s.accountId = :accountId and s.slot = :slot and s.balance >= :amount")
+    int debit(@Param("accountId") int accountId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    @Query("select coalesce(sum(s.balance), 0) as balance, coalesce(sum(s.version), 0) as version " +
+            "from BalanceSlot s where s.accountId = :accountId")
+    SlotTotals findTotalsByAccountId(@Param("accountId") int accountId);
+
+    /**
+     * Reads the balance of each slot of an account, in slot order
+     */
+    @Query("select s.slot as slot, s.balance as balance from BalanceSlot s " +
+            "where s.accountId = :accountId order by s.slot")
+    List<SlotBalance> findBalancesByAccountId(@Param("accountId") int accountId);
+
+    interface SlotTotals {
+
+        BigDecimal getBalance();
+
+        long getVersion();
+    }
+
+    interface SlotBalance {
+
+        int getSlot();
+
+        BigDecimal getBalance();
+    }
+}
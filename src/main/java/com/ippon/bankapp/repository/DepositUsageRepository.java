@@ -0,0 +1,42 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.DepositUsage;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Repository
+public interface DepositUsageRepository extends CrudRepository<DepositUsage, Integer> {
+
+    /**
+     * Inserts totals and flushes straight away, so totals inserted concurrently are reported by the primary key to the
+     * caller instead of at commit
+     */
+    DepositUsage saveAndFlush(DepositUsage usage);
+
+    /**
+     * Adds a credit to the totals of an account, restarting a total whose day or week has passed, only if both stay
+     * within their limits. The limits are checked against the totals as committed by concurrent credits
+     *
+     * @return  1 if the totals were updated, 0 if a total would have gone over its limit
+     */
+    @Modifying
+    @Query("update DepositUsage u set " +
+            "u.dayTotal = (case when u.day = :day then u.dayTotal else 0 end) + :amount, " +
+            "u.weekTotal = (case when u.weekStart = :weekStart then u.weekTotal else 0 end) + :amount, " +
+            "u.day = :day, u.weekStart = :weekStart " +
+            "where u.accountId = :accountId " +
+            "and (case when u.day = :day then u.dayTotal else 0 end) + :amount <= :dailyLimit " +
+            "and (case when u.weekStart = :weekStart then u.weekTotal else 0 end) + :amount <= :weeklyLimit")
+    int addWithinLimits(@Param("accountId") int accountId,
+                        @Param("day") LocalDate day,
+                        @Param("weekStart") LocalDate weekStart,
+                        @Param("amount") BigDecimal amount,
+                        @Param("dailyLimit") BigDecimal dailyLimit,
+                        @Param("weeklyLimit") BigDecimal weeklyLimit);
+}
@@ -0,0 +1,9 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.JournalEntry;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JournalEntryRepository extends CrudRepository<JournalEntry, Integer> {
+}
@@ -0,0 +1,69 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxNotificationRepository extends CrudRepository<OutboxNotification, Integer> {
+
+    @Query("select n.id from OutboxNotification n where n.deadLetteredAt is null " +
+            "and (n.claimedUntil is null or n.claimedUntil < :now) order by n.id")
+    List<Integer> findClaimableIds(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Claims the given notifications for a relay, skipping the ones another relay claimed in the meantime
+     */
+    @Modifying
+    @Query("update OutboxNotification n set n.claimToken = :token, n.claimedUntil = :until " +
+            "where n.id in :ids and n.deadLetteredAt is null and (n.claimedUntil is null or n.claimedUntil < :now)")
+    int claim(@Param("ids") Collection<Integer> ids,
+              @Param("token") String token,
+              @Param("now") Instant now,
+              @Param("until") Instant until);
+
+    List<OutboxNotification> findAllByClaimTokenOrderById(String claimToken);
+
+    /**
+     * Deletes the given notifications, skipping the ones claimed by another relay since
+     */
+    @Modifying
+    @Query("delete from OutboxNotification n where n.id in :ids and n.claimToken = :token")
+    int deleteClaimed(@Param("ids") Collection<Integer> ids, @Param("token") String token);
+
+    /**
+     * Counts a failed attempt on the given notifications and keeps them claimed until their retry, skipping the ones
+     * claimed by another relay since
+     */
+    @Modifying
+    @Query("update OutboxNotification n set n.attempts = n.attempts + 1, n.claimedUntil = :retryAt " +
+            "where n.id in :ids and n.claimToken = :token")
+    int retryClaimed(@Param("ids") Collection<Integer> ids,
+                     @Param("token") String token,
+                     @Param("retryAt") Instant retryAt);
+
+    /**
+     * Moves the given notifications out of the relay once they have failed the maximum number of attempts, skipping
+     * the ones claimed by another relay since
+     */
+    @Modifying
+    @Query("update OutboxNotification n set n.deadLetteredAt = :now, n.claimToken = null, n.claimedUntil = null " +
+            "where n.id in :ids and n.claimToken = :token and n.attempts >= :maxAttempts")
+    int deadLetterClaimed(@Param("ids") Collection<Integer> ids,
+                          @Param("token") String token,
+                          @Param("maxAttempts") int maxAttempts,
+                          @Param("now") Instant now);
+
+    long countByDeadLetteredAtIsNotNull();
+
+    @Query("select min(n.createdAt) from OutboxNotification n where n.deadLetteredAt is null")
+    Instant findOldestCreatedAt();
+}
@@ -0,0 +1,45 @@
+package com.ippon.bankapp.repository;
+
+import com.ippon.bankapp.domain.ScheduledTransfer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ScheduledTransferRepository extends CrudRepository<ScheduledTransfer, Integer> {
+
+    /**
+     * Selects the active transfers due before a time, in id order after a given id for keyset paging
+     */
+    @Query("select s.id as id, s.nextRunAt as nextRunAt from ScheduledTransfer s " +
+            "where s.active = true and s.nextRunAt < :until and s.id > :afterId order by s.id")
+    List<DueTransfer> findDueBefore(@Param("until") Instant until, @Param("afterId") int afterId, Pageable pageable);
+
+    List<ScheduledTransfer> findAllByFromAccountIdAndActiveTrueOrderByNextRunAt(int fromAccountId);
+
+    /**
+     * Claims the run of a transfer due at a given time by moving it to its next run, or deactivating it when it does
+     * not recur. Only one caller can claim a given run
+     *
+     * @return  1 if the run was claimed, 0 if it was already claimed or the transfer cancelled
+     */
+    @Modifying
+    @Query("update ScheduledTransfer s set s.nextRunAt = :next, s.active = :active, s.runCount = s.runCount + 1 " +
+            "where s.id = :id and s.nextRunAt = :due and s.active = true")
+    int claim(@Param("id") int id, @Param("due") Instant due, @Param("next") Instant next, @Param("active") boolean active);
+
+    @Modifying
+    @Query("update ScheduledTransfer s set s.failureCount = s.failureCount + 1, s.lastError = :error where s.id = :id")
+    int recordFailure(@Param("id") int id, @Param("error") String error);
+
+    interface DueTransfer {
+
+        int getId();
+
+        Instant getNextRunAt();
+    }
+}
@@ -1,15 +1,132 @@
 package com.ippon.bankapp.repository;
 
-import com.ippon.bankapp.domain.Account;
 import com.ippon.bankapp.domain.Transaction;
+import com.ippon.bankapp.domain.TransactionType;
+import com.ippon.bankapp.service.dto.TransactionDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface TransactionRepository extends CrudRepository<Transaction, String> {
+public interface TransactionRepository extends CrudRepository<Transaction, Integer> {
 
-    ArrayList<Transaction> findAllByAccount(Account account);
+    /**
+     * Sums the amounts credited to an account, by deposits and incoming transfers, on one day and over the days since
+     * the start of its week, in one range read of the (account_id, date, type) index
+     */
+    @Query("select sum(case when t.date = :day then t.amount else 0 end) as dayTotal, sum(t.amount) as weekTotal " +
+            "from Transaction t " +
+            "where t.account.id = :accountId and t.amount > 0 and t.date between :weekStart and :day")
+    AmountTotals sumCreditsByAccountIdForDayAndWeek(@Param("accountId") int accountId,
+                                                    @Param("day") LocalDate day,
+                                                    @Param("weekStart") LocalDate weekStart);
+
+    /**
+     * Selects the latest legs posted to an account straight into DTOs, newest first
+     */
+    @Query("select new com.ippon.bankapp.service.dto.TransactionDTO(t.type, t.amount) from Transaction t " +
+            "where t.account.id = :accountId order by t.id desc")
+    List<TransactionDTO> findLatestByAccountId(@Param("accountId") int accountId, Pageable pageable);
+
+    /**
+     * Sums the legs posted to an account up to the end of a day
+     */
+    @Query("select sum(t.amount) from Transaction t where t.account.id = :accountId and t.date <= :day")
+    Optional<BigDecimal> sumAmountByAccountIdUpTo(@Param("accountId") int accountId, @Param("day") LocalDate day);
+
+    /**
+     * Sums the legs posted to an account after one day and up to the end of another, a range read of the
+     * (account_id, date, type) index
+     */
+    @Query("select sum(t.amount) from Transaction t " +
+            "where t.account.id = :accountId and t.date > :after and t.date <= :day")
+    Optional<BigDecimal> sumAmountByAccountIdAfterAndUpTo(@Param("accountId") int accountId,
+                                                          @Param("after") LocalDate after,
+                                                          @Param("day") LocalDate day);
+
+    /**
+     * Sums the legs of each account posted to on a day; legs of the cash book are left out
+     */
+    @Query("select t.account.id as accountId, sum(t.amount) as total from Transaction t " +
+            "where t.date = :day and t.account is not null group by t.account.id")
+    List<AccountTotal> sumAmountsByAccountOn(@Param("day") LocalDate day);
+
+    /**
+     * Counts the legs of each account posted to on a day, a range read of the (date) index
+     */
+    @Query("select t.account.id as accountId, count(t) as count from Transaction t " +
+            "where t.date = :day and t.account is not null group by t.account.id")
+    List<AccountCount> countByAccountOn(@Param("day") LocalDate day);
+
+    /**
+     * Lists the ids of the accounts with the most legs posted since a day, most active first
+     */
+    @Query("select t.account.id from Transaction t where t.date >= :since and t.account is not null " +
+            "group by t.account.id order by count(t) desc")
+    List<Integer> findMostActiveAccountIds(@Param("since") LocalDate since, Pageable pageable);
+
+    /**
+     * Sums the legs of an account per day, for the days before a given one, oldest first
+     */
+    @Query("select t.date as date, sum(t.amount) as total from Transaction t " +
+            "where t.account.id = :accountId and t.date < :before group by t.date order by t.date")
+    List<DayTotal> sumAmountsByAccountIdPerDayBefore(@Param("accountId") int accountId,
+                                                     @Param("before") LocalDate before);
+
+    /**
+     * Lists the days with postings after one day and up to another, oldest first
+     */
+    @Query("select distinct t.date from Transaction t where t.date > :after and t.date <= :until order by t.date")
+    List<LocalDate> findPostingDates(@Param("after") LocalDate after, @Param("until") LocalDate until);
+
+    @Query("select min(t.date) from Transaction t")
+    Optional<LocalDate> findFirstPostingDate();
+
+    @Query("select t.type as type, t.date as date, t.amount as amount from Transaction t where t.account.id = :accountId")
+    List<PostingRow> findPostingsByAccountId(@Param("accountId") int accountId);
+
+    interface AmountTotals {
+
+        BigDecimal getDayTotal();
+
+        BigDecimal getWeekTotal();
+    }
+
+    interface AccountTotal {
+
+        int getAccountId();
+
+        BigDecimal getTotal();
+    }
+
+    interface AccountCount {
+
+        int getAccountId();
+
+        long getCount();
+    }
+
+    interface DayTotal {
+
+        LocalDate getDate();
+
+        BigDecimal getTotal();
+    }
+
+    interface PostingRow {
+
+        TransactionType getType();
+
+        LocalDate getDate();
+
+        BigDecimal getAmount();
+    }
 
 }
\ No newline at end of file
@@ -1,15 +1,35 @@
 package com.ippon.bankapp.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ippon.bankapp.domain.Transaction;
 import com.ippon.bankapp.service.AccountService;
 import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.AccountPageDTO;
+import com.ippon.bankapp.service.dto.AccountStatsDTO;
 import com.ippon.bankapp.service.dto.AmountDTO;
+import com.ippon.bankapp.service.dto.BalanceDTO;
+import com.ippon.bankapp.service.dto.BalanceSlotsDTO;
+import com.ippon.bankapp.service.dto.LeaderboardEntryDTO;
+import com.ippon.bankapp.service.dto.TierDTO;
 import com.ippon.bankapp.service.dto.TransactionDTO;
 import com.ippon.bankapp.service.dto.TransferDTO;
+import com.ippon.bankapp.service.events.AccountEventBus;
+import com.ippon.bankapp.service.events.BalanceEvent;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -18,10 +38,20 @@ import java.util.List;
 @RequestMapping("/api")
 public class AccountController {
 
+    private static final long EVENT_STREAM_TIMEOUT_MS = 30 * 60 * 1000L;
+    // Long enough for a full export; other async requests keep the container's default timeout
+    private static final long EXPORT_TIMEOUT_MS = 10 * 60 * 1000L;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final AccountService accountService;
+    private final AccountEventBus accountEventBus;
+    private final ObjectMapper objectMapper;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, AccountEventBus accountEventBus,
+                             ObjectMapper objectMapper) {
         this.accountService = accountService;
+        this.accountEventBus = accountEventBus;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/account")
@@ -30,11 +60,50 @@ public class AccountController {
         return accountService.createAccount(newAccount);
     }
 
+    /**
+     * Finds the account with last name given as a path variable. Answers 304 without loading the account when the
+     * If-None-Match header holds the account's current version
+     *
+     * @param lastName    The last name of the account to find
+     * @param request     The web request, used for the conditional check
+     * @return            AccountDTO containing information for account found, or null when not modified
+     */
     @GetMapping("/account/{lastName}")
-    public AccountDTO account(@PathVariable(name = "lastName") String lastName) {
+    public AccountDTO account(@PathVariable(name = "lastName") String lastName, WebRequest request) {
+        if (request.checkNotModified(accountETag(lastName))) {
+            return null;
+        }
         return accountService.getAccountDTOByLastName(lastName);
     }
 
+    /**
+     * Type-ahead search over account first and last names
+     *
+     * @param query    The name prefix to search for
+     * @param page     The zero based page number
+     * @param size     The number of accounts per page
+     * @return         AccountDTOs of matching accounts, in name order
+     */
+    @GetMapping("/account/search")
+    public List<AccountDTO> search(@RequestParam(name = "q") String query,
+                                   @RequestParam(name = "page", defaultValue = "0") int page,
+                                   @RequestParam(name = "size", defaultValue = "20") int size) {
+        return accountService.searchAccounts(query, page, size);
+    }
+
+    /**
+     * Live leaderboard of the accounts with the largest balances, or with the most postings today
+     *
+     * @param by       What to rank accounts by, balance or activity
+     * @param limit    The number of accounts, capped at 100
+     * @return         LeaderboardEntryDTOs of the highest ranked accounts, highest first
+     */
+    @GetMapping("/account/top")
+    public List<LeaderboardEntryDTO> top(@RequestParam(name = "by", defaultValue = "balance") String by,
+                                         @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return accountService.getTopAccounts(by, limit);
+    }
+
     /**
      * Finds the account with first name given as a path variable in api call and returns it's DTO
      *
@@ -70,6 +139,55 @@ public class AccountController {
         return accountService.withdraw(lastName, amount.getAmount());
     }
 
+    /**
+     * Gets the monthly deposit and withdrawal statistics of an account
+     *
+     * @param lastName    The last name of the account
+     * @return            AccountStatsDTOs, one per month with postings, oldest first
+     */
+    @GetMapping("/account/{lastName}/stats")
+    public List<AccountStatsDTO> stats(@PathVariable String lastName) {
+        return accountService.getAccountStats(lastName);
+    }
+
+    /**
+     * Gets the balance of the account with last name given as a path variable at the end of a day
+     *
+     * @param lastName    The last name of the account
+     * @param asOf        The day, ISO formatted, today when absent
+     * @return            BalanceDTO of the balance at the end of the day
+     */
+    @GetMapping("/account/{lastName}/balance")
+    public BalanceDTO balance(@PathVariable String lastName,
+                              @RequestParam(name = "asOf", required = false)
+                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return accountService.getBalanceAsOf(lastName, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Flags an account as hot and spreads its balance across the number of slots given in the request body
+     *
+     * @param lastName    The last name of the account to split
+     * @param slots       A DTO holding the number of balance slots
+     * @return            AccountDTO of the account
+     */
+    @PostMapping("/account/{lastName}/balance-slots")
+    public AccountDTO splitBalance(@PathVariable String lastName, @Valid @RequestBody BalanceSlotsDTO slots) {
+        return accountService.splitBalance(lastName, slots.getSlots());
+    }
+
+    /**
+     * Moves an account to the tier given in the request body, the standard tier or one with a deposit limit policy
+     *
+     * @param lastName    The last name of the account to move
+     * @param tier        A DTO holding the tier
+     * @return            AccountDTO of the account
+     */
+    @PutMapping("/account/{lastName}/tier")
+    public AccountDTO changeTier(@PathVariable String lastName, @Valid @RequestBody TierDTO tier) {
+        return accountService.changeTier(lastName, tier.getTier());
+    }
+
     /**
      * Transfers a specified amount from one account to another. Two accounts and amount are given in request body
      *
@@ -81,8 +199,222 @@ public class AccountController {
         return;
     }
 
+    /**
+     * Gets the ten latest transactions of an account. Every posting changes the account version, so the same ETag
+     * is used to answer 304 when nothing was posted since the last poll
+     *
+     * @param lastName    The last name of the account
+     * @param request     The web request, used for the conditional check
+     * @return            TransactionDTOs of the latest transactions, or null when not modified
+     */
     @GetMapping("/account/transactions/{lastName}")
-    public List<TransactionDTO> getLatestTransaction(@PathVariable String lastName) {
+    public List<TransactionDTO> getLatestTransaction(@PathVariable String lastName, WebRequest request) {
+        if (request.checkNotModified(accountETag(lastName))) {
+            return null;
+        }
         return accountService.getLatestTenTransaction(lastName);
     }
+
+    /**
+     * Lists accounts in id order, one page at a time
+     *
+     * @param after       The cursor returned with the previous page, absent for the first page
+     * @param size        The number of accounts per page, capped at 100
+     * @return            AccountPageDTO of the accounts and of the cursor of the next page
+     */
+    @GetMapping("/accounts")
+    public AccountPageDTO list(@RequestParam(name = "after", required = false) Integer after,
+                               @RequestParam(name = "size", defaultValue = "20") int size) {
+        return accountService.listAccounts(after, size);
+    }
+
+    /**
+     * Exports every account as newline-delimited JSON, one account per line in id order. The accounts are written
+     * as they are read from the database, so the export does not hold the account base in memory. The export is
+     * written asynchronously, with a timeout of its own
+     *
+     * @param response    The response the export is written to
+     * @return            the task writing the export
+     */
+    @GetMapping("/accounts/export")
+    public WebAsyncTask<Void> export(HttpServletResponse response) {
+        response.setContentType(NDJSON);
+        return new WebAsyncTask<>(EXPORT_TIMEOUT_MS, () -> {
+            OutputStream buffered = new BufferedOutputStream(response.getOutputStream());
+            try {
+                accountService.exportAccounts(account -> writeLine(buffered, account));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            buffered.flush();
+            return null;
+        });
+    }
+
+    /**
+     * Finds the account with the id given as a path variable. Answers 304 without loading the account when the
+     * If-None-Match header holds the account's current version
+     *
+     * @param id          The id of the account to find
+     * @param request     The web request, used for the conditional check
+     * @return            AccountDTO containing information for account found, or null when not modified
+     */
+    @GetMapping("/accounts/{id}")
+    public AccountDTO accountById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(accountETag(id))) {
+            return null;
+        }
+        return accountService.getAccountDTO(id);
+    }
+
+    /**
+     * Deposit an amount specified in the request body into the account with the id given as a path variable
+     *
+     * @param id          The id of the account to deposit into
+     * @param amount      The amount to deposit into the account
+     * @return            AccountDTO containing updated information for account deposited into
+     */
+    @PostMapping("/accounts/{id}/deposit")
+    public AccountDTO depositById(@PathVariable int id, @Valid @RequestBody AmountDTO amount) {
+        return accountService.deposit(id, amount.getAmount());
+    }
+
+    /**
+     * Withdraw an amount specified in the request body from the account with the id given as a path variable
+     *
+     * @param id          The id of the account to withdraw from
+     * @param amount      A DTO amount to withdraw from the account
+     * @return            AccountDTO containing updated information for account withdrawn from
+     */
+    @PostMapping("/accounts/{id}/withdraw")
+    public AccountDTO withdrawById(@PathVariable int id, @Valid @RequestBody AmountDTO amount) {
+        return accountService.withdraw(id, amount.getAmount());
+    }
+
+    /**
+     * Gets the ten latest transactions of the account with the id given as a path variable
+     *
+     * @param id          The id of the account
+     * @param request     The web request, used for the conditional check
+     * @return            TransactionDTOs of the latest transactions, or null when not modified
+     */
+    @GetMapping("/accounts/{id}/transactions")
+    public List<TransactionDTO> getLatestTransactionById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(accountETag(id))) {
+            return null;
+        }
+        return accountService.getLatestTenTransaction(id);
+    }
+
+    /**
+     * Gets the monthly deposit and withdrawal statistics of the account with the id given as a path variable
+     *
+     * @param id          The id of the account
+     * @return            AccountStatsDTOs, one per month with postings, oldest first
+     */
+    @GetMapping("/accounts/{id}/stats")
+    public List<AccountStatsDTO> statsById(@PathVariable int id) {
+        return accountService.getAccountStats(id);
+    }
+
+    /**
+     * Gets the balance of the account with the id given as a path variable at the end of a day
+     *
+     * @param id          The id of the account
+     * @param asOf        The day, ISO formatted, today when absent
+     * @return            BalanceDTO of the balance at the end of the day
+     */
+    @GetMapping("/accounts/{id}/balance")
+    public BalanceDTO balanceById(@PathVariable int id,
+                                  @RequestParam(name = "asOf", required = false)
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return accountService.getBalanceAsOf(id, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Flags the account with the id given as a path variable as hot and spreads its balance across slots
+     *
+     * @param id          The id of the account to split
+     * @param slots       A DTO holding the number of balance slots
+     * @return            AccountDTO of the account
+     */
+    @PostMapping("/accounts/{id}/balance-slots")
+    public AccountDTO splitBalanceById(@PathVariable int id, @Valid @RequestBody BalanceSlotsDTO slots) {
+        return accountService.splitBalance(id, slots.getSlots());
+    }
+
+    /**
+     * Moves the account with the id given as a path variable to the tier given in the request body
+     *
+     * @param id          The id of the account to move
+     * @param tier        A DTO holding the tier
+     * @return            AccountDTO of the account
+     */
+    @PutMapping("/accounts/{id}/tier")
+    public AccountDTO changeTierById(@PathVariable int id, @Valid @RequestBody TierDTO tier) {
+        return accountService.changeTier(id, tier.getTier());
+    }
+
+    /**
+     * Streams the balance changes of an account as Server-Sent Events, replacing polling of the account
+     *
+     * @param lastName    The last name of the account
+     * @return            the event stream, one "deposit", "withdraw" or "transfer" event per posting
+     */
+    @GetMapping(path = "/account/{lastName}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String lastName) {
+        return subscribe(accountService.getAccountId(lastName));
+    }
+
+    /**
+     * Streams the balance changes of the account with the id given as a path variable as Server-Sent Events
+     *
+     * @param id          The id of the account
+     * @return            the event stream, one "deposit", "withdraw" or "transfer" event per posting
+     */
+    @GetMapping(path = "/accounts/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter eventsById(@PathVariable int id) {
+        // Answers 404 for unknown accounts; served from the version registry once the account is known
+        accountService.getAccountVersion(id);
+        return subscribe(id);
+    }
+
+    private void writeLine(OutputStream out, AccountDTO account) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(account));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SseEmitter subscribe(int accountId) {
+        SseEmitter emitter = new SseEmitter(EVENT_STREAM_TIMEOUT_MS);
+        AccountEventBus.Subscription subscription = accountEventBus.subscribe(accountId, new AccountEventBus.EventSink() {
+            @Override
+            public void send(BalanceEvent event) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.getVersion()))
+                        .name(event.getType())
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    private String accountETag(String lastName) {
+        return "\"" + accountService.getAccountVersion(lastName) + "\"";
+    }
+
+    private String accountETag(int id) {
+        return "\"" + accountService.getAccountVersion(id) + "\"";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.ippon.bankapp.rest;
+
+import com.ippon.bankapp.service.dto.DepositLimitPolicyDTO;
+import com.ippon.bankapp.service.limits.DepositLimitPolicyService;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+public class DepositLimitPolicyController {
+
+    private final DepositLimitPolicyService depositLimitPolicyService;
+
+    public DepositLimitPolicyController(DepositLimitPolicyService depositLimitPolicyService) {
+        this.depositLimitPolicyService = depositLimitPolicyService;
+    }
+
+    /**
+     * Gets the deposit limit policies of the account tiers
+     *
+     * @return            DepositLimitPolicyDTOs of the stored policies
+     */
+    @GetMapping("/deposit-limits")
+    public List<DepositLimitPolicyDTO> policies() {
+        return depositLimitPolicyService.getPolicies();
+    }
+
+    /**
+     * Creates or replaces the deposit limit policy of a tier, applied to deposits right away
+     *
+     * @param tier        The tier of the policy
+     * @param policy      A DTO containing the per transaction, daily and weekly limits
+     * @return            DepositLimitPolicyDTO of the saved policy
+     */
+    @PutMapping("/deposit-limits/{tier}")
+    public DepositLimitPolicyDTO savePolicy(@PathVariable String tier, @Valid @RequestBody DepositLimitPolicyDTO policy) {
+        return depositLimitPolicyService.savePolicy(tier, policy);
+    }
+}
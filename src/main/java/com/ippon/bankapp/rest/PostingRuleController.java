@@ -0,0 +1,40 @@
+package com.ippon.bankapp.rest;
+
+import com.ippon.bankapp.service.dto.PostingRuleDTO;
+import com.ippon.bankapp.service.rules.PostingRulesEngine;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+public class PostingRuleController {
+
+    private final PostingRulesEngine postingRulesEngine;
+
+    public PostingRuleController(PostingRulesEngine postingRulesEngine) {
+        this.postingRulesEngine = postingRulesEngine;
+    }
+
+    /**
+     * Gets the velocity and fraud rules checked on postings
+     *
+     * @return            PostingRuleDTOs of the rules applied
+     */
+    @GetMapping("/rules")
+    public List<PostingRuleDTO> rules() {
+        return postingRulesEngine.getRules();
+    }
+
+    /**
+     * Replaces the rules checked on postings, without a restart. Postings already being checked finish against the
+     * rules they started with
+     *
+     * @param rules       PostingRuleDTOs of the new rules
+     * @return            PostingRuleDTOs of the rules now applied
+     */
+    @PutMapping("/rules")
+    public List<PostingRuleDTO> reload(@RequestBody List<PostingRuleDTO> rules) {
+        return postingRulesEngine.reload(rules);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ippon.bankapp.rest;
+
+import com.ippon.bankapp.service.dto.ScheduledTransferDTO;
+import com.ippon.bankapp.service.transfer.ScheduledTransferService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+public class ScheduledTransferController {
+
+    private final ScheduledTransferService scheduledTransferService;
+
+    public ScheduledTransferController(ScheduledTransferService scheduledTransferService) {
+        this.scheduledTransferService = scheduledTransferService;
+    }
+
+    /**
+     * Schedules a transfer between two accounts, run once or every given number of days
+     *
+     * @param transfer    A DTO containing the accounts, the amount, the first run and the interval
+     * @return            ScheduledTransferDTO of the scheduled transfer, with its id
+     */
+    @PostMapping("/account/transfer/scheduled")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ScheduledTransferDTO schedule(@Valid @RequestBody ScheduledTransferDTO transfer) {
+        return scheduledTransferService.schedule(transfer);
+    }
+
+    /**
+     * Gets the active scheduled transfers out of an account
+     *
+     * @param lastName    The last name of the account transferred from
+     * @return            ScheduledTransferDTOs, next to run first
+     */
+    @GetMapping("/account/{lastName}/scheduled-transfers")
+    public List<ScheduledTransferDTO> scheduledTransfers(@PathVariable String lastName) {
+        return scheduledTransferService.getScheduledTransfers(lastName);
+    }
+
+    /**
+     * Cancels a scheduled transfer
+     *
+     * @param id          The id of the scheduled transfer
+     */
+    @DeleteMapping("/scheduled-transfers/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void cancel(@PathVariable int id) {
+        scheduledTransferService.cancel(id);
+    }
+}
@@ -2,6 +2,12 @@ package com.ippon.bankapp.rest.errors;
 
 import com.ippon.bankapp.service.exception.AccountLastNameExistsException;
 import com.ippon.bankapp.service.exception.AccountNotFoundException;
+import com.ippon.bankapp.service.exception.InvalidPostingRuleException;
+import com.ippon.bankapp.service.exception.PostingRejectedException;
+import com.ippon.bankapp.service.exception.ScheduledTransferNotFoundException;
+import com.ippon.bankapp.service.exception.UnknownLeaderboardException;
+import com.ippon.bankapp.service.exception.UnknownTierException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -21,9 +27,45 @@ public class RestErrorHandler {
 
     }
 
+    @ExceptionHandler(ScheduledTransferNotFoundException.class)
+    @ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "Scheduled transfer not found")
+    public void handleScheduledTransferNotFound() {
+
+    }
+
+    @ExceptionHandler(PostingRejectedException.class)
+    @ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY, reason = "Posting rejected by rule")
+    public void handlePostingRejected() {
+
+    }
+
+    @ExceptionHandler(InvalidPostingRuleException.class)
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid posting rule")
+    public void handleInvalidPostingRule() {
+
+    }
+
+    @ExceptionHandler(UnknownLeaderboardException.class)
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Unknown leaderboard")
+    public void handleUnknownLeaderboard() {
+
+    }
+
+    @ExceptionHandler(UnknownTierException.class)
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Unknown tier")
+    public void handleUnknownTier() {
+
+    }
+
     @ExceptionHandler(AccountLastNameExistsException.class)
     @ResponseStatus(value = HttpStatus.CONFLICT, reason = "Last name already exists")
     public void handleLastNameAlreadyExists() {
 
     }
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    @ResponseStatus(value = HttpStatus.CONFLICT, reason = "Concurrent update, try again")
+    public void handleConcurrencyFailure() {
+
+    }
 }
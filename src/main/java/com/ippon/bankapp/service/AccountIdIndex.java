@@ -0,0 +1,37 @@
+package com.ippon.bankapp.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves last names to account ids in memory, so the last name addressed endpoints only touch the account table
+ * through its primary key once an account has been seen. Last names never change, so entries never go stale.
+ */
+@Component
+public class AccountIdIndex {
+
+    private final ConcurrentHashMap<String, Integer> idsByLastName = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the id of the account with a last name
+     *
+     * @param lastName  last name of the account
+     * @return          the id, or empty when the account has not been seen yet
+     */
+    public OptionalInt get(String lastName) {
+        Integer id = idsByLastName.get(lastName);
+        return id == null ? OptionalInt.empty() : OptionalInt.of(id);
+    }
+
+    /**
+     * Records the id of an account
+     *
+     * @param lastName  last name of the account
+     * @param id        id of the account
+     */
+    public void put(String lastName, int id) {
+        idsByLastName.put(lastName, id);
+    }
+}
@@ -1,58 +1,355 @@
 package com.ippon.bankapp.service;
 
 import com.ippon.bankapp.domain.Account;
-import com.ippon.bankapp.domain.Transaction;
+import com.ippon.bankapp.domain.JournalEntry;
+import com.ippon.bankapp.domain.TransactionType;
 import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.AccountView;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
 import com.ippon.bankapp.repository.TransactionRepository;
 import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.AccountPageDTO;
+import com.ippon.bankapp.service.dto.AccountStatsDTO;
+import com.ippon.bankapp.service.dto.BalanceDTO;
+import com.ippon.bankapp.service.dto.LeaderboardEntryDTO;
 import com.ippon.bankapp.service.dto.TransactionDTO;
+import com.ippon.bankapp.service.events.AccountEventBus;
+import com.ippon.bankapp.service.events.BalanceEvent;
+import com.ippon.bankapp.service.history.BalanceHistory;
+import com.ippon.bankapp.service.leaderboard.AccountLeaderboards;
+import com.ippon.bankapp.service.leaderboard.LeaderboardType;
+import com.ippon.bankapp.service.limits.DepositLimitPolicyService;
+import com.ippon.bankapp.service.limits.DepositLimits;
+import com.ippon.bankapp.service.limits.DepositUsageTracker;
 import com.ippon.bankapp.service.exception.*;
+import com.ippon.bankapp.service.outbox.NotificationOutbox;
+import com.ippon.bankapp.service.posting.BalanceSlotService;
+import com.ippon.bankapp.service.posting.GroupCommitter;
+import com.ippon.bankapp.service.read.SingleFlight;
+import com.ippon.bankapp.service.rules.PostingKind;
+import com.ippon.bankapp.service.rules.PostingRulesEngine;
+import com.ippon.bankapp.service.search.AccountSearchIndex;
+import com.ippon.bankapp.service.stats.AccountStatsProjection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class AccountService {
 
+    private static final Logger log = LoggerFactory.getLogger(AccountService.class);
+
+    private static final int POSTING_ATTEMPTS = 20;
+    private static final long POSTING_RETRY_BACKOFF_MILLIS = 1;
+    private static final long POSTING_RETRY_MAX_BACKOFF_MILLIS = 64;
+    // Kept well within the settle margin of the daily balance close, so no posting commits into a closed day
+    private static final int POSTING_TIMEOUT_SECONDS = 30;
+
     private AccountRepository accountRepository;
     private NotificationFactory notificationFactory;
     private TransactionRepository transactionRepository;
-
-    public AccountService(AccountRepository accountRepository, NotificationFactory notificationFactory, TransactionRepository transactionRepository) {
+    private JournalEntryRepository journalEntryRepository;
+    private AccountSearchIndex accountSearchIndex;
+    private AccountVersionRegistry accountVersionRegistry;
+    private AccountIdIndex accountIdIndex;
+    private BalanceSlotService balanceSlotService;
+    private NotificationOutbox notificationOutbox;
+    private AccountStatsProjection accountStatsProjection;
+    private BalanceHistory balanceHistory;
+    private AccountLeaderboards accountLeaderboards;
+    private AccountEventBus accountEventBus;
+    private PostingRulesEngine postingRulesEngine;
+    private DepositLimitPolicyService depositLimitPolicyService;
+    private DepositUsageTracker depositUsageTracker;
+    private TransactionTemplate postingTransaction;
+    private GroupCommitter<BigDecimal, AccountDTO> depositCommitter;
+    private TransactionTemplate readTransaction;
+    private Counter postingRetries;
+    private SingleFlight<String, AccountDTO> readsByLastName = new SingleFlight<>();
+    private SingleFlight<Integer, AccountDTO> readsById = new SingleFlight<>();
+
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_LIST_PAGE_SIZE = 100;
+
+    public AccountService(AccountRepository accountRepository, NotificationFactory notificationFactory, TransactionRepository transactionRepository, JournalEntryRepository journalEntryRepository, AccountSearchIndex accountSearchIndex, AccountVersionRegistry accountVersionRegistry, AccountIdIndex accountIdIndex, BalanceSlotService balanceSlotService, NotificationOutbox notificationOutbox, AccountStatsProjection accountStatsProjection, BalanceHistory balanceHistory, AccountLeaderboards accountLeaderboards, AccountEventBus accountEventBus, PostingRulesEngine postingRulesEngine, DepositLimitPolicyService depositLimitPolicyService, DepositUsageTracker depositUsageTracker, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.accountRepository = accountRepository;
         this.notificationFactory = notificationFactory;
         this.transactionRepository = transactionRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.accountSearchIndex = accountSearchIndex;
+        this.accountVersionRegistry = accountVersionRegistry;
+        this.accountIdIndex = accountIdIndex;
+        this.balanceSlotService = balanceSlotService;
+        this.notificationOutbox = notificationOutbox;
+        this.accountStatsProjection = accountStatsProjection;
+        this.balanceHistory = balanceHistory;
+        this.accountLeaderboards = accountLeaderboards;
+        this.accountEventBus = accountEventBus;
+        this.postingRulesEngine = postingRulesEngine;
+        this.depositLimitPolicyService = depositLimitPolicyService;
+        this.depositUsageTracker = depositUsageTracker;
+        this.postingTransaction = new TransactionTemplate(transactionManager);
+        this.postingTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.postingTransaction.setTimeout(POSTING_TIMEOUT_SECONDS);
+        this.depositCommitter = new GroupCommitter<>(this::applyDeposits);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.postingRetries = Counter.builder("bankapp.posting.retries")
+                .description("Posting transactions run again after losing a race on the rows they update")
+                .register(meterRegistry);
+        registerReadMetrics(meterRegistry, "lastName", readsByLastName);
+        registerReadMetrics(meterRegistry, "id", readsById);
+    }
+
+    private static void registerReadMetrics(MeterRegistry meterRegistry, String by, SingleFlight<?, ?> reads) {
+        FunctionCounter.builder("bankapp.account.reads", reads, SingleFlight::getCallCount)
+                .tag("by", by)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankapp.account.reads.shared", reads, SingleFlight::getSharedCount)
+                .tag("by", by)
+                .register(meterRegistry);
+        Gauge.builder("bankapp.account.reads.coalescing.ratio", reads,
+                flight -> flight.getCallCount() == 0 ? 0 : (double) flight.getSharedCount() / flight.getCallCount())
+                .tag("by", by)
+                .register(meterRegistry);
     }
 
+    /**
+     * Create an account and queue its welcome notification in the same transaction. Last name uniqueness is
+     * enforced by the unique index on the account table. The account only becomes searchable once committed
+     *
+     * @param newAccount    DTO holding the names of the account to create. A tier in it is ignored: new accounts
+     *                      are standard, and only {@link #changeTier(int, String)} moves them
+     * @return              DTO of the created account
+     */
+    @Transactional
     public AccountDTO createAccount(AccountDTO newAccount) {
-        validateLastNameUnique(newAccount.getLastName());
         Account account = new Account(newAccount.getFirstName(), newAccount.getLastName());
         account.setNotificationPreference(notificationFactory
                 .getDefaultNotification()
                 .getName());
 
-        Account save = accountRepository.save(account);
+        Account save = saveNewAccount(account);
+        afterCommit(() -> {
+            accountSearchIndex.add(save);
+            accountLeaderboards.add(save);
+            accountIdIndex.put(save.getLastName(), save.getId());
+            recordVersion(save);
+        });
 
-        notificationFactory
-                .getPreferredService(save.getNotificationPreference())
-                .orElseGet(notificationFactory::getDefaultNotification)
-                .sendMessage("bank",
-                        account.getLastName(),
-                        "Account Created",
-                        "Welcome aboard!");
+        notificationOutbox.enqueue(save.getNotificationPreference(),
+                "bank",
+                account.getLastName(),
+                "Account Created",
+                "Welcome aboard!");
 
         return mapAccountToDTO(save);
     }
 
+    private Account saveNewAccount(Account account) {
+        try {
+            return accountRepository.saveAndFlush(account);
+        } catch (DataIntegrityViolationException e) {
+            throw new AccountLastNameExistsException();
+        }
+    }
+
+    /**
+     * Runs an action once the current transaction has committed, or straight away outside of one, so the in-memory
+     * indexes never hold an account whose creation was rolled back
+     *
+     * @param action    action to run
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Find an account from a last name, selecting its DTO fields without loading the entity. Concurrent lookups of
+     * the same account share one query, as long as the account has not changed since the query started; callers
+     * waiting on it hold no connection
+     *
+     * @param lastName  last name of account to find
+     * @return          DTO containing information on account found
+     */
     public AccountDTO getAccountDTOByLastName(String lastName) {
-        Account account = accountRepository
-                .findByLastName(lastName)
+        OptionalInt id = accountIdIndex.get(lastName);
+        long version = id.isPresent()
+                ? accountVersionRegistry.get(id.getAsInt())
+                : AccountVersionRegistry.UNKNOWN_VERSION;
+        return readsByLastName.get(lastName, version, () -> readTransaction.execute(status -> {
+            AccountView account = accountRepository
+                    .findViewByLastName(lastName)
+                    .orElseThrow(AccountNotFoundException::new);
+
+            return mapAccountViewToDTO(account);
+        }));
+    }
+
+    /**
+     * Find an account from its id, selecting its DTO fields without loading the entity. Concurrent lookups of the
+     * same account share one query, as long as the account has not changed since the query started
+     *
+     * @param id        id of account to find
+     * @return          DTO containing information on account found
+     */
+    public AccountDTO getAccountDTO(int id) {
+        return readsById.get(id, accountVersionRegistry.get(id), () -> readTransaction.execute(status -> {
+            AccountView account = accountRepository
+                    .findViewById(id)
+                    .orElseThrow(AccountNotFoundException::new);
+
+            return mapAccountViewToDTO(account);
+        }));
+    }
+
+    /**
+     * Resolves the id of an account from its last name, from memory once the account has been seen
+     *
+     * @param lastName  last name of account
+     * @return          id of the account
+     */
+    public int getAccountId(String lastName) {
+        OptionalInt known = accountIdIndex.get(lastName);
+        if (known.isPresent()) {
+            return known.getAsInt();
+        }
+
+        int id = accountRepository
+                .findIdByLastName(lastName)
                 .orElseThrow(AccountNotFoundException::new);
+        accountIdIndex.put(lastName, id);
+        return id;
+    }
 
-        return mapAccountToDTO(account);
+    /**
+     * Gets the current version of an account, served from memory when known so polling clients can be answered
+     * without reading the account
+     *
+     * @param lastName  last name of account
+     * @return          version of the account, incremented on every change
+     */
+    public long getAccountVersion(String lastName) {
+        return getAccountVersion(getAccountId(lastName));
+    }
+
+    /**
+     * Gets the current version of an account, served from memory when known so polling clients can be answered
+     * without reading the account
+     *
+     * @param id        id of account
+     * @return          version of the account, incremented on every change
+     */
+    public long getAccountVersion(int id) {
+        long version = accountVersionRegistry.get(id);
+        if (version != AccountVersionRegistry.UNKNOWN_VERSION) {
+            return version;
+        }
+
+        AccountView account = accountRepository
+                .findViewById(id)
+                .orElseThrow(AccountNotFoundException::new);
+        long current = account.getVersion();
+        if (account.isSplitBalance()) {
+            current += balanceSlotService.getTotals(id).getVersion();
+        }
+        accountVersionRegistry.update(id, current);
+        return current;
+    }
+
+    /**
+     * Spreads the balance of a hot account across several independently updated slots
+     *
+     * @param lastName  last name of account to split
+     * @param slots     number of balance slots
+     * @return          DTO of the account
+     */
+    public AccountDTO splitBalance(String lastName, int slots) {
+        return splitBalance(getAccountId(lastName), slots);
+    }
+
+    /**
+     * Spreads the balance of a hot account across several independently updated slots, so concurrent postings to
+     * it stop contending on the single account row
+     *
+     * @param id        id of account to split
+     * @param slots     number of balance slots
+     * @return          DTO of the account
+     */
+    public AccountDTO splitBalance(int id, int slots) {
+        Account save = balanceSlotService.split(getAccountByID(id), slots);
+        recordVersion(save);
+        return mapAccountToDTO(save);
+    }
+
+    /**
+     * Moves an account to another tier
+     *
+     * @param lastName  last name of account to move
+     * @param tier      tier to move the account to
+     * @return          DTO of the account
+     */
+    public AccountDTO changeTier(String lastName, String tier) {
+        return changeTier(getAccountId(lastName), tier);
+    }
+
+    /**
+     * Moves an account to another tier, whose deposit limits apply from its next posting on
+     *
+     * @param id        id of account to move
+     * @param tier      tier to move the account to, the standard tier or one with a deposit limit policy
+     * @return          DTO of the account
+     * @throws UnknownTierException if the tier is neither standard nor has a policy
+     */
+    public AccountDTO changeTier(int id, String tier) {
+        if (!depositLimitPolicyService.isKnownTier(tier)) {
+            throw new UnknownTierException();
+        }
+        Account save = inPostingTransaction(status -> {
+            Account account = getAccountByID(id);
+            account.setTier(tier);
+            return accountRepository.save(account);
+        });
+        recordVersion(save);
+        return mapAccountToDTO(save);
     }
 
     /**
@@ -61,12 +358,120 @@ public class AccountService {
      * @param firstName first name of account to find
      * @return          DTO containing information on account found
      */
+    @Transactional(readOnly = true)
     public AccountDTO getAccountDTOByFirstName(String firstName) {
-        Account account = accountRepository
-                .findByFirstName(firstName)
+        AccountView account = accountRepository
+                .findViewByFirstName(firstName)
                 .orElseThrow(AccountNotFoundException::new);
 
-        return mapAccountToDTO(account);
+        return mapAccountViewToDTO(account);
+    }
+
+    /**
+     * Search accounts whose first or last name has a word starting with the query
+     *
+     * @param query     name prefix to search for
+     * @param page      zero based page number
+     * @param size      number of accounts per page, capped at 100
+     * @return          page of DTOs for matching accounts, in name order
+     */
+    @Transactional(readOnly = true)
+    public List<AccountDTO> searchAccounts(String query, int page, int size) {
+        List<String> lastNames = accountSearchIndex.search(query, page, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        if (lastNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, AccountView> accountsByLastName = new HashMap<>();
+        for (AccountView account : accountRepository.findAllViewsByLastNameIn(lastNames)) {
+            accountsByLastName.put(account.getLastName(), account);
+        }
+
+        List<AccountDTO> results = new ArrayList<>();
+        for (String lastName : lastNames) {
+            AccountView account = accountsByLastName.get(lastName);
+            if (account != null) {
+                results.add(mapAccountViewToDTO(account));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Lists accounts in id order, one page at a time. The cursor is the id of the last account of the previous page,
+     * so reading any page costs the same and accounts created meanwhile are neither skipped nor repeated
+     *
+     * @param after     cursor returned with the previous page, null for the first page
+     * @param size      number of accounts per page, capped at 100
+     * @return          DTO of the page and of the cursor of the next one
+     */
+    @Transactional(readOnly = true)
+    public AccountPageDTO listAccounts(Integer after, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_LIST_PAGE_SIZE));
+        List<AccountView> views = accountRepository.findViewsAfter(after == null ? Integer.MIN_VALUE : after,
+                PageRequest.of(0, pageSize + 1));
+
+        List<AccountDTO> accounts = new ArrayList<>(pageSize);
+        for (int i = 0; i < views.size() && i < pageSize; i++) {
+            accounts.add(mapAccountViewToDTO(views.get(i)));
+        }
+        Integer next = views.size() > pageSize ? views.get(pageSize - 1).getId() : null;
+        return new AccountPageDTO(accounts, next);
+    }
+
+    /**
+     * Hands every account to an action in id order, reading them through a forward-only cursor so memory use does
+     * not grow with the number of accounts
+     *
+     * @param action    called with the DTO of each account
+     * @return          number of accounts
+     */
+    @Transactional(readOnly = true)
+    public long exportAccounts(Consumer<AccountDTO> action) {
+        long count = 0;
+        try (Stream<AccountView> accounts = accountRepository.streamAllViews()) {
+            for (AccountView account : (Iterable<AccountView>) accounts::iterator) {
+                action.accept(mapAccountViewToDTO(account));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the head of a live leaderboard, without querying the database
+     *
+     * @param by        what the accounts are ranked by, balance or activity
+     * @param limit     maximum number of accounts
+     * @return          DTOs of the highest ranked accounts, highest first
+     */
+    public List<LeaderboardEntryDTO> getTopAccounts(String by, int limit) {
+        return accountLeaderboards.top(LeaderboardType.fromName(by), limit);
+    }
+
+    /**
+     * Gets the monthly deposit and withdrawal aggregates of an account from the statistics projection
+     *
+     * @param lastName  last name of account
+     * @return          DTOs of the monthly statistics, oldest month first
+     */
+    @Transactional(readOnly = true)
+    public List<AccountStatsDTO> getAccountStats(String lastName) {
+        return accountStatsProjection.getMonthlyStats(getAccountId(lastName));
+    }
+
+    /**
+     * Gets the monthly deposit and withdrawal aggregates of an account from the statistics projection
+     *
+     * @param id        id of account
+     * @return          DTOs of the monthly statistics, oldest month first
+     */
+    @Transactional(readOnly = true)
+    public List<AccountStatsDTO> getAccountStats(int id) {
+        if (!accountRepository.existsById(id)) {
+            throw new AccountNotFoundException();
+        }
+        return accountStatsProjection.getMonthlyStats(id);
     }
 
     /**
@@ -96,53 +501,197 @@ public class AccountService {
      *
      * @param lastName  last name of account to deposit into
      * @param amount    amount to deposit
-     * @return          updated DTO of account
+     * @return          updated DTO of account, with the balance right after this deposit
      */
     public AccountDTO deposit(String lastName, BigDecimal amount) {
-        //Check if deposit is valid
-        if (!isValidDeposit(lastName, amount)) {
-            throw new DepositLimitException();
+        return deposit(getAccountId(lastName), amount);
+    }
+
+    /**
+     * Deposit an amount into an account. Concurrent deposits to the same account are applied together as one
+     * balance update, each caller still getting its own result
+     *
+     * @param id        id of account to deposit into
+     * @param amount    amount to deposit
+     * @return          updated DTO of account, with the balance right after this deposit
+     * @throws PostingRejectedException if a posting rule rejects the deposit
+     */
+    public AccountDTO deposit(int id, BigDecimal amount) {
+        PostingRulesEngine.Hold hold = postingRulesEngine.check(id, PostingKind.DEPOSIT, amount);
+        AccountDTO result;
+        try {
+            result = depositCommitter.submit(id, amount);
+        } catch (RuntimeException e) {
+            hold.release();
+            throw e;
         }
+        hold.keep();
+        return result;
+    }
 
-        //Make deposit if it is valid
-        Account accountToUpdate = accountRepository
-                .findByLastName(lastName)
-                .orElseThrow(AccountNotFoundException::new);
-        BigDecimal oldBalance = accountToUpdate.getBalance();
-        accountToUpdate.setBalance(oldBalance.add(amount));
-        Account save = accountRepository.save(accountToUpdate);
-        Transaction transaction = new Transaction(accountToUpdate, "deposit", amount);
-        transactionRepository.save(transaction);
-        return mapAccountToDTO(save);
+    /**
+     * Applies a batch of deposits in its own transaction, and only completes and publishes the accepted ones once it
+     * has committed. A failure to publish is logged and leaves the completed deposits alone
+     *
+     * @param id        id of account to deposit into
+     * @param deposits  deposits waiting to be applied, in arrival order
+     */
+    private void applyDeposits(int id, List<GroupCommitter.Pending<BigDecimal, AccountDTO>> deposits) {
+        Map<GroupCommitter.Pending<BigDecimal, AccountDTO>, AccountDTO> results = new HashMap<>();
+        List<GroupCommitter.Pending<BigDecimal, AccountDTO>> rejected = new ArrayList<>();
+        Account save = inPostingTransaction(status -> {
+            results.clear();
+            rejected.clear();
+            return postDeposits(id, deposits, results, rejected);
+        });
+        for (GroupCommitter.Pending<BigDecimal, AccountDTO> deposit : rejected) {
+            deposit.fail(new DepositLimitException());
+        }
+        if (save == null) {
+            return;
+        }
+
+        //The accepted deposits are committed: complete them before anything below can throw and fail them
+        BigDecimal balance = null;
+        for (GroupCommitter.Pending<BigDecimal, AccountDTO> deposit : deposits) {
+            AccountDTO result = results.get(deposit);
+            if (result != null) {
+                balance = result.getBalance();
+                deposit.complete(result);
+            }
+        }
+        try {
+            long version = recordVersion(save);
+            for (GroupCommitter.Pending<BigDecimal, AccountDTO> deposit : deposits) {
+                AccountDTO result = results.get(deposit);
+                if (result != null) {
+                    accountEventBus.publish(new BalanceEvent(save.getId(), save.getLastName(),
+                            TransactionType.DEPOSIT.getName(), deposit.getRequest(), result.getBalance(), version));
+                }
+            }
+            accountLeaderboards.recordPostings(save.getId(), save.getLastName(), balance, version, results.size());
+        } catch (RuntimeException e) {
+            log.warn("Deposits to account {} committed, but publishing them failed", id, e);
+        }
     }
 
     /**
-     * Determines if a deposit is valid. A deposit is valid iff the account's daily deposit total added to the new
-     * deposit amount is less than the daily deposit limit which is $5,000
+     * Runs a posting in a transaction of its own. A posting that lost a race with a concurrent one on the rows it
+     * updates (a stale account version, a drained balance slot, a deadlock) is run again from the start in a new
+     * transaction, after a random pause whose bound doubles with each attempt, up to a bounded number of attempts
      *
-     * @param lastName          last name of account being deposited to
-     * @param depositAmount     amount being deposited
-     * @return                  a boolean containing if the deposit is valid or not
+     * @param posting   the posting, run once per attempt
+     * @return          what the posting returned in the attempt that committed
+     * @throws ConcurrencyFailureException if every attempt lost its race
      */
-    private boolean isValidDeposit(String lastName, BigDecimal depositAmount) {
-        final BigDecimal DEPOSIT_LIMIT = BigDecimal.valueOf(5000);
+    private <T> T inPostingTransaction(TransactionCallback<T> posting) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return postingTransaction.execute(posting);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt == POSTING_ATTEMPTS) {
+                    throw e;
+                }
+                postingRetries.increment();
+                backOff(attempt, e);
+            }
+        }
+    }
 
-        //Get the current date and time and reset to very end of previous day
-        LocalDate currentDay = LocalDate.now();
+    private static void backOff(int attempt, ConcurrencyFailureException failure) {
+        try {
+            long bound = Math.min(POSTING_RETRY_MAX_BACKOFF_MILLIS, POSTING_RETRY_BACKOFF_MILLIS << attempt);
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
 
-        //Get current daily deposit total
-        ArrayList<Transaction> transactions = transactionRepository.findAllByAccount(getAccountByLastName(lastName));
-        BigDecimal dailyDepositTotal = BigDecimal.ZERO;
-        for (Transaction transaction : transactions) {
-            if (transaction.getDate().isEqual(currentDay) && transaction.getType().equals("deposit")) {
-                dailyDepositTotal = dailyDepositTotal.add(transaction.getAmount());
+    /**
+     * Posts a batch of deposits to one account: one account read, one query for the daily and weekly totals, one
+     * balance update, one update of each total and one batch insert of journal entries and their legs. Deposits over
+     * a limit of the account's tier fail individually
+     *
+     * @param id        id of account to deposit into
+     * @param deposits  deposits waiting to be applied, in arrival order
+     * @param results   filled with the DTO each accepted deposit is to be completed with
+     * @param rejected  filled with the deposits over a limit, to be failed once the batch is done
+     * @return          the updated account, or null when no deposit was accepted
+     */
+    private Account postDeposits(int id,
+                                 List<GroupCommitter.Pending<BigDecimal, AccountDTO>> deposits,
+                                 Map<GroupCommitter.Pending<BigDecimal, AccountDTO>, AccountDTO> results,
+                                 List<GroupCommitter.Pending<BigDecimal, AccountDTO>> rejected) {
+        Account accountToUpdate = getAccountByID(id);
+        DepositLimits limits = depositLimitPolicyService.forTier(accountToUpdate.getTier());
+        DepositUsageTracker.Usage usage = depositUsageTracker.read(id, LocalDate.now());
+        BigDecimal dailyDepositTotal = usage.getDayTotal();
+        BigDecimal weeklyDepositTotal = usage.getWeekTotal();
+        BigDecimal balance = getBalance(accountToUpdate);
+        BigDecimal acceptedTotal = BigDecimal.ZERO;
+
+        List<JournalEntry> entries = new ArrayList<>();
+        List<GroupCommitter.Pending<BigDecimal, AccountDTO>> accepted = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        for (GroupCommitter.Pending<BigDecimal, AccountDTO> deposit : deposits) {
+            BigDecimal amount = deposit.getRequest();
+            if (!limits.allows(amount, dailyDepositTotal, weeklyDepositTotal)) {
+                rejected.add(deposit);
+                continue;
             }
+            dailyDepositTotal = dailyDepositTotal.add(amount);
+            weeklyDepositTotal = weeklyDepositTotal.add(amount);
+            acceptedTotal = acceptedTotal.add(amount);
+            balance = balance.add(amount);
+            entries.add(JournalEntry.deposit(accountToUpdate, amount));
+            accepted.add(deposit);
+            balances.add(balance);
         }
+        if (accepted.isEmpty()) {
+            return null;
+        }
+        depositUsageTracker.add(usage, acceptedTotal, limits);
+
+        Account save;
+        if (accountToUpdate.isSplitBalance()) {
+            balanceSlotService.credit(accountToUpdate, acceptedTotal);
+            save = accountToUpdate;
+        } else {
+            accountToUpdate.setBalance(balance);
+            save = accountRepository.save(accountToUpdate);
+        }
+        journalEntryRepository.saveAll(entries);
+        accountStatsProjection.recordDeposits(save, LocalDate.now(), accepted.size(), acceptedTotal);
+        for (int i = 0; i < accepted.size(); i++) {
+            results.put(accepted.get(i), mapAccountDetailsToDTO(save).balance(balances.get(i)));
+        }
+        return save;
+    }
 
-        //Compare dailyDepositTotal plus deposit amount to deposit limit and return value
-        dailyDepositTotal = dailyDepositTotal.add(depositAmount);
-        return (dailyDepositTotal.compareTo(DEPOSIT_LIMIT) < 1);
+    /**
+     * Gets the balance of an account at the end of a past day, from the balance checkpoints
+     *
+     * @param lastName  last name of account
+     * @param asOf      the day
+     * @return          DTO of the balance at the end of the day
+     */
+    public BalanceDTO getBalanceAsOf(String lastName, LocalDate asOf) {
+        return new BalanceDTO(asOf, balanceHistory.getBalanceAsOf(getAccountId(lastName), asOf));
+    }
 
+    /**
+     * Gets the balance of an account at the end of a past day, from the balance checkpoints
+     *
+     * @param id        id of account
+     * @param asOf      the day
+     * @return          DTO of the balance at the end of the day
+     */
+    public BalanceDTO getBalanceAsOf(int id, LocalDate asOf) {
+        if (!accountRepository.existsById(id)) {
+            throw new AccountNotFoundException();
+        }
+        return new BalanceDTO(asOf, balanceHistory.getBalanceAsOf(id, asOf));
     }
 
     /**
@@ -153,30 +702,147 @@ public class AccountService {
      * @return          DTO of updated account
      */
     public AccountDTO withdraw(String lastName, BigDecimal amount) {
-        Account accountToUpdate = getAccountByLastName(lastName);
-        BigDecimal oldBalance = accountToUpdate.getBalance();
+        return withdraw(getAccountId(lastName), amount);
+    }
+
+    /**
+     * Withdraw an amount from an account, publishing the balance change once committed. A failure to publish is
+     * logged and leaves the committed withdrawal alone
+     *
+     * @param id        id of account to withdraw from
+     * @param amount    amount to withdraw
+     * @return          DTO of updated account
+     * @throws PostingRejectedException if a posting rule rejects the withdrawal
+     */
+    public AccountDTO withdraw(int id, BigDecimal amount) {
+        PostingRulesEngine.Hold hold = postingRulesEngine.check(id, PostingKind.WITHDRAW, amount);
+        Account save;
+        try {
+            save = inPostingTransaction(status -> postWithdrawal(id, amount));
+        } catch (RuntimeException e) {
+            hold.release();
+            throw e;
+        }
+        hold.keep();
+        AccountDTO result = mapAccountToDTO(save);
+        try {
+            long version = recordVersion(save);
+            accountEventBus.publish(new BalanceEvent(save.getId(), save.getLastName(),
+                    TransactionType.WITHDRAWAL.getName(), amount, result.getBalance(), version));
+            accountLeaderboards.recordPostings(save.getId(), save.getLastName(), result.getBalance(), version, 1);
+        } catch (RuntimeException e) {
+            log.warn("Withdrawal from account {} committed, but publishing it failed", id, e);
+        }
+        return result;
+    }
+
+    /**
+     * Takes an amount out of an account and records the withdrawal, failing if the balance does not cover it
+     *
+     * @param id        id of account to withdraw from
+     * @param amount    amount to withdraw
+     * @return          the updated account
+     */
+    private Account postWithdrawal(int id, BigDecimal amount) {
+        Account accountToUpdate = getAccountByID(id);
+        Account save = debit(accountToUpdate, amount);
+        JournalEntry entry = JournalEntry.withdrawal(accountToUpdate, amount);
+        journalEntryRepository.save(entry);
+        accountStatsProjection.recordWithdrawal(save, entry.getDate(), amount);
+        return save;
+    }
+
+    /**
+     * Takes an amount out of an account's balance, failing if the balance does not cover it
+     *
+     * @param account   account to debit
+     * @param amount    amount to take out
+     * @return          the updated account
+     */
+    private Account debit(Account account, BigDecimal amount) {
+        if (account.isSplitBalance()) {
+            balanceSlotService.debit(account, amount);
+            return account;
+        }
+        BigDecimal oldBalance = account.getBalance();
         if (oldBalance.subtract(amount).compareTo(BigDecimal.ZERO) == -1) {
             throw new InsufficientFundsException();
         }
-        accountToUpdate.setBalance(oldBalance.subtract(amount));
-        Account save = accountRepository.save(accountToUpdate);
-        Transaction transaction = new Transaction(accountToUpdate, "deposit", amount);
-        transactionRepository.save(transaction);
-        return mapAccountToDTO(save);
+        account.setBalance(oldBalance.subtract(amount));
+        return accountRepository.save(account);
     }
 
-    private void validateLastNameUnique(String lastName) {
-        accountRepository
-                .findByLastName(lastName)
-                .ifPresent(t -> {throw new AccountLastNameExistsException();});
+    /**
+     * Adds an amount to an account's balance
+     *
+     * @param account   account to credit
+     * @param amount    amount to add
+     * @return          the updated account
+     */
+    private Account credit(Account account, BigDecimal amount) {
+        if (account.isSplitBalance()) {
+            balanceSlotService.credit(account, amount);
+            return account;
+        }
+        account.setBalance(account.getBalance().add(amount));
+        return accountRepository.save(account);
     }
 
     private AccountDTO mapAccountToDTO(Account account) {
+        return mapAccountDetailsToDTO(account)
+                .balance(getBalance(account));
+    }
+
+    private AccountDTO mapAccountViewToDTO(AccountView account) {
+        BigDecimal balance = account.isSplitBalance()
+                ? balanceSlotService.getTotals(account.getId()).getBalance()
+                : account.getBalance();
         return new AccountDTO()
+                .id(account.getId())
                 .firstName(account.getFirstName())
                 .lastName(account.getLastName())
-                .balance(account.getBalance())
-                .notificationPreference(account.getNotificationPreference());
+                .balance(balance)
+                .notificationPreference(account.getNotificationPreference())
+                .tier(account.getTier());
+    }
+
+    private AccountDTO mapAccountDetailsToDTO(Account account) {
+        return new AccountDTO()
+                .id(account.getId())
+                .firstName(account.getFirstName())
+                .lastName(account.getLastName())
+                .notificationPreference(account.getNotificationPreference())
+                .tier(account.getTier());
+    }
+
+    /**
+     * Gets the balance of an account, summing its slots when the balance is split
+     *
+     * @param account   account to get the balance of
+     * @return          current balance
+     */
+    private BigDecimal getBalance(Account account) {
+        if (!account.isSplitBalance()) {
+            return account.getBalance();
+        }
+        return balanceSlotService.getTotals(account).getBalance();
+    }
+
+    /**
+     * Records the current version of an account in the version registry. Slot updates of a split balance do not
+     * touch the account row, so their versions are added to the account's
+     *
+     * @param account   account just read or written
+     * @return          the version recorded
+     */
+    private long recordVersion(Account account) {
+        long version = account.getVersion();
+        if (account.isSplitBalance()) {
+            BalanceSlotRepository.SlotTotals totals = balanceSlotService.getTotals(account);
+            version += totals.getVersion();
+        }
+        accountVersionRegistry.update(account.getId(), version);
+        return version;
     }
 
     /**
@@ -187,50 +853,126 @@ public class AccountService {
      * @param amount    amount to transfer
      */
     public void transfer(String from, String to, BigDecimal amount) {
-        withdraw(from, amount);
-        deposit(to, amount);
+        transfer(getAccountId(from), getAccountId(to), amount);
     }
 
     /**
-     * Gets the most recent ten transactions from an account
+     * Transfers money from one account to another as one journal entry, in one transaction, publishing the balance
+     * change of both accounts once committed. The transfer is checked against the withdrawal rules of the account
+     * transferred from, and against the deposit rules and deposit limits of the account transferred to
      *
-     * @param lastName  last name of account to find transactions of
-     * @return          list containing transactionDTOs for ten most recent transactions
+     * @param fromId    id of account to transfer from
+     * @param toId      id of account to transfer to
+     * @param amount    amount to transfer
+     * @throws PostingRejectedException if a posting rule rejects the transfer, or its withdrawal or deposit
+     * @throws DepositLimitException if the transfer takes the account transferred to over a deposit limit
      */
-    public List<TransactionDTO> getLatestTenTransaction(String lastName) {
-        Account account = getAccountByLastName(lastName);
-        ArrayList<Transaction> allTransactions = transactionRepository.findAllByAccount(account);
-        if (allTransactions.size() > 10) {
-            return mapTransactionListToDTOList(allTransactions.subList(allTransactions.size() - 10, allTransactions.size()));
+    public void transfer(int fromId, int toId, BigDecimal amount) {
+        transfer(fromId, toId, amount, () -> true);
+    }
+
+    /**
+     * Transfers money from one account to another as {@link #transfer(int, int, BigDecimal)} does, after running a
+     * claim in the same transaction. The transfer is only posted if the claim succeeds, and the claim only commits
+     * with the transfer, so a claimed run of a scheduled transfer is never lost to a failure between the two
+     *
+     * @param fromId    id of account to transfer from
+     * @param toId      id of account to transfer to
+     * @param amount    amount to transfer
+     * @param claim     run first in each attempt of the posting; returns false if the transfer is not to be made
+     * @return          true if the claim succeeded and the transfer was made
+     * @throws PostingRejectedException if a posting rule rejects the transfer, or its withdrawal or deposit
+     * @throws DepositLimitException if the transfer takes the account transferred to over a deposit limit
+     */
+    public boolean transfer(int fromId, int toId, BigDecimal amount, BooleanSupplier claim) {
+        PostingRulesEngine.Hold hold = postingRulesEngine.checkTransfer(fromId, toId, amount);
+        Account[] saved;
+        try {
+            saved = inPostingTransaction(status -> claim.getAsBoolean() ? postTransfer(fromId, toId, amount) : null);
+        } catch (RuntimeException e) {
+            hold.release();
+            throw e;
         }
-        else {
-            return mapTransactionListToDTOList(allTransactions);
+        if (saved == null) {
+            hold.release();
+            return false;
+        }
+        hold.keep();
+        publishTransfer(saved[0], amount.negate());
+        publishTransfer(saved[1], amount);
+        return true;
+    }
+
+    /**
+     * Debits one account, credits the other and records both legs in one journal entry. The credit counts against
+     * the deposit limits of the account transferred to, as a deposit would
+     *
+     * @param fromId    id of account to transfer from
+     * @param toId      id of account to transfer to
+     * @param amount    amount to transfer
+     * @return          the updated accounts, transferred from then to
+     */
+    private Account[] postTransfer(int fromId, int toId, BigDecimal amount) {
+        Account from = debit(getAccountByID(fromId), amount);
+        Account to = getAccountByID(toId);
+        DepositLimits limits = depositLimitPolicyService.forTier(to.getTier());
+        DepositUsageTracker.Usage usage = depositUsageTracker.read(toId, LocalDate.now());
+        if (!limits.allows(amount, usage.getDayTotal(), usage.getWeekTotal())) {
+            throw new DepositLimitException();
         }
+        depositUsageTracker.add(usage, amount, limits);
+        to = credit(to, amount);
+        JournalEntry entry = JournalEntry.transfer(from, to, amount);
+        journalEntryRepository.save(entry);
+        accountStatsProjection.recordWithdrawal(from, entry.getDate(), amount);
+        accountStatsProjection.recordDeposits(to, entry.getDate(), 1, amount);
+        return new Account[]{from, to};
     }
 
     /**
-     * Maps a list of transactions to a list of transactionDTOs
+     * Publishes one committed leg of a transfer. A failure to publish is logged and leaves the transfer alone
      *
-     * @param allTransactions   list of transactions
-     * @return                  list of transactionDTOs
+     * @param account   account of the leg, as committed
+     * @param amount    amount of the leg, negative for the debit
      */
-    public List<TransactionDTO> mapTransactionListToDTOList(List<Transaction> allTransactions) {
-        List<TransactionDTO> transactionDTOList = new ArrayList<>();
-        for (Transaction transaction : allTransactions) {
-            transactionDTOList.add(mapTransactionToDTO(transaction));
+    private void publishTransfer(Account account, BigDecimal amount) {
+        try {
+            long version = recordVersion(account);
+            BigDecimal balance = getBalance(account);
+            accountEventBus.publish(new BalanceEvent(account.getId(), account.getLastName(),
+                    TransactionType.TRANSFER.getName(), amount, balance, version));
+            accountLeaderboards.recordPostings(account.getId(), account.getLastName(), balance, version, 1);
+        } catch (RuntimeException e) {
+            log.warn("Transfer leg of {} on account {} committed, but publishing it failed", amount, account.getId(), e);
         }
-        return transactionDTOList;
     }
 
     /**
-     * Maps a transaction to a transactionDTO
+     * Gets the most recent ten transactions from an account
+     *
+     * @param lastName  last name of account to find transactions of
+     * @return          list containing transactionDTOs for ten most recent transactions, oldest first
+     */
+    public List<TransactionDTO> getLatestTenTransaction(String lastName) {
+        return getLatestTenTransaction(getAccountId(lastName));
+    }
+
+    /**
+     * Gets the most recent ten transactions from an account, selected straight into DTOs. The account itself is
+     * only looked up when it has no transactions, to tell an empty history from a missing account
      *
-     * @param transaction   transaction to map
-     * @return              mapped transaction in DTO format
+     * @param id        id of account to find transactions of
+     * @return          list containing transactionDTOs for ten most recent transactions, oldest first
      */
-    private TransactionDTO mapTransactionToDTO(Transaction transaction) {
-        TransactionDTO transactionDTO = new TransactionDTO(transaction.getType(), transaction.getAmount());
-        return transactionDTO;
+    @Transactional(readOnly = true)
+    public List<TransactionDTO> getLatestTenTransaction(int id) {
+        List<TransactionDTO> latest = new ArrayList<>(transactionRepository
+                .findLatestByAccountId(id, PageRequest.of(0, 10)));
+        if (latest.isEmpty() && !accountRepository.existsById(id)) {
+            throw new AccountNotFoundException();
+        }
+        Collections.reverse(latest);
+        return latest;
     }
 
 }
@@ -0,0 +1,119 @@
+package com.ippon.bankapp.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Keeps the latest known version of each account in memory, keyed by account id, so conditional requests can be
+ * answered without loading the account. Versions only ever move forward.
+ *
+ * Entries live in a primitive open addressing table (linear probing over parallel int and long arrays), so a lookup
+ * boxes nothing. Readers take an optimistic stamp and only fall back to the read lock when a write raced them.
+ */
+@Component
+public class AccountVersionRegistry {
+
+    public static final long UNKNOWN_VERSION = -1L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+
+    private Table table = new Table(INITIAL_CAPACITY);
+
+    /**
+     * Gets the latest known version of an account
+     *
+     * @param id    id of the account
+     * @return      the version, or {@link #UNKNOWN_VERSION} when the account has not been seen yet
+     */
+    public long get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        long version = table.find(id);
+        if (lock.validate(stamp)) {
+            return version;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return table.find(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Records a version of an account, ignoring it if a newer version is already known
+     *
+     * @param id        id of the account
+     * @param version   version read from or written to the database
+     */
+    public void update(int id, long version) {
+        long stamp = lock.writeLock();
+        try {
+            if ((table.size + 1) * 2 > table.ids.length) {
+                table = table.resize();
+            }
+            table.put(id, version);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int hash(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Parallel id and version arrays. Versions are stored shifted by one so that zero marks a free slot
+     */
+    private static final class Table {
+
+        private final int[] ids;
+        private final long[] versions;
+        private int size;
+
+        private Table(int capacity) {
+            ids = new int[capacity];
+            versions = new long[capacity];
+        }
+
+        private long find(int id) {
+            int mask = ids.length - 1;
+            for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+                long stored = versions[slot];
+                if (stored == 0) {
+                    return UNKNOWN_VERSION;
+                }
+                if (ids[slot] == id) {
+                    return stored - 1;
+                }
+            }
+        }
+
+        private void put(int id, long version) {
+            int mask = ids.length - 1;
+            int slot = hash(id) & mask;
+            while (versions[slot] != 0 && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (versions[slot] == 0) {
+                ids[slot] = id;
+                size++;
+            }
+            versions[slot] = Math.max(versions[slot], version + 1);
+        }
+
+        private Table resize() {
+            Table resized = new Table(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                if (versions[i] != 0) {
+                    resized.put(ids[i], versions[i] - 1);
+                }
+            }
+            return resized;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ippon.bankapp.service.audit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records every call made to the account service from outside it in the {@link AuditLog}: the operation, its first
+ * two arguments (the account, then the amount, target or query), the exception it failed with if any, and how long
+ * it took.
+ */
+@Aspect
+@Component
+public class AccountServiceAuditAspect {
+
+    private final AuditLog auditLog;
+
+    public AccountServiceAuditAspect(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @Around("execution(public * com.ippon.bankapp.service.AccountService.*(..))")
+    public Object audit(ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        Class<?> outcome = null;
+        try {
+            return call.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass();
+            throw e;
+        } finally {
+            Object[] args = call.getArgs();
+            auditLog.record(call.getSignature().getName(),
+                    args.length > 0 ? args[0] : null,
+                    args.length > 1 ? args[1] : null,
+                    outcome,
+                    System.nanoTime() - start);
+        }
+    }
+}
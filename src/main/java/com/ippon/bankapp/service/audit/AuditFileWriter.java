@@ -0,0 +1,171 @@
+package com.ippon.bankapp.service.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+
+/**
+ * Writes audit records as lines to rotating files.
+ *
+ * Each line holds the record sequence, its fields and a CRC32 checksum seeded with the checksum of the previous line,
+ * so an edited or removed line breaks the chain from there on and a gap in sequences shows lost records. A file is
+ * named after the start of the run and the sequence of its first record; a new one is started by the first flush
+ * after it reaches the maximum size.
+ *
+ * <pre>
+ * sequence|timestamp|operation|subject|detail|outcome|durationNanos|checksum
+ * </pre>
+ *
+ * Lines are kept in memory until a flush has written them out. When writing fails, the failure is logged and
+ * counted, the file is closed and the lines are kept for the next flush, which writes them to a new file. Some of them
+ * may already have reached the old file; their sequence tells the copies apart.
+ */
+class AuditFileWriter implements AuditRingBuffer.AuditRecordHandler, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditFileWriter.class);
+
+    private static final DateTimeFormatter RUN_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final String run;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final StringBuilder pending = new StringBuilder(1 << 16);
+    private long pendingFrom;
+    private long pendingBytes;
+    private final CRC32 crc = new CRC32();
+    private long checksum;
+
+    private BufferedWriter writer;
+    private long fileBytes;
+    private volatile long failures;
+
+    AuditFileWriter(Path directory, long maxFileBytes, Instant start) {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.run = RUN_FORMAT.format(start);
+    }
+
+    @Override
+    public void onRecord(AuditRecord record) {
+        line.setLength(0);
+        line.append(record.getSequence()).append('|')
+                .append(Instant.ofEpochMilli(record.getTimestamp())).append('|')
+                .append(record.getOperation()).append('|');
+        record.getSubject().appendTo(line);
+        line.append('|');
+        record.getDetail().appendTo(line);
+        line.append('|')
+                .append(record.getOutcome() == null ? "ok" : record.getOutcome().getSimpleName())
+                .append('|')
+                .append(record.getDuration());
+
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        crc.reset();
+        crc.update((int) (checksum >>> 24));
+        crc.update((int) (checksum >>> 16));
+        crc.update((int) (checksum >>> 8));
+        crc.update((int) checksum);
+        crc.update(bytes, 0, bytes.length);
+        checksum = crc.getValue();
+        line.append('|').append(String.format("%08x", checksum)).append('\n');
+
+        if (pending.length() == 0) {
+            pendingFrom = record.getSequence();
+        }
+        pending.append(line);
+        pendingBytes += bytes.length + 10;
+    }
+
+    /**
+     * Writes the pending lines out, to a new file when the current one is full or could not be written
+     *
+     * @return  whether the lines were written; if not they are kept for the next flush
+     */
+    boolean flush() {
+        if (pending.length() == 0) {
+            return true;
+        }
+        try {
+            if (writer == null || fileBytes >= maxFileBytes) {
+                rotate(pendingFrom);
+            }
+            writer.append(pending);
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Could not write audit records from {}, keeping them for the next attempt", pendingFrom, e);
+            failures++;
+            closeFailed();
+            return false;
+        }
+        fileBytes += pendingBytes;
+        pending.setLength(0);
+        pendingBytes = 0;
+        return true;
+    }
+
+    /**
+     * @return  whether lines are waiting for a flush
+     */
+    boolean hasPending() {
+        return pending.length() > 0;
+    }
+
+    /**
+     * @return  number of flushes that could not be written
+     */
+    long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Writes the pending lines out, then closes the current file
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void rotate(long firstSequence) throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("audit-%s-%012d.log", run, firstSequence));
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    /**
+     * Closes a file that could not be written, the lines it still buffered are pending anyway
+     */
+    private void closeFailed() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Could not close the audit file", e);
+        }
+        writer = null;
+    }
+}
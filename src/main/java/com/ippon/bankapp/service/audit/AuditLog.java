@@ -0,0 +1,170 @@
+package com.ippon.bankapp.service.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Audit trail of the calls to the account service.
+ *
+ * Callers publish records into an {@link AuditRingBuffer} and go on; a single writer thread drains it in batches into
+ * {@link AuditFileWriter} files, flushing once per batch. Recording a call takes no lock and copies its arguments into
+ * a preallocated slot, without allocating unless an argument is neither text nor a whole number. The writer sleeps a
+ * millisecond whenever it finds the ring empty. On shutdown the ring stops accepting records, and those already in it
+ * are written before the files are closed; calls recorded after that are dropped and counted.
+ *
+ * While the files cannot be written, the writer retries the batch it holds and drains nothing more, so the ring fills
+ * up and callers wait for it like they wait for a slow writer, but only up to {@code bankapp.audit.max-wait-ms}: a
+ * record still without a slot then is dropped and counted in {@code bankapp.audit.dropped}, so a failing disk never
+ * holds up a posting for longer than that.
+ *
+ * Calls the application makes on its own behalf, such as the startup warm-up, can be kept out of the trail by running
+ * them through {@link #unaudited(Supplier)}.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SHUTDOWN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long ABANDON_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final AuditRingBuffer ring;
+    private final AuditFileWriter writer;
+    private final Thread writerThread;
+    private final ThreadLocal<Boolean> suspended = new ThreadLocal<>();
+
+    private volatile boolean running = true;
+    private volatile boolean abandoned;
+
+    public AuditLog(MeterRegistry meterRegistry,
+                    @Value("${bankapp.audit.enabled:true}") boolean enabled,
+                    @Value("${bankapp.audit.directory:audit}") String directory,
+                    @Value("${bankapp.audit.ring-size:65536}") int ringSize,
+                    @Value("${bankapp.audit.batch-size:1024}") int batchSize,
+                    @Value("${bankapp.audit.max-file-bytes:67108864}") long maxFileBytes,
+                    @Value("${bankapp.audit.max-wait-ms:100}") long maxWaitMillis) {
+        this.enabled = enabled;
+        this.batchSize = Math.min(batchSize, ringSize);
+        this.ring = new AuditRingBuffer(ringSize, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        this.writer = new AuditFileWriter(Paths.get(directory), maxFileBytes, Instant.now());
+        this.writerThread = new Thread(this::writeLoop, "audit-writer");
+        this.writerThread.setDaemon(true);
+        if (enabled) {
+            writerThread.start();
+        }
+
+        Gauge.builder("bankapp.audit.pending", ring, AuditRingBuffer::getPending)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankapp.audit.full.waits", ring, AuditRingBuffer::getFullWaits)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankapp.audit.dropped", ring, AuditRingBuffer::getDropped)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankapp.audit.write.failures", writer, AuditFileWriter::getFailures)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a call
+     *
+     * @param operation     name of the operation called
+     * @param subject       first argument of the call, null for none
+     * @param detail        second argument of the call, null for none
+     * @param outcome       null on success, else the class of the exception thrown
+     * @param duration      nanoseconds the call took
+     */
+    public void record(String operation, Object subject, Object detail, Class<?> outcome, long duration) {
+        if (enabled && suspended.get() == null) {
+            ring.publish(System.currentTimeMillis(), operation, subject, detail, outcome, duration);
+        }
+    }
+
+    /**
+     * Runs a task without recording the calls it makes on the current thread
+     *
+     * @param task          the task to run
+     * @return what the task returned
+     */
+    public <T> T unaudited(Supplier<T> task) {
+        if (suspended.get() != null) {
+            return task.get();
+        }
+        suspended.set(Boolean.TRUE);
+        try {
+            return task.get();
+        } finally {
+            suspended.remove();
+        }
+    }
+
+    /**
+     * Stops accepting records, lets the writer drain those already published and closes the files once it has
+     * stopped. A writer still failing after the shutdown timeout is told to give up; if it does not stop even then,
+     * the files are left open rather than closed under it
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        if (!enabled) {
+            return;
+        }
+        ring.close();
+        LockSupport.unpark(writerThread);
+        writerThread.join(SHUTDOWN_MILLIS);
+        if (writerThread.isAlive()) {
+            abandoned = true;
+            LockSupport.unpark(writerThread);
+            writerThread.join(ABANDON_MILLIS);
+        }
+        if (writerThread.isAlive()) {
+            log.warn("Audit writer did not stop, leaving its files open");
+            return;
+        }
+        writer.close();
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (!writeBatch()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        // The ring is closed once running is false; drain what was published before
+        while (!abandoned && !(ring.isDrained() && !writer.hasPending())) {
+            if (!writeBatch()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        if (abandoned) {
+            log.warn("Audit writer gave up on shutdown with {} records unwritten", ring.getPending());
+        } else {
+            log.info("Audit writer stopped");
+        }
+    }
+
+    private boolean writeBatch() {
+        if (!writer.hasPending() && ring.drain(writer, batchSize) == 0) {
+            return false;
+        }
+        if (!writer.flush()) {
+            LockSupport.parkNanos(RETRY_NANOS);
+            return false;
+        }
+        return true;
+    }
+}
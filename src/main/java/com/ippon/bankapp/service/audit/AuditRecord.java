@@ -0,0 +1,108 @@
+package com.ippon.bankapp.service.audit;
+
+import java.math.BigDecimal;
+
+/**
+ * One audit record, preallocated once per slot of the {@link AuditRingBuffer} and overwritten in place.
+ *
+ * A record keeps nothing the caller owns: the operation name and outcome class are interned by the JVM, and the
+ * arguments are copied into {@link Value}s when the record is published.
+ */
+class AuditRecord {
+
+    long sequence;
+    long timestamp;
+    long duration;
+    String operation;
+    Class<?> outcome;
+    final Value subject = new Value();
+    final Value detail = new Value();
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    String getOperation() {
+        return operation;
+    }
+
+    Value getSubject() {
+        return subject;
+    }
+
+    Value getDetail() {
+        return detail;
+    }
+
+    Class<?> getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Copy of an argument of a call, in a fixed-size buffer.
+     *
+     * Whole numbers are kept as a long and text is copied, both without allocating; any other value is copied from
+     * its {@code toString()}. Text is cut to {@link #MAX_CHARS} characters, and the field and line separators of the
+     * audit files are replaced by spaces.
+     */
+    static final class Value {
+
+        static final int MAX_CHARS = 64;
+
+        private final char[] chars = new char[MAX_CHARS];
+        private int length;
+        private boolean number;
+        private long numberValue;
+
+        void set(Object value) {
+            number = false;
+            length = 0;
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                number = true;
+                numberValue = ((Number) value).longValue();
+            } else if (value instanceof BigDecimal && ((BigDecimal) value).scale() == 0
+                    && ((BigDecimal) value).precision() < 19) {
+                number = true;
+                numberValue = ((BigDecimal) value).longValue();
+            } else {
+                CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+                length = Math.min(text.length(), MAX_CHARS);
+                for (int i = 0; i < length; i++) {
+                    char c = text.charAt(i);
+                    chars[i] = c == '|' || c == '\n' || c == '\r' ? ' ' : c;
+                }
+            }
+        }
+
+        /**
+         * Appends the value to a line, nothing when there is none
+         *
+         * @param line  line being built
+         */
+        void appendTo(StringBuilder line) {
+            if (number) {
+                line.append(numberValue);
+            } else {
+                line.append(chars, 0, length);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(MAX_CHARS);
+            appendTo(text);
+            return text.toString();
+        }
+    }
+}
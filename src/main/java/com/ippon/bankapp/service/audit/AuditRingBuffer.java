@@ -0,0 +1,184 @@
+package com.ippon.bankapp.service.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated ring of fixed-size audit records, written by any number of producers and read by a single consumer.
+ *
+ * A producer claims the next sequence with one atomic increment, fills the slot the sequence maps to and publishes
+ * it by storing the sequence in the slot's marker. The consumer reads slots in sequence order while their marker
+ * matches, then releases them by moving its cursor forward. Each slot holds a record allocated once, which the
+ * producer overwrites with copies of the call arguments (see {@link AuditRecord.Value}), so the ring holds on to
+ * nothing the callers own and publishing takes no lock. When the consumer falls a whole ring behind, producers wait
+ * for it rather than overwrite records nobody has written yet, up to a bound; a record still without a slot then is
+ * dropped and counted. A producer only claims a sequence once its slot is free, so a dropped record leaves no gap the
+ * consumer would wait on.
+ *
+ * Closing the ring sets a bit in the claimed sequence, so no record is claimed after it and the consumer knows the
+ * last sequence it has to drain.
+ */
+class AuditRingBuffer {
+
+    private static final long NOT_PUBLISHED = -1L;
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final long PARK_NANOS = 1000;
+
+    private final int mask;
+    private final long capacity;
+    private final long maxWaitNanos;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLongArray published;
+    private final LongAdder fullWaits = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private final AuditRecord[] records;
+
+    private long next;
+
+    /**
+     * @param capacity      number of slots, a power of two
+     * @param maxWaitNanos  longest a producer waits for a free slot before dropping its record
+     */
+    AuditRingBuffer(int capacity, long maxWaitNanos) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Audit ring capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.capacity = capacity;
+        this.maxWaitNanos = maxWaitNanos;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, NOT_PUBLISHED);
+        }
+        this.records = new AuditRecord[capacity];
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new AuditRecord();
+        }
+    }
+
+    /**
+     * Publishes a record, waiting for a free slot up to the maximum wait when the ring is full
+     *
+     * @param timestamp     epoch milliseconds of the call
+     * @param operation     name of the operation called
+     * @param subject       first argument of the call, null for none
+     * @param detail        second argument of the call, null for none
+     * @param outcome       null on success, else the class of the exception thrown
+     * @param duration      nanoseconds the call took
+     * @return              sequence of the record, -1 if it was dropped because the ring is closed or stayed full
+     */
+    long publish(long timestamp, String operation, Object subject, Object detail, Class<?> outcome, long duration) {
+        long sequence;
+        long deadline = 0;
+        boolean waited = false;
+        while (true) {
+            sequence = claimed.get();
+            if ((sequence & CLOSED) != 0) {
+                dropped.increment();
+                return -1;
+            }
+            if (sequence - consumed.get() < capacity) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+                continue;
+            }
+            if (!waited) {
+                waited = true;
+                fullWaits.increment();
+                deadline = System.nanoTime() + maxWaitNanos;
+            } else if (System.nanoTime() - deadline >= 0) {
+                dropped.increment();
+                return -1;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+
+        int slot = (int) sequence & mask;
+        AuditRecord record = records[slot];
+        record.sequence = sequence;
+        record.timestamp = timestamp;
+        record.duration = duration;
+        record.operation = operation;
+        record.outcome = outcome;
+        record.subject.set(subject);
+        record.detail.set(detail);
+        published.lazySet(slot, sequence);
+        return sequence;
+    }
+
+    /**
+     * Hands the next published records to a handler, in sequence order, then frees their slots. Only one thread may
+     * drain
+     *
+     * @param handler   receives each record, only valid during the call
+     * @param maxBatch  maximum number of records
+     * @return          number of records handed over
+     */
+    int drain(AuditRecordHandler handler, int maxBatch) {
+        int count = 0;
+        while (count < maxBatch) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next) {
+                break;
+            }
+            handler.onRecord(records[slot]);
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            consumed.lazySet(next);
+        }
+        return count;
+    }
+
+    /**
+     * Stops accepting records. Those claimed before are still published and can be drained
+     */
+    void close() {
+        long current = claimed.get();
+        while ((current & CLOSED) == 0 && !claimed.compareAndSet(current, current | CLOSED)) {
+            current = claimed.get();
+        }
+    }
+
+    /**
+     * @return  true once the ring is closed and every record claimed before has been drained. Only the draining
+     *          thread may ask
+     */
+    boolean isDrained() {
+        long current = claimed.get();
+        return (current & CLOSED) != 0 && next == (current & ~CLOSED);
+    }
+
+    /**
+     * @return  number of records claimed but not drained yet
+     */
+    long getPending() {
+        return (claimed.get() & ~CLOSED) - consumed.get();
+    }
+
+    /**
+     * @return  number of publications that had to wait for the consumer
+     */
+    long getFullWaits() {
+        return fullWaits.sum();
+    }
+
+    /**
+     * @return  number of records dropped, for a ring that stayed full or was closed
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    interface AuditRecordHandler {
+
+        void onRecord(AuditRecord record);
+    }
+}
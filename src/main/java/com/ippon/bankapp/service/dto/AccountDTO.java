@@ -6,6 +6,8 @@ import java.util.Objects;
 
 public class AccountDTO {
 
+    private Integer id;
+
     @NotEmpty
     private String firstName;
 
@@ -16,9 +18,28 @@ public class AccountDTO {
 
     private String notificationPreference;
 
+    /**
+     * Tier of the account, deciding its deposit limits. Ignored when creating an account, which always starts in the
+     * standard tier
+     */
+    private String tier;
+
     public AccountDTO() {
     }
 
+    public Integer getId() {
+        return id;
+    }
+
+    public AccountDTO id(Integer id) {
+        this.id = id;
+        return this;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -71,6 +92,19 @@ public class AccountDTO {
         this.notificationPreference = notificationPreference;
     }
 
+    public String getTier() {
+        return tier;
+    }
+
+    public AccountDTO tier(String tier) {
+        this.tier = tier;
+        return this;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -87,10 +121,12 @@ public class AccountDTO {
     @Override
     public String toString() {
         return "AccountDTO{" +
-                "firstName='" + firstName + '\'' +
+                "id=" + id +
+                ", firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
                 ", balance=" + balance +
                 ", notificationPreference='" + notificationPreference + '\'' +
+                ", tier='" + tier + '\'' +
                 '}';
     }
 }
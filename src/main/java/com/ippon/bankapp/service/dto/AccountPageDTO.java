@@ -0,0 +1,40 @@
+package com.ippon.bankapp.service.dto;
+
+import java.util.List;
+
+/**
+ * A DTO to hold one page of the account listing and the cursor of the next page
+ */
+public class AccountPageDTO {
+
+    private List<AccountDTO> accounts;
+
+    private Integer next;
+
+    public AccountPageDTO() {
+    }
+
+    public AccountPageDTO(List<AccountDTO> accounts, Integer next) {
+        this.accounts = accounts;
+        this.next = next;
+    }
+
+    public List<AccountDTO> getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(List<AccountDTO> accounts) {
+        this.accounts = accounts;
+    }
+
+    /**
+     * @return  cursor to pass as {@code after} to read the next page, null on the last page
+     */
+    public Integer getNext() {
+        return next;
+    }
+
+    public void setNext(Integer next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,70 @@
+package com.ippon.bankapp.service.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A DTO to hold the deposit and withdrawal statistics of an account for one month
+ */
+public class AccountStatsDTO {
+
+    /**
+     * The month, formatted as yyyy-MM
+     */
+    private String month;
+
+    private long depositCount;
+
+    private BigDecimal depositTotal;
+
+    private BigDecimal depositAverage;
+
+    private long withdrawalCount;
+
+    private BigDecimal withdrawalTotal;
+
+    private BigDecimal withdrawalAverage;
+
+    public AccountStatsDTO(String month,
+                           long depositCount,
+                           BigDecimal depositTotal,
+                           BigDecimal depositAverage,
+                           long withdrawalCount,
+                           BigDecimal withdrawalTotal,
+                           BigDecimal withdrawalAverage) {
+        this.month = month;
+        this.depositCount = depositCount;
+        this.depositTotal = depositTotal;
+        this.depositAverage = depositAverage;
+        this.withdrawalCount = withdrawalCount;
+        this.withdrawalTotal = withdrawalTotal;
+        this.withdrawalAverage = withdrawalAverage;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public long getDepositCount() {
+        return depositCount;
+    }
+
+    public BigDecimal getDepositTotal() {
+        return depositTotal;
+    }
+
+    public BigDecimal getDepositAverage() {
+        return depositAverage;
+    }
+
+    public long getWithdrawalCount() {
+        return withdrawalCount;
+    }
+
+    public BigDecimal getWithdrawalTotal() {
+        return withdrawalTotal;
+    }
+
+    public BigDecimal getWithdrawalAverage() {
+        return withdrawalAverage;
+    }
+}
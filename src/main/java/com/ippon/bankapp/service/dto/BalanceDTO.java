@@ -0,0 +1,38 @@
+package com.ippon.bankapp.service.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A DTO to hold the balance of an account at the end of a day
+ */
+public class BalanceDTO {
+
+    private LocalDate asOf;
+
+    private BigDecimal balance;
+
+    public BalanceDTO() {
+    }
+
+    public BalanceDTO(LocalDate asOf, BigDecimal balance) {
+        this.asOf = asOf;
+        this.balance = balance;
+    }
+
+    public LocalDate getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(LocalDate asOf) {
+        this.asOf = asOf;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,25 @@
+package com.ippon.bankapp.service.dto;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * A DTO to hold the number of balance slots a hot account should be split into
+ */
+public class BalanceSlotsDTO {
+
+    public BalanceSlotsDTO() {
+    }
+
+    @Min(value = 2)
+    @Max(value = 64)
+    private int slots;
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ippon.bankapp.service.dto;
+
+import javax.validation.constraints.DecimalMin;
+import java.math.BigDecimal;
+
+/**
+ * A DTO to hold the deposit limits of an account tier. A limit left empty does not apply
+ */
+public class DepositLimitPolicyDTO {
+
+    public DepositLimitPolicyDTO() {
+    }
+
+    private String tier;
+
+    /**
+     * Largest single deposit
+     */
+    @DecimalMin(value = "0")
+    private BigDecimal perTransactionLimit;
+
+    /**
+     * Most money deposited in a day
+     */
+    @DecimalMin(value = "0")
+    private BigDecimal dailyLimit;
+
+    /**
+     * Most money deposited in a week, from Monday
+     */
+    @DecimalMin(value = "0")
+    private BigDecimal weeklyLimit;
+
+    public String getTier() {
+        return tier;
+    }
+
+    public DepositLimitPolicyDTO tier(String tier) {
+        this.tier = tier;
+        return this;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public BigDecimal getPerTransactionLimit() {
+        return perTransactionLimit;
+    }
+
+    public DepositLimitPolicyDTO perTransactionLimit(BigDecimal perTransactionLimit) {
+        this.perTransactionLimit = perTransactionLimit;
+        return this;
+    }
+
+    public void setPerTransactionLimit(BigDecimal perTransactionLimit) {
+        this.perTransactionLimit = perTransactionLimit;
+    }
+
+    public BigDecimal getDailyLimit() {
+        return dailyLimit;
+    }
+
+    public DepositLimitPolicyDTO dailyLimit(BigDecimal dailyLimit) {
+        this.dailyLimit = dailyLimit;
+        return this;
+    }
+
+    public void setDailyLimit(BigDecimal dailyLimit) {
+        this.dailyLimit = dailyLimit;
+    }
+
+    public BigDecimal getWeeklyLimit() {
+        return weeklyLimit;
+    }
+
+    public DepositLimitPolicyDTO weeklyLimit(BigDecimal weeklyLimit) {
+        this.weeklyLimit = weeklyLimit;
+        return this;
+    }
+
+    public void setWeeklyLimit(BigDecimal weeklyLimit) {
+        this.weeklyLimit = weeklyLimit;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ippon.bankapp.service.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A DTO to hold one account of a leaderboard, with its rank and the value it is ranked by
+ */
+public class LeaderboardEntryDTO {
+
+    private int rank;
+
+    private int accountId;
+
+    private String lastName;
+
+    private BigDecimal value;
+
+    public LeaderboardEntryDTO() {
+    }
+
+    public LeaderboardEntryDTO(int rank, int accountId, String lastName, BigDecimal value) {
+        this.rank = rank;
+        this.accountId = accountId;
+        this.lastName = lastName;
+        this.value = value;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public void setValue(BigDecimal value) {
+        this.value = value;
+    }
+}
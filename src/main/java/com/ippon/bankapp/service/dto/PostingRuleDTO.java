@@ -0,0 +1,111 @@
+package com.ippon.bankapp.service.dto;
+
+import com.ippon.bankapp.service.rules.PostingKind;
+import com.ippon.bankapp.service.rules.PostingRuleType;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * A DTO to hold the definition of a velocity or fraud rule checked on every posting
+ */
+public class PostingRuleDTO {
+
+    public PostingRuleDTO() {
+    }
+
+    /**
+     * Name reported when the rule rejects a posting
+     */
+    @NotNull
+    private String name;
+
+    @NotNull
+    private PostingRuleType type;
+
+    /**
+     * Kind of posting the rule applies to, or every kind when not set
+     */
+    private PostingKind appliesTo;
+
+    /**
+     * Length of the sliding window of the count and amount rules
+     */
+    @Min(0)
+    private long windowSeconds;
+
+    /**
+     * Most postings in the window for a count rule; most money in the window for an amount rule; largest transfer to
+     * an account never transferred to before for a new counterparty rule
+     */
+    @NotNull
+    @DecimalMin(value = "0")
+    private BigDecimal limit;
+
+    public String getName() {
+        return name;
+    }
+
+    public PostingRuleDTO name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public PostingRuleType getType() {
+        return type;
+    }
+
+    public PostingRuleDTO type(PostingRuleType type) {
+        this.type = type;
+        return this;
+    }
+
+    public void setType(PostingRuleType type) {
+        this.type = type;
+    }
+
+    public PostingKind getAppliesTo() {
+        return appliesTo;
+    }
+
+    public PostingRuleDTO appliesTo(PostingKind appliesTo) {
+        this.appliesTo = appliesTo;
+        return this;
+    }
+
+    public void setAppliesTo(PostingKind appliesTo) {
+        this.appliesTo = appliesTo;
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public PostingRuleDTO windowSeconds(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+        return this;
+    }
+
+    public void setWindowSeconds(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public BigDecimal getLimit() {
+        return limit;
+    }
+
+    public PostingRuleDTO limit(BigDecimal limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public void setLimit(BigDecimal limit) {
+        this.limit = limit;
+    }
+}
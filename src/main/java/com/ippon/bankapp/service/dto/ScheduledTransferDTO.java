@@ -0,0 +1,123 @@
+package com.ippon.bankapp.service.dto;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A DTO to hold a transfer scheduled for later, once or repeatedly
+ */
+public class ScheduledTransferDTO {
+
+    public ScheduledTransferDTO() {
+    }
+
+    private Integer id;
+
+    /**
+     * The last name of the account which to transfer from
+     */
+    @NotNull
+    private String from;
+
+    /**
+     * The last name of the account which to transfer to
+     */
+    @NotNull
+    private String to;
+
+    /**
+     * The amount to be transferred on every run
+     */
+    @NotNull
+    @DecimalMin(value = "0.01")
+    private BigDecimal amount;
+
+    /**
+     * When the transfer is next run. Set to the first run when scheduling
+     */
+    @NotNull
+    private Instant nextRunAt;
+
+    /**
+     * Number of days between runs, zero for a transfer that runs once
+     */
+    @Min(0)
+    private int intervalDays;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public ScheduledTransferDTO id(Integer id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public ScheduledTransferDTO from(String from) {
+        this.from = from;
+        return this;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public ScheduledTransferDTO to(String to) {
+        this.to = to;
+        return this;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public ScheduledTransferDTO amount(BigDecimal amount) {
+        this.amount = amount;
+        return this;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public Instant getNextRunAt() {
+        return nextRunAt;
+    }
+
+    public ScheduledTransferDTO nextRunAt(Instant nextRunAt) {
+        this.nextRunAt = nextRunAt;
+        return this;
+    }
+
+    public void setNextRunAt(Instant nextRunAt) {
+        this.nextRunAt = nextRunAt;
+    }
+
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+
+    public ScheduledTransferDTO intervalDays(int intervalDays) {
+        this.intervalDays = intervalDays;
+        return this;
+    }
+
+    public void setIntervalDays(int intervalDays) {
+        this.intervalDays = intervalDays;
+    }
+}
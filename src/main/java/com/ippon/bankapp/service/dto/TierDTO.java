@@ -0,0 +1,23 @@
+package com.ippon.bankapp.service.dto;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * A DTO to hold the tier an account is moved to
+ */
+public class TierDTO {
+
+    public TierDTO() {
+    }
+
+    @NotBlank
+    private String tier;
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+}
@@ -1,7 +1,13 @@
 package com.ippon.bankapp.service.dto;
 
+import com.ippon.bankapp.domain.TransactionType;
+
 import java.math.BigDecimal;
 
+/**
+ * A DTO to hold one posting to an account, as seen from the account: the amount is positive when credited and
+ * negative when debited
+ */
 public class TransactionDTO {
     private String type;
 
@@ -12,6 +18,10 @@ public class TransactionDTO {
         this.amount = amount;
     }
 
+    public TransactionDTO(TransactionType type, BigDecimal amount) {
+        this(type.getName(), amount);
+    }
+
     public String getType() {
         return type;
     }
@@ -0,0 +1,284 @@
+package com.ippon.bankapp.service.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process publish/subscribe bus for balance changes, keyed by account id.
+ *
+ * The subscribers of an account are kept as an immutable array replaced on subscribe and cancel, so publishing is a
+ * lock-free map read and a loop over the array. Each subscriber has a bounded lock-free buffer drained by a shared
+ * pool of delivery threads; publishers never block on a subscriber. A subscriber whose buffer overflows is too slow
+ * to keep up and is evicted, its sink closed so the client can reconnect.
+ *
+ * A send can block on a client that stopped reading, so it is handed to a thread of its own and the delivery thread
+ * waits for it only up to a timeout. A subscriber whose send times out is evicted too; the stuck send only holds its
+ * own thread, and the delivery threads stay free for the others. Calls to a sink are serialized by a lock of its
+ * subscription, so closing an evicted sink waits for a send still in progress instead of racing it.
+ */
+@Component
+public class AccountEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountEventBus.class);
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    private final ConcurrentHashMap<Integer, Subscription[]> subscriptions = new ConcurrentHashMap<>();
+    private final int bufferSize;
+    private final long sendTimeoutMillis;
+    private final ExecutorService deliveryExecutor;
+    private final ExecutorService sendExecutor;
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public AccountEventBus(@Value("${bankapp.events.buffer-size:64}") int bufferSize,
+                           @Value("${bankapp.events.delivery-threads:4}") int deliveryThreads,
+                           @Value("${bankapp.events.send-timeout-ms:5000}") long sendTimeoutMillis) {
+        this.bufferSize = bufferSize;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.deliveryExecutor = Executors.newFixedThreadPool(deliveryThreads, new DeliveryThreadFactory("delivery"));
+        this.sendExecutor = Executors.newCachedThreadPool(new DeliveryThreadFactory("send"));
+    }
+
+    /**
+     * Subscribes to the balance changes of an account
+     *
+     * @param accountId     id of the account
+     * @param sink          where the events are delivered, on a delivery thread
+     * @return              the subscription, to cancel when the client goes away
+     */
+    public Subscription subscribe(int accountId, EventSink sink) {
+        Subscription subscription = new Subscription(accountId, sink);
+        subscriptions.compute(accountId, (id, current) -> {
+            Subscription[] existing = current == null ? NO_SUBSCRIPTIONS : current;
+            Subscription[] updated = Arrays.copyOf(existing, existing.length + 1);
+            updated[existing.length] = subscription;
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        return subscription;
+    }
+
+    /**
+     * Hands an event to every subscriber of its account without waiting for delivery
+     *
+     * @param event     the balance change
+     */
+    public void publish(BalanceEvent event) {
+        Subscription[] current = subscriptions.get(event.getAccountId());
+        if (current == null) {
+            return;
+        }
+        for (Subscription subscription : current) {
+            subscription.offer(event);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.accountId, (id, current) -> {
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) {
+                return current;
+            }
+            if (current.length == 1) {
+                return null;
+            }
+            Subscription[] updated = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            return updated;
+        });
+        subscriberCount.decrementAndGet();
+    }
+
+    private void execute(ExecutorService executor, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Account event bus is shut down, dropping delivery");
+        }
+    }
+
+    /**
+     * Receives the events of one subscription. Calls are never concurrent, and none follows close
+     */
+    public interface EventSink {
+
+        void send(BalanceEvent event) throws IOException;
+
+        /**
+         * Called once when the subscriber is evicted for falling behind or for a send that timed out
+         */
+        void close();
+    }
+
+    /**
+     * One subscriber of an account, with its buffer of events not yet delivered
+     */
+    public final class Subscription {
+
+        private final int accountId;
+        private final EventSink sink;
+        private final ConcurrentLinkedQueue<BalanceEvent> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final Object sinkLock = new Object();
+        private boolean sinkClosed;
+
+        private Subscription(int accountId, EventSink sink) {
+            this.accountId = accountId;
+            this.sink = sink;
+        }
+
+        /**
+         * Stops the delivery of events and removes the subscriber from the bus. Safe to call more than once
+         */
+        public void cancel() {
+            markCancelled();
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        private void offer(BalanceEvent event) {
+            if (cancelled.get()) {
+                return;
+            }
+            if (buffered.incrementAndGet() > bufferSize) {
+                evict();
+                return;
+            }
+            buffer.add(event);
+            scheduleDrain();
+        }
+
+        private boolean markCancelled() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            buffer.clear();
+            remove(this);
+            return true;
+        }
+
+        private void evict() {
+            if (!markCancelled()) {
+                return;
+            }
+            evictionCount.incrementAndGet();
+            log.debug("Evicting slow subscriber of account {}", accountId);
+            execute(sendExecutor, () -> {
+                synchronized (sinkLock) {
+                    sinkClosed = true;
+                    sink.close();
+                }
+            });
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                execute(deliveryExecutor, this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                BalanceEvent event;
+                while (!cancelled.get() && (event = buffer.poll()) != null) {
+                    buffered.decrementAndGet();
+                    send(event);
+                }
+            } catch (TimeoutException e) {
+                log.debug("Subscriber of account {} did not take an event within {} ms", accountId, sendTimeoutMillis);
+                evict();
+            } catch (ExecutionException e) {
+                log.debug("Delivery to a subscriber of account {} failed, cancelling it", accountId, e.getCause());
+                cancel();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            } catch (RuntimeException e) {
+                log.debug("Delivery to a subscriber of account {} failed, cancelling it", accountId, e);
+                cancel();
+            } finally {
+                draining.set(false);
+            }
+            if (!cancelled.get() && !buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * Sends an event on a send thread, waiting for it up to the send timeout
+         */
+        private void send(BalanceEvent event) throws ExecutionException, InterruptedException, TimeoutException {
+            Future<?> sent = sendExecutor.submit(() -> {
+                synchronized (sinkLock) {
+                    if (!sinkClosed) {
+                        sink.send(event);
+                    }
+                }
+                return null;
+            });
+            try {
+                sent.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                sent.cancel(true);
+                throw e;
+            }
+        }
+    }
+
+    private static final class DeliveryThreadFactory implements ThreadFactory {
+
+        private final String role;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DeliveryThreadFactory(String role) {
+            this.role = role;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "account-events-" + role + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ippon.bankapp.service.events;
+
+import java.math.BigDecimal;
+
+/**
+ * A posting that changed the balance of an account, as pushed to balance change feed subscribers
+ */
+public class BalanceEvent {
+
+    private final int accountId;
+    private final String lastName;
+    private final String type;
+    private final BigDecimal amount;
+    private final BigDecimal balance;
+    private final long version;
+
+    public BalanceEvent(int accountId, String lastName, String type, BigDecimal amount, BigDecimal balance, long version) {
+        this.accountId = accountId;
+        this.lastName = lastName;
+        this.type = type;
+        this.amount = amount;
+        this.balance = balance;
+        this.version = version;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceEvent{" +
+                "accountId=" + accountId +
+                ", type='" + type + '\'' +
+                ", amount=" + amount +
+                ", balance=" + balance +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,17 @@
+package com.ippon.bankapp.service.exception;
+
+public class PostingRejectedException extends BankAppException {
+
+    private final String rule;
+
+    public PostingRejectedException(String rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * @return  name of the rule that rejected the posting
+     */
+    public String getRule() {
+        return rule;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ippon.bankapp.service.history;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the balance checkpoints at startup when the application is started with
+ * {@code --rebuild-balance-checkpoints}
+ */
+@Component
+public class BalanceCheckpointRebuildRunner implements ApplicationRunner {
+
+    public static final String REBUILD_OPTION = "rebuild-balance-checkpoints";
+
+    private final BalanceHistory balanceHistory;
+
+    public BalanceCheckpointRebuildRunner(BalanceHistory balanceHistory) {
+        this.balanceHistory = balanceHistory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(REBUILD_OPTION)) {
+            balanceHistory.rebuild();
+        }
+    }
+}
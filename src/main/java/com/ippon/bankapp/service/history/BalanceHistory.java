@@ -0,0 +1,177 @@
+package com.ippon.bankapp.service.history;
+
+import com.ippon.bankapp.domain.BalanceCheckpoint;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceCheckpointRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Balances of accounts at past dates, from daily closing balance checkpoints.
+ *
+ * Once a day is over, every account posted to that day gets a checkpoint holding its balance at the end of the day.
+ * The balance at the end of any day is then the latest checkpoint up to that day plus the postings since, which
+ * are only those of days not closed yet, so a lookup is one checkpoint read and a short range read of the
+ * transaction legs, however long the history.
+ *
+ * Days are closed in order, each in one transaction, and the latest checkpoint marks how far closing has got, so a
+ * missed run catches up on the next. Every instance runs the close; when two close the same day, the unique index on
+ * (account_id, date) lets the first commit win and the other skips the day.
+ *
+ * A day is only closed once the settle margin has passed after its end. Postings are dated inside their transaction,
+ * and posting transactions time out well within the margin, so every posting dated on a day has committed
+ * before the day is closed.
+ */
+@Component
+public class BalanceHistory {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceHistory.class);
+
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildChunkSize;
+    private final Duration settleMargin;
+
+    public BalanceHistory(BalanceCheckpointRepository balanceCheckpointRepository,
+                          TransactionRepository transactionRepository,
+                          AccountRepository accountRepository,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${bankapp.checkpoints.rebuild.chunk-size:500}") int rebuildChunkSize,
+                          @Value("${bankapp.checkpoints.settle-margin-ms:120000}") long settleMarginMillis) {
+        this.balanceCheckpointRepository = balanceCheckpointRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.settleMargin = Duration.ofMillis(settleMarginMillis);
+    }
+
+    /**
+     * Gets the balance of an account at the end of a day
+     *
+     * @param accountId     id of the account
+     * @param asOf          the day
+     * @return              the balance, zero before the first posting
+     */
+    public BigDecimal getBalanceAsOf(int accountId, LocalDate asOf) {
+        Optional<BalanceCheckpoint> checkpoint = balanceCheckpointRepository
+                .findFirstByAccountIdAndDateLessThanEqualOrderByDateDesc(accountId, asOf);
+        if (!checkpoint.isPresent()) {
+            return transactionRepository.sumAmountByAccountIdUpTo(accountId, asOf).orElse(BigDecimal.ZERO);
+        }
+        if (checkpoint.get().getDate().equals(asOf)) {
+            return checkpoint.get().getBalance();
+        }
+        return checkpoint.get().getBalance().add(transactionRepository
+                .sumAmountByAccountIdAfterAndUpTo(accountId, checkpoint.get().getDate(), asOf)
+                .orElse(BigDecimal.ZERO));
+    }
+
+    /**
+     * Closes every day with postings since the last closed one, up to the last day settled
+     *
+     * @return  number of days closed by this call
+     */
+    @Scheduled(cron = "${bankapp.checkpoints.cron:0 5 0 * * *}")
+    public int closeDays() {
+        return closeDays(LocalDateTime.now());
+    }
+
+    /**
+     * @param now   current time
+     * @return      number of days closed by this call
+     */
+    int closeDays(LocalDateTime now) {
+        LocalDate lastSettled = now.minus(settleMargin).toLocalDate().minusDays(1);
+        Optional<LocalDate> lastClosed = balanceCheckpointRepository.findLatestDate();
+        Optional<LocalDate> after = lastClosed.isPresent()
+                ? lastClosed
+                : transactionRepository.findFirstPostingDate().map(first -> first.minusDays(1));
+        if (!after.isPresent()) {
+            return 0;
+        }
+
+        List<LocalDate> days = transactionRepository.findPostingDates(after.get(), lastSettled);
+        int closed = 0;
+        for (LocalDate day : days) {
+            try {
+                transactionTemplate.execute(status -> {
+                    closeDay(day);
+                    return null;
+                });
+                closed++;
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                log.info("Balances of {} were closed by another instance", day);
+            }
+        }
+        if (closed > 0) {
+            log.info("Closed balances of {} days up to {}", closed, days.get(days.size() - 1));
+        }
+        return closed;
+    }
+
+    /**
+     * Throws the checkpoints away and recomputes them from the transaction legs, accounts in chunks each in its own
+     * transaction. Meant to run while the daily close is not running
+     *
+     * @return  number of accounts rebuilt
+     */
+    public int rebuild() {
+        LocalDate today = LocalDate.now();
+        List<Integer> accountIds = accountRepository.findAllIds();
+        transactionTemplate.execute(status -> balanceCheckpointRepository.deleteAllInBulk());
+
+        for (int from = 0; from < accountIds.size(); from += rebuildChunkSize) {
+            List<Integer> chunk = accountIds.subList(from, Math.min(from + rebuildChunkSize, accountIds.size()));
+            transactionTemplate.execute(status -> {
+                for (Integer accountId : chunk) {
+                    balanceCheckpointRepository.saveAll(checkpoints(accountId, today));
+                }
+                return null;
+            });
+        }
+
+        log.info("Rebuilt balance checkpoints for {} accounts", accountIds.size());
+        return accountIds.size();
+    }
+
+    private void closeDay(LocalDate day) {
+        List<BalanceCheckpoint> checkpoints = new ArrayList<>();
+        for (TransactionRepository.AccountTotal total : transactionRepository.sumAmountsByAccountOn(day)) {
+            BigDecimal opening = balanceCheckpointRepository
+                    .findFirstByAccountIdAndDateLessThanEqualOrderByDateDesc(total.getAccountId(), day.minusDays(1))
+                    .map(BalanceCheckpoint::getBalance)
+                    .orElse(BigDecimal.ZERO);
+            checkpoints.add(new BalanceCheckpoint(total.getAccountId(), day, opening.add(total.getTotal())));
+        }
+        balanceCheckpointRepository.saveAll(checkpoints);
+    }
+
+    private List<BalanceCheckpoint> checkpoints(int accountId, LocalDate before) {
+        List<BalanceCheckpoint> checkpoints = new ArrayList<>();
+        BigDecimal balance = BigDecimal.ZERO;
+        for (TransactionRepository.DayTotal total :
+                transactionRepository.sumAmountsByAccountIdPerDayBefore(accountId, before)) {
+            balance = balance.add(total.getTotal());
+            checkpoints.add(new BalanceCheckpoint(accountId, total.getDate(), balance));
+        }
+        return checkpoints;
+    }
+}
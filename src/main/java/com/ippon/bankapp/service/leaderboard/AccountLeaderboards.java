@@ -0,0 +1,239 @@
+package com.ippon.bankapp.service.leaderboard;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.dto.LeaderboardEntryDTO;
+import com.ippon.bankapp.service.posting.BalanceSlotService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live leaderboards of the accounts with the largest balances and of the accounts with the most postings today.
+ *
+ * Seeded from the database once every bean is created, before the web server or the schedulers start, then kept up
+ * to date by the postings themselves once committed, so reading a leaderboard never queries the account or
+ * transaction tables. Balance updates carry the account version and older ones are ignored, so postings completing
+ * out of order leave the latest balance ranked.
+ *
+ * A rebuild fills a new board and swaps it in whole, so readers never see a partly built one; postings recorded
+ * meanwhile go to both boards. Each day's activity is ranked in a ranking of its own, replaced rather than cleared
+ * on the first posting or read of a new day, so a posting racing the change of day lands on one day or the other.
+ */
+@Component
+public class AccountLeaderboards implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountLeaderboards.class);
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceSlotService balanceSlotService;
+    private final int maxSize;
+
+    private volatile Board board = new Board(LocalDate.now());
+    private volatile Board building;
+
+    public AccountLeaderboards(AccountRepository accountRepository,
+                               TransactionRepository transactionRepository,
+                               BalanceSlotService balanceSlotService,
+                               @Value("${bankapp.leaderboards.max-size:100}") int maxSize) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceSlotService = balanceSlotService;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Ranks every existing account by balance and by today's postings on a new board, then swaps it in. Postings
+     * counted by the database while also recorded on the new board are counted twice in today's activity, which
+     * cannot happen before the application takes traffic
+     */
+    public synchronized void rebuild() {
+        LocalDate today = LocalDate.now();
+        Board next = new Board(today);
+        building = next;
+
+        for (Account account : accountRepository.findAll()) {
+            BigDecimal balance = account.getBalance();
+            long version = account.getVersion();
+            if (account.isSplitBalance()) {
+                BalanceSlotRepository.SlotTotals totals = balanceSlotService.getTotals(account);
+                balance = totals.getBalance();
+                version += totals.getVersion();
+            }
+            next.update(account.getId(), account.getLastName(), balance, version, today, 0);
+        }
+        for (TransactionRepository.AccountCount count : transactionRepository.countByAccountOn(today)) {
+            Standing standing = next.standings.get(count.getAccountId());
+            if (standing != null) {
+                next.update(count.getAccountId(), standing.lastName, null, 0, today, count.getCount());
+            }
+        }
+
+        board = next;
+        building = null;
+        log.info("Account leaderboards built with {} accounts, {} active today",
+                next.balances.size(), next.activity.ranking.size());
+    }
+
+    /**
+     * Ranks a new account
+     *
+     * @param account   account just created
+     */
+    public void add(Account account) {
+        update(account.getId(), account.getLastName(), account.getBalance(), account.getVersion(), LocalDate.now(), 0);
+    }
+
+    /**
+     * Records committed postings to an account
+     *
+     * @param accountId     id of the account
+     * @param lastName      last name of the account
+     * @param balance       balance of the account after the postings
+     * @param version       version of the account after the postings
+     * @param postings      number of postings
+     */
+    public void recordPostings(int accountId, String lastName, BigDecimal balance, long version, int postings) {
+        update(accountId, lastName, balance, version, LocalDate.now(), postings);
+    }
+
+    /**
+     * Reads the head of a leaderboard
+     *
+     * @param type      what the accounts are ranked by
+     * @param limit     maximum number of accounts, capped to the configured maximum size
+     * @return          the highest ranked accounts, highest first
+     */
+    public List<LeaderboardEntryDTO> top(LeaderboardType type, int limit) {
+        int size = Math.min(limit, maxSize);
+        if (size <= 0) {
+            return Collections.emptyList();
+        }
+        Board current = board;
+        Ranking ranking = current.balances;
+        if (type == LeaderboardType.ACTIVITY) {
+            DailyActivity today = current.activityOn(LocalDate.now());
+            ranking = today == null ? current.activity.ranking : today.ranking;
+        }
+
+        List<LeaderboardEntryDTO> top = new ArrayList<>(size);
+        for (Ranking.Entry entry : ranking.top(size)) {
+            Standing standing = current.standings.get(entry.getAccountId());
+            String lastName = standing == null ? null : standing.lastName;
+            top.add(new LeaderboardEntryDTO(top.size() + 1, entry.getAccountId(), lastName, entry.getScore()));
+        }
+        return top;
+    }
+
+    /**
+     * Moves an account on the board being built, if any, then on the current board
+     */
+    private void update(int accountId, String lastName, BigDecimal balance, long version, LocalDate day,
+                        long postings) {
+        Board next = building;
+        if (next != null) {
+            next.update(accountId, lastName, balance, version, day, postings);
+        }
+        board.update(accountId, lastName, balance, version, day, postings);
+    }
+
+    /**
+     * The standings of the accounts and their rankings
+     */
+    private static final class Board {
+
+        private final ConcurrentHashMap<Integer, Standing> standings = new ConcurrentHashMap<>();
+        private final Ranking balances = new Ranking();
+        private volatile DailyActivity activity;
+
+        private Board(LocalDate day) {
+            this.activity = new DailyActivity(day);
+        }
+
+        /**
+         * @param day   day of postings
+         * @return      the activity of that day, started if the day is new, or null if the day is already over
+         */
+        private DailyActivity activityOn(LocalDate day) {
+            DailyActivity current = activity;
+            if (current.day.equals(day)) {
+                return current;
+            }
+            if (day.isBefore(current.day)) {
+                return null;
+            }
+            synchronized (this) {
+                if (activity.day.isBefore(day)) {
+                    activity = new DailyActivity(day);
+                }
+                return activity.day.equals(day) ? activity : null;
+            }
+        }
+
+        /**
+         * Moves an account in both rankings, the map entry of the account serializing its moves
+         */
+        private void update(int accountId, String lastName, BigDecimal balance, long version, LocalDate day,
+                            long postings) {
+            standings.compute(accountId, (id, old) -> {
+                Standing updated = old == null ? new Standing(lastName, null, Long.MIN_VALUE, day, 0) : old;
+                if (balance != null && version >= updated.version) {
+                    balances.move(id, updated.balance, balance);
+                    updated = new Standing(lastName, balance, version, updated.activityDay, updated.postings);
+                }
+                DailyActivity daily = postings > 0 ? activityOn(day) : null;
+                if (daily != null) {
+                    long before = day.equals(updated.activityDay) ? updated.postings : 0;
+                    daily.ranking.move(id, before == 0 ? null : BigDecimal.valueOf(before),
+                            BigDecimal.valueOf(before + postings));
+                    updated = new Standing(updated.lastName, updated.balance, updated.version, day, before + postings);
+                }
+                return updated;
+            });
+        }
+    }
+
+    private static final class DailyActivity {
+
+        private final LocalDate day;
+        private final Ranking ranking = new Ranking();
+
+        private DailyActivity(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    private static final class Standing {
+
+        private final String lastName;
+        private final BigDecimal balance;
+        private final long version;
+        private final LocalDate activityDay;
+        private final long postings;
+
+        private Standing(String lastName, BigDecimal balance, long version, LocalDate activityDay, long postings) {
+            this.lastName = lastName;
+            this.balance = balance;
+            this.version = version;
+            this.activityDay = activityDay;
+            this.postings = postings;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.ippon.bankapp.service.leaderboard;
+
+import com.ippon.bankapp.service.exception.UnknownLeaderboardException;
+
+/**
+ * What a leaderboard ranks accounts by
+ */
+public enum LeaderboardType {
+    BALANCE("balance"),
+    ACTIVITY("activity");
+
+    private final String name;
+
+    LeaderboardType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name  name of the leaderboard, as given in requests
+     * @return      the leaderboard type
+     * @throws UnknownLeaderboardException if no leaderboard has that name
+     */
+    public static LeaderboardType fromName(String name) {
+        for (LeaderboardType type : values()) {
+            if (type.name.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new UnknownLeaderboardException();
+    }
+}
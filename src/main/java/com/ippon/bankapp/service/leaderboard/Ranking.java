@@ -0,0 +1,80 @@
+package com.ippon.bankapp.service.leaderboard;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Accounts ordered by a score, highest first, ties broken by account id.
+ *
+ * Kept in a skip list so a change of score is a removal and an insertion in O(log n) and reading the top N walks
+ * the first N entries, however many accounts are ranked. Callers serialize the moves of one account; a move inserts
+ * the new entry before removing the old one, so a concurrent reader may see an account twice but never miss it.
+ */
+class Ranking {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing(Entry::getScore, Comparator.reverseOrder())
+            .thenComparingInt(Entry::getAccountId);
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    /**
+     * Moves an account from its old score to its new one
+     *
+     * @param accountId     id of the account
+     * @param oldScore      score the account is ranked with, null if not ranked yet
+     * @param newScore      score to rank the account with
+     */
+    void move(int accountId, BigDecimal oldScore, BigDecimal newScore) {
+        entries.add(new Entry(accountId, newScore));
+        if (oldScore != null && oldScore.compareTo(newScore) != 0) {
+            entries.remove(new Entry(accountId, oldScore));
+        }
+    }
+
+    /**
+     * @param limit     maximum number of entries
+     * @return          the highest ranked entries, one per account, highest first
+     */
+    List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        for (Entry entry : entries) {
+            if (top.size() == limit) {
+                break;
+            }
+            if (seen.add(entry.getAccountId())) {
+                top.add(entry);
+            }
+        }
+        return top;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    static final class Entry {
+
+        private final int accountId;
+        private final BigDecimal score;
+
+        Entry(int accountId, BigDecimal score) {
+            this.accountId = accountId;
+            this.score = score;
+        }
+
+        int getAccountId() {
+            return accountId;
+        }
+
+        BigDecimal getScore() {
+            return score;
+        }
+    }
+}
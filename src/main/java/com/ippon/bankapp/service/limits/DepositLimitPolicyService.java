@@ -0,0 +1,130 @@
+package com.ippon.bankapp.service.limits;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.domain.DepositLimitPolicy;
+import com.ippon.bankapp.repository.DepositLimitPolicyRepository;
+import com.ippon.bankapp.service.dto.DepositLimitPolicyDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deposit limit policies per account tier. The policies are stored in the database and compiled into an immutable
+ * table, swapped in as a whole whenever a policy is saved here and on a fixed delay, to pick up changes made by
+ * other instances. Looking up the limits of a deposit is a map read, with no query.
+ *
+ * A tier without a policy gets the standard tier's limits, or {@link DepositLimits#DEFAULT} when the standard tier
+ * has no policy either.
+ */
+@Service
+public class DepositLimitPolicyService {
+
+    private static final Logger log = LoggerFactory.getLogger(DepositLimitPolicyService.class);
+
+    private final DepositLimitPolicyRepository depositLimitPolicyRepository;
+
+    private volatile PolicyTable policyTable = new PolicyTable(Collections.emptyMap(), DepositLimits.DEFAULT);
+
+    public DepositLimitPolicyService(DepositLimitPolicyRepository depositLimitPolicyRepository) {
+        this.depositLimitPolicyRepository = depositLimitPolicyRepository;
+    }
+
+    /**
+     * @param tier  tier of an account
+     * @return      deposit limits of the tier
+     */
+    public DepositLimits forTier(String tier) {
+        return policyTable.forTier(tier);
+    }
+
+    /**
+     * Tells whether accounts can be moved to a tier: the standard tier, or one with a stored policy. Reads the
+     * stored policies rather than the compiled table, so a policy just saved by another instance counts
+     *
+     * @param tier  tier to move an account to
+     * @return      true if the tier is known
+     */
+    public boolean isKnownTier(String tier) {
+        return Account.DEFAULT_TIER.equals(tier) || depositLimitPolicyRepository.existsById(tier);
+    }
+
+    /**
+     * Gets the stored policies
+     *
+     * @return  DTOs of the policies
+     */
+    public List<DepositLimitPolicyDTO> getPolicies() {
+        List<DepositLimitPolicyDTO> policies = new ArrayList<>();
+        for (DepositLimitPolicy policy : depositLimitPolicyRepository.findAll()) {
+            policies.add(mapToDTO(policy));
+        }
+        return policies;
+    }
+
+    /**
+     * Creates or replaces the policy of a tier, and applies it right away
+     *
+     * @param tier      tier of the policy
+     * @param policy    DTO holding the limits
+     * @return          DTO of the saved policy
+     */
+    public DepositLimitPolicyDTO savePolicy(String tier, DepositLimitPolicyDTO policy) {
+        DepositLimitPolicy toSave = depositLimitPolicyRepository
+                .findById(tier)
+                .orElseGet(() -> new DepositLimitPolicy(tier));
+        toSave.setPerTransactionLimit(policy.getPerTransactionLimit());
+        toSave.setDailyLimit(policy.getDailyLimit());
+        toSave.setWeeklyLimit(policy.getWeeklyLimit());
+        DepositLimitPolicy save = depositLimitPolicyRepository.save(toSave);
+        refresh();
+        return mapToDTO(save);
+    }
+
+    /**
+     * Compiles the stored policies into a new table and swaps it in
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${bankapp.deposit-limits.refresh-ms:60000}",
+            initialDelayString = "${bankapp.deposit-limits.refresh-ms:60000}")
+    public void refresh() {
+        Map<String, DepositLimits> limits = new HashMap<>();
+        for (DepositLimitPolicy policy : depositLimitPolicyRepository.findAll()) {
+            limits.put(policy.getTier(), DepositLimits.of(policy));
+        }
+        DepositLimits fallback = limits.getOrDefault(Account.DEFAULT_TIER, DepositLimits.DEFAULT);
+        policyTable = new PolicyTable(limits, fallback);
+        log.debug("Compiled {} deposit limit policies", limits.size());
+    }
+
+    private DepositLimitPolicyDTO mapToDTO(DepositLimitPolicy policy) {
+        return new DepositLimitPolicyDTO()
+                .tier(policy.getTier())
+                .perTransactionLimit(policy.getPerTransactionLimit())
+                .dailyLimit(policy.getDailyLimit())
+                .weeklyLimit(policy.getWeeklyLimit());
+    }
+
+    private static final class PolicyTable {
+
+        private final Map<String, DepositLimits> limits;
+        private final DepositLimits fallback;
+
+        private PolicyTable(Map<String, DepositLimits> limits, DepositLimits fallback) {
+            this.limits = limits;
+            this.fallback = fallback;
+        }
+
+        private DepositLimits forTier(String tier) {
+            DepositLimits tierLimits = tier == null ? null : limits.get(tier);
+            return tierLimits == null ? fallback : tierLimits;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ippon.bankapp.service.limits;
+
+import com.ippon.bankapp.domain.DepositLimitPolicy;
+
+import java.math.BigDecimal;
+
+/**
+ * Compiled, immutable deposit limits of one tier. A null limit does not apply.
+ */
+public final class DepositLimits {
+
+    /**
+     * Limits of tiers without a policy: $5,000 a day, as before policies existed
+     */
+    public static final DepositLimits DEFAULT = new DepositLimits(null, BigDecimal.valueOf(5000), null);
+
+    private final BigDecimal perTransaction;
+    private final BigDecimal daily;
+    private final BigDecimal weekly;
+
+    public DepositLimits(BigDecimal perTransaction, BigDecimal daily, BigDecimal weekly) {
+        this.perTransaction = perTransaction;
+        this.daily = daily;
+        this.weekly = weekly;
+    }
+
+    static DepositLimits of(DepositLimitPolicy policy) {
+        return new DepositLimits(policy.getPerTransactionLimit(), policy.getDailyLimit(), policy.getWeeklyLimit());
+    }
+
+    /**
+     * Determines if a deposit stays within the limits
+     *
+     * @param amount            amount being deposited
+     * @param depositedToday    amount already deposited today
+     * @param depositedThisWeek amount already deposited this week, today included
+     * @return                  true if the deposit is allowed
+     */
+    public boolean allows(BigDecimal amount, BigDecimal depositedToday, BigDecimal depositedThisWeek) {
+        return within(amount, perTransaction)
+                && within(depositedToday.add(amount), daily)
+                && within(depositedThisWeek.add(amount), weekly);
+    }
+
+    public BigDecimal getPerTransaction() {
+        return perTransaction;
+    }
+
+    public BigDecimal getDaily() {
+        return daily;
+    }
+
+    public BigDecimal getWeekly() {
+        return weekly;
+    }
+
+    private static boolean within(BigDecimal total, BigDecimal limit) {
+        return limit == null || total.compareTo(limit) <= 0;
+    }
+}
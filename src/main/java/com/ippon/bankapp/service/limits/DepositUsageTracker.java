@@ -0,0 +1,148 @@
+package com.ippon.bankapp.service.limits;
+
+import com.ippon.bankapp.domain.DepositUsage;
+import com.ippon.bankapp.repository.DepositUsageRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Optional;
+
+/**
+ * Amounts credited to each account today and this week, counted against its deposit limits.
+ *
+ * Every deposit and incoming transfer adds to the totals row of its account with a single increment that only
+ * applies while both totals stay within their limits. A credit that would go over a limit because of credits
+ * committed since it read the totals updates nothing and fails as a concurrency failure, to be run again on fresh
+ * totals. Credits never update the account row, so credits to a split-balance account only meet on this one, where
+ * they wait for each other's commit instead of failing on the account version.
+ *
+ * The totals row of an account is created by its first credit, starting from the credits already in the ledger.
+ */
+@Component
+public class DepositUsageTracker {
+
+    /**
+     * Stands in for a limit that does not apply, in the conditional increment
+     */
+    private static final BigDecimal UNLIMITED = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final DepositUsageRepository depositUsageRepository;
+    private final TransactionRepository transactionRepository;
+
+    public DepositUsageTracker(DepositUsageRepository depositUsageRepository,
+                               TransactionRepository transactionRepository) {
+        this.depositUsageRepository = depositUsageRepository;
+        this.transactionRepository = transactionRepository;
+    }
+
+    /**
+     * Reads the totals credited to an account on a day and over its week, in the caller's transaction. The totals of
+     * an account without a totals row yet are summed from the ledger
+     *
+     * @param accountId id of the account
+     * @param day       day of the credit
+     * @return          totals credited on the day and over the week
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Usage read(int accountId, LocalDate day) {
+        LocalDate weekStart = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        Optional<DepositUsage> stored = depositUsageRepository.findById(accountId);
+        if (stored.isPresent()) {
+            DepositUsage usage = stored.get();
+            return new Usage(accountId, day, weekStart,
+                    day.equals(usage.getDay()) ? usage.getDayTotal() : BigDecimal.ZERO,
+                    weekStart.equals(usage.getWeekStart()) ? usage.getWeekTotal() : BigDecimal.ZERO,
+                    true);
+        }
+        TransactionRepository.AmountTotals ledger = transactionRepository
+                .sumCreditsByAccountIdForDayAndWeek(accountId, day, weekStart);
+        return new Usage(accountId, day, weekStart,
+                orZero(ledger == null ? null : ledger.getDayTotal()),
+                orZero(ledger == null ? null : ledger.getWeekTotal()),
+                false);
+    }
+
+    /**
+     * Counts credits against the limits, in the caller's transaction
+     *
+     * @param usage     totals read for the credits, which the limits were checked against
+     * @param amount    total of the credits
+     * @param limits    deposit limits of the account
+     * @throws ConcurrencyFailureException if concurrent credits took a total over its limit, or created the totals row
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(Usage usage, BigDecimal amount, DepositLimits limits) {
+        if (!usage.stored) {
+            insert(new DepositUsage(usage.accountId, usage.day, usage.dayTotal.add(amount),
+                    usage.weekStart, usage.weekTotal.add(amount)));
+            return;
+        }
+        if (depositUsageRepository.addWithinLimits(usage.accountId, usage.day, usage.weekStart, amount,
+                orUnlimited(limits.getDaily()), orUnlimited(limits.getWeekly())) == 0) {
+            throw new ConcurrencyFailureException("Credits to account " + usage.accountId
+                    + " were counted concurrently against its limits");
+        }
+    }
+
+    /**
+     * Inserts the totals row of an account. When a concurrent credit inserted it first, the primary key rejects this
+     * one and the posting fails as a concurrency failure, to be run again on the row
+     *
+     * @param usage     totals of an account that had none
+     */
+    private void insert(DepositUsage usage) {
+        try {
+            depositUsageRepository.saveAndFlush(usage);
+        } catch (DataIntegrityViolationException e) {
+            throw new ConcurrencyFailureException("Deposit usage of account " + usage.getAccountId()
+                    + " was created concurrently", e);
+        }
+    }
+
+    private static BigDecimal orZero(BigDecimal amount) {
+        return amount == null ? BigDecimal.ZERO : amount;
+    }
+
+    private static BigDecimal orUnlimited(BigDecimal limit) {
+        return limit == null ? UNLIMITED : limit;
+    }
+
+    /**
+     * Totals credited to an account on a day and over its week, as read at the start of a posting
+     */
+    public static final class Usage {
+
+        private final int accountId;
+        private final LocalDate day;
+        private final LocalDate weekStart;
+        private final BigDecimal dayTotal;
+        private final BigDecimal weekTotal;
+        private final boolean stored;
+
+        public Usage(int accountId, LocalDate day, LocalDate weekStart, BigDecimal dayTotal, BigDecimal weekTotal,
+                     boolean stored) {
+            this.accountId = accountId;
+            this.day = day;
+            this.weekStart = weekStart;
+            this.dayTotal = dayTotal;
+            this.weekTotal = weekTotal;
+            this.stored = stored;
+        }
+
+        public BigDecimal getDayTotal() {
+            return dayTotal;
+        }
+
+        public BigDecimal getWeekTotal() {
+            return weekTotal;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Groups outbox notifications per recipient, so a burst of notifications to one recipient goes out as one message.
+ *
+ * Notifications to the same channel, sender and destination share a buffer, opened by the first of them. A buffer is
+ * flushed as one digest once it holds the maximum number of notifications or once it has been open for the window,
+ * whichever comes first. Buffers are kept in opening order, so looking for due buffers stops at the first one still
+ * inside its window, however many recipients are buffered. With a zero window every notification is its own digest.
+ */
+class NotificationDigest {
+
+    private final Duration window;
+    private final int maxMessages;
+    private final int maxBuffered;
+
+    private final LinkedHashMap<Recipient, Buffer> buffers = new LinkedHashMap<>();
+    private int buffered;
+
+    NotificationDigest(Duration window, int maxMessages, int maxBuffered) {
+        if (window.isNegative() || maxMessages < 1 || maxBuffered < 1) {
+            throw new IllegalArgumentException("Digest window, message and buffer limits must be positive");
+        }
+        this.window = window;
+        this.maxMessages = maxMessages;
+        this.maxBuffered = maxBuffered;
+    }
+
+    /**
+     * Buffers a notification
+     *
+     * @param notification  claimed notification
+     * @param now           current time
+     * @return              the digest of the recipient when it is to be sent right away, empty while it is buffered
+     */
+    synchronized Optional<Digest> add(OutboxNotification notification, Instant now) {
+        if (window.isZero()) {
+            return Optional.of(new Digest(Collections.singletonList(notification)));
+        }
+
+        Recipient recipient = new Recipient(notification);
+        Buffer buffer = buffers.computeIfAbsent(recipient, r -> new Buffer(now.plus(window)));
+        buffer.notifications.add(notification);
+        buffered++;
+        if (buffer.notifications.size() < maxMessages) {
+            return Optional.empty();
+        }
+        buffers.remove(recipient);
+        buffered -= buffer.notifications.size();
+        return Optional.of(new Digest(buffer.notifications));
+    }
+
+    /**
+     * Takes out the buffers whose window is over
+     *
+     * @param now   current time
+     * @return      digests to send, oldest first
+     */
+    synchronized List<Digest> flushDue(Instant now) {
+        List<Digest> due = new ArrayList<>();
+        Iterator<Buffer> iterator = buffers.values().iterator();
+        while (iterator.hasNext()) {
+            Buffer buffer = iterator.next();
+            if (buffer.dueAt.isAfter(now)) {
+                break;
+            }
+            iterator.remove();
+            buffered -= buffer.notifications.size();
+            due.add(new Digest(buffer.notifications));
+        }
+        return due;
+    }
+
+    /**
+     * @return  whether as many notifications are buffered as allowed, so no more should be claimed for now
+     */
+    synchronized boolean isFull() {
+        return buffered >= maxBuffered;
+    }
+
+    /**
+     * @return  number of notifications buffered
+     */
+    synchronized int getBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Notifications to one recipient, sent as a single message
+     */
+    static final class Digest {
+
+        private final List<OutboxNotification> notifications;
+
+        private Digest(List<OutboxNotification> notifications) {
+            this.notifications = notifications;
+        }
+
+        List<OutboxNotification> getNotifications() {
+            return notifications;
+        }
+
+        String getChannel() {
+            return notifications.get(0).getChannel();
+        }
+
+        String getSource() {
+            return notifications.get(0).getSource();
+        }
+
+        String getDestination() {
+            return notifications.get(0).getDestination();
+        }
+
+        String getSubject() {
+            if (notifications.size() == 1) {
+                return notifications.get(0).getSubject();
+            }
+            return notifications.size() + " notifications";
+        }
+
+        String getMessage() {
+            if (notifications.size() == 1) {
+                return notifications.get(0).getMessage();
+            }
+            StringBuilder message = new StringBuilder();
+            for (OutboxNotification notification : notifications) {
+                if (message.length() > 0) {
+                    message.append('\n');
+                }
+                message.append(notification.getSubject()).append(": ").append(notification.getMessage());
+            }
+            return message.toString();
+        }
+    }
+
+    private static final class Buffer {
+
+        private final Instant dueAt;
+        private final List<OutboxNotification> notifications = new ArrayList<>();
+
+        private Buffer(Instant dueAt) {
+            this.dueAt = dueAt;
+        }
+    }
+
+    private static final class Recipient {
+
+        private final String channel;
+        private final String source;
+        private final String destination;
+
+        private Recipient(OutboxNotification notification) {
+            this.channel = notification.getChannel();
+            this.source = notification.getSource();
+            this.destination = notification.getDestination();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Recipient)) return false;
+            Recipient that = (Recipient) o;
+            return Objects.equals(channel, that.channel) &&
+                    Objects.equals(source, that.source) &&
+                    Objects.equals(destination, that.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(channel, source, destination);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Queues notifications in the outbox table. Must be called inside the transaction of the business change, so the
+ * notification is stored if and only if the change is committed.
+ */
+@Component
+public class NotificationOutbox {
+
+    private final OutboxNotificationRepository outboxNotificationRepository;
+
+    public NotificationOutbox(OutboxNotificationRepository outboxNotificationRepository) {
+        this.outboxNotificationRepository = outboxNotificationRepository;
+    }
+
+    /**
+     * Queues a notification for the relay to deliver
+     *
+     * @param channel       name of the preferred notification service
+     * @param source        sender of the message
+     * @param destination   recipient of the message
+     * @param subject       subject of the message
+     * @param message       body of the message
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String channel, String source, String destination, String subject, String message) {
+        outboxNotificationRepository.save(new OutboxNotification(channel, source, destination, subject, message));
+    }
+}
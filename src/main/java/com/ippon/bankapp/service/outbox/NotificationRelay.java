@@ -0,0 +1,220 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.service.resilience.NotificationResilience;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers outbox notifications in the background.
+ *
+ * Each poll claims a batch of notifications by stamping them with a token and a lease. The claim only succeeds on
+ * rows nobody else holds, so several relays can poll the same table and skip each other's rows, like
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED} but portable to H2. Delivered notifications are deleted; failed ones
+ * keep their claim until a backoff lease runs out and are then retried. Both only touch rows still holding the
+ * relay's claim token: a row whose lease ran out mid-delivery and was claimed by another relay is left to that one.
+ * A notification that failed the maximum number of attempts is dead-lettered: it stays in the table for inspection
+ * but is no longer claimed, so it stops taking room in the batches.
+ *
+ * With a digest window, claimed notifications are grouped per recipient and sent as one message per window (see
+ * {@link NotificationDigest}). They stay claimed while buffered, so a crash only delays them. A buffered notification
+ * can wait a window, then up to a poll interval for the flush, then the send: the three together must therefore be
+ * shorter than the claim lease. The relay stops claiming while the digest buffers are full.
+ *
+ * Messages go through the guarded services of {@link NotificationResilience}, so a degraded provider costs the relay
+ * a bounded wait and a fallback to the default channel rather than a stalled poll.
+ */
+@Component
+public class NotificationRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRelay.class);
+
+    private final OutboxNotificationRepository outboxNotificationRepository;
+    private final NotificationResilience notificationResilience;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final Duration claimLease;
+    private final Duration retryDelay;
+    private final int maxAttempts;
+    private final NotificationDigest digest;
+
+    private final Counter deliveredCounter;
+    private final Counter failedCounter;
+    private final Counter deadLetteredCounter;
+    private final Timer lagTimer;
+
+    public NotificationRelay(OutboxNotificationRepository outboxNotificationRepository,
+                             NotificationResilience notificationResilience,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${bankapp.notification.relay.batch-size:100}") int batchSize,
+                             @Value("${bankapp.notification.relay.poll-interval-ms:1000}") long pollIntervalMillis,
+                             @Value("${bankapp.notification.relay.claim-lease-ms:30000}") long claimLeaseMillis,
+                             @Value("${bankapp.notification.relay.retry-delay-ms:5000}") long retryDelayMillis,
+                             @Value("${bankapp.notification.relay.max-attempts:10}") int maxAttempts,
+                             @Value("${bankapp.notification.digest.window-ms:0}") long digestWindowMillis,
+                             @Value("${bankapp.notification.digest.max-messages:20}") int digestMaxMessages,
+                             @Value("${bankapp.notification.digest.max-buffered:10000}") int digestMaxBuffered) {
+        // Without a digest window notifications are sent in the poll that claims them
+        long bufferedMillis = digestWindowMillis > 0 ? digestWindowMillis + pollIntervalMillis : 0;
+        if (bufferedMillis + notificationResilience.getMaxSendMillis() >= claimLeaseMillis) {
+            throw new IllegalArgumentException("The notification digest window, poll interval and send timeout "
+                    + "together must be shorter than the claim lease");
+        }
+        this.outboxNotificationRepository = outboxNotificationRepository;
+        this.notificationResilience = notificationResilience;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.claimLease = Duration.ofMillis(claimLeaseMillis);
+        this.retryDelay = Duration.ofMillis(retryDelayMillis);
+        this.maxAttempts = maxAttempts;
+        this.digest = new NotificationDigest(Duration.ofMillis(digestWindowMillis), digestMaxMessages, digestMaxBuffered);
+        this.deliveredCounter = meterRegistry.counter("bankapp.notification.outbox.delivered");
+        this.failedCounter = meterRegistry.counter("bankapp.notification.outbox.failed");
+        this.deadLetteredCounter = meterRegistry.counter("bankapp.notification.outbox.dead.lettered");
+        this.lagTimer = meterRegistry.timer("bankapp.notification.outbox.lag");
+        Gauge.builder("bankapp.notification.outbox.oldest.age", this, NotificationRelay::oldestPendingAgeMillis)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("bankapp.notification.outbox.dead.letters", outboxNotificationRepository,
+                OutboxNotificationRepository::countByDeadLetteredAtIsNotNull)
+                .register(meterRegistry);
+        Gauge.builder("bankapp.notification.digest.buffered", digest, NotificationDigest::getBuffered)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Relays batches until the outbox has no full batch left or the digest buffers are full, then sends the digests
+     * whose window is over
+     */
+    @Scheduled(fixedDelayString = "${bankapp.notification.relay.poll-interval-ms:1000}")
+    public void relay() {
+        int claimed;
+        do {
+            claimed = relayBatch();
+        } while (claimed == batchSize && !digest.isFull());
+        deliver(digest.flushDue(Instant.now()));
+    }
+
+    /**
+     * Claims one batch of notifications and delivers the digests it fills up
+     *
+     * @return  number of notifications claimed
+     */
+    public int relayBatch() {
+        String token = UUID.randomUUID().toString();
+        List<OutboxNotification> batch = claimBatch(token);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Instant now = Instant.now();
+        List<NotificationDigest.Digest> ready = new ArrayList<>();
+        for (OutboxNotification notification : batch) {
+            digest.add(notification, now).ifPresent(ready::add);
+        }
+        deliver(ready);
+        return batch.size();
+    }
+
+    private void deliver(List<NotificationDigest.Digest> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+
+        List<OutboxNotification> delivered = new ArrayList<>();
+        List<OutboxNotification> failed = new ArrayList<>();
+        for (NotificationDigest.Digest digest : digests) {
+            try {
+                notificationResilience
+                        .getService(digest.getChannel())
+                        .sendMessage(digest.getSource(),
+                                digest.getDestination(),
+                                digest.getSubject(),
+                                digest.getMessage());
+                delivered.addAll(digest.getNotifications());
+            } catch (RuntimeException e) {
+                log.warn("Could not deliver {}", digest.getNotifications(), e);
+                failed.addAll(digest.getNotifications());
+            }
+        }
+
+        complete(delivered, failed);
+    }
+
+    private List<OutboxNotification> claimBatch(String token) {
+        return transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<Integer> ids = outboxNotificationRepository.findClaimableIds(now, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                return Collections.<OutboxNotification>emptyList();
+            }
+            outboxNotificationRepository.claim(ids, token, now, now.plus(claimLease));
+            return outboxNotificationRepository.findAllByClaimTokenOrderById(token);
+        });
+    }
+
+    private void complete(List<OutboxNotification> delivered, List<OutboxNotification> failed) {
+        int[] deadLettered = {0};
+        int completed = transactionTemplate.execute(status -> {
+            int count = 0;
+            deadLettered[0] = 0;
+            for (Map.Entry<String, List<Integer>> claim : idsByClaimToken(delivered).entrySet()) {
+                count += outboxNotificationRepository.deleteClaimed(claim.getValue(), claim.getKey());
+            }
+            Instant retryAt = Instant.now().plus(retryDelay);
+            for (Map.Entry<String, List<Integer>> claim : idsByClaimToken(failed).entrySet()) {
+                count += outboxNotificationRepository.retryClaimed(claim.getValue(), claim.getKey(), retryAt);
+                deadLettered[0] += outboxNotificationRepository.deadLetterClaimed(
+                        claim.getValue(), claim.getKey(), maxAttempts, Instant.now());
+            }
+            return count;
+        });
+        if (deadLettered[0] > 0) {
+            log.warn("{} notifications failed {} attempts and were dead-lettered", deadLettered[0], maxAttempts);
+        }
+        if (completed < delivered.size() + failed.size()) {
+            log.warn("{} notifications were claimed by another relay before they were completed",
+                    delivered.size() + failed.size() - completed);
+        }
+
+        Instant now = Instant.now();
+        for (OutboxNotification notification : delivered) {
+            lagTimer.record(Duration.between(notification.getCreatedAt(), now).toMillis(), TimeUnit.MILLISECONDS);
+        }
+        deliveredCounter.increment(delivered.size());
+        failedCounter.increment(failed.size());
+        deadLetteredCounter.increment(deadLettered[0]);
+    }
+
+    private static Map<String, List<Integer>> idsByClaimToken(List<OutboxNotification> notifications) {
+        return notifications.stream().collect(Collectors.groupingBy(OutboxNotification::getClaimToken,
+                Collectors.mapping(OutboxNotification::getId, Collectors.toList())));
+    }
+
+    private double oldestPendingAgeMillis() {
+        Instant oldest = outboxNotificationRepository.findOldestCreatedAt();
+        return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis();
+    }
+}
@@ -0,0 +1,129 @@
+package com.ippon.bankapp.service.posting;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.domain.BalanceSlot;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.service.exception.InsufficientFundsException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Posts to accounts whose balance is split across several {@link BalanceSlot} rows. Credits go to one random slot,
+ * debits are taken from a single slot when one covers the amount, and only fall back to draining several slots of
+ * the account when the balance is spread too thin.
+ */
+@Service
+public class BalanceSlotService {
+
+    private final BalanceSlotRepository balanceSlotRepository;
+    private final AccountRepository accountRepository;
+
+    public BalanceSlotService(BalanceSlotRepository balanceSlotRepository, AccountRepository accountRepository) {
+        this.balanceSlotRepository = balanceSlotRepository;
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Spreads the balance of an account across slots. The current balance moves to the first slot; asking for
+     * fewer slots than the account already has changes nothing
+     *
+     * @param account   account to split
+     * @param slots     number of slots wanted
+     * @return          the saved account
+     */
+    @Transactional
+    public Account split(Account account, int slots) {
+        int existing = account.getBalanceSlots();
+        if (slots <= existing) {
+            return account;
+        }
+        for (int slot = existing; slot < slots; slot++) {
+            BigDecimal opening = slot == 0 ? account.getBalance() : BigDecimal.ZERO;
+            balanceSlotRepository.save(new BalanceSlot(account.getId(), slot, opening));
+        }
+        account.setBalance(BigDecimal.ZERO);
+        account.setBalanceSlots(slots);
+        return accountRepository.save(account);
+    }
+
+    /**
+     * Adds an amount to one randomly picked slot of the account
+     *
+     * @param account   split-balance account
+     * @param amount    amount to add
+     */
+    @Transactional
+    public void credit(Account account, BigDecimal amount) {
+        int slot = ThreadLocalRandom.current().nextInt(account.getBalanceSlots());
+        balanceSlotRepository.credit(account.getId(), slot, amount);
+    }
+
+    /**
+     * Takes an amount out of the account without letting its total balance go negative
+     *
+     * @param account   split-balance account
+     * @param amount    amount to take out
+     */
+    @Transactional
+    public void debit(Account account, BigDecimal amount) {
+        int slots = account.getBalanceSlots();
+        int first = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            if (balanceSlotRepository.debit(account.getId(), (first + i) % slots, amount) == 1) {
+                return;
+            }
+        }
+
+        //No single slot covers the amount, drain them one by one in slot order. Each slot is taken with a conditional
+        //update rather than written back from a locking read, which could overwrite postings committed while it
+        //waited. A slot drained concurrently fails the posting, for the caller to retry
+        List<BalanceSlotRepository.SlotBalance> balances = balanceSlotRepository.findBalancesByAccountId(account.getId());
+        BigDecimal total = BigDecimal.ZERO;
+        for (BalanceSlotRepository.SlotBalance slot : balances) {
+            total = total.add(slot.getBalance());
+        }
+        if (total.compareTo(amount) < 0) {
+            throw new InsufficientFundsException();
+        }
+
+        BigDecimal remaining = amount;
+        for (BalanceSlotRepository.SlotBalance slot : balances) {
+            BigDecimal taken = slot.getBalance().min(remaining);
+            if (taken.signum() > 0 && balanceSlotRepository.debit(account.getId(), slot.getSlot(), taken) != 1) {
+                throw new ConcurrencyFailureException("Balance slot " + slot.getSlot() + " was drained concurrently");
+            }
+            remaining = remaining.subtract(taken);
+            if (remaining.signum() == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the summed balance and version of the slots of an account
+     *
+     * @param account   split-balance account
+     * @return          totals over every slot
+     */
+    @Transactional(readOnly = true)
+    public BalanceSlotRepository.SlotTotals getTotals(Account account) {
+        return getTotals(account.getId());
+    }
+
+    /**
+     * Gets the summed balance and version of the slots of an account
+     *
+     * @param accountId id of a split-balance account
+     * @return          totals over every slot
+     */
+    @Transactional(readOnly = true)
+    public BalanceSlotRepository.SlotTotals getTotals(int accountId) {
+        return balanceSlotRepository.findTotalsByAccountId(accountId);
+    }
+}
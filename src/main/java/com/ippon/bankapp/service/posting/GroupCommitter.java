@@ -0,0 +1,172 @@
+package com.ippon.bankapp.service.posting;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces concurrent requests for the same account id into batches (group commit).
+ *
+ * Callers enqueue their request and then compete for the lock of the key's stripe. Whoever gets the lock drains
+ * everything queued on the stripe, hands the requests to the {@link BatchHandler} grouped by key, and completes
+ * them. Callers whose request was applied by another thread find it already done when they get the lock. While a
+ * batch is being applied the next one builds up in the queue, so the window of a batch is the time taken to apply
+ * the previous one and an uncontended caller applies its own request straight away.
+ *
+ * @param <R>   request type
+ * @param <T>   result type
+ */
+public class GroupCommitter<R, T> {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final BatchHandler<R, T> handler;
+    private final Stripe<R, T>[] stripes;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    public GroupCommitter(BatchHandler<R, T> handler) {
+        this(handler, DEFAULT_STRIPES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public GroupCommitter(BatchHandler<R, T> handler, int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        this.handler = handler;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /**
+     * Submits a request and waits until it has been applied, either by this thread or by a concurrent one
+     *
+     * @param key       account id the request applies to, requests are only batched with requests of the same key
+     * @param request   the request
+     * @return          the result the handler completed this request with
+     */
+    public T submit(int key, R request) {
+        Pending<R, T> pending = new Pending<>(key, request);
+        Stripe<R, T> stripe = stripes[stripeIndex(key)];
+        stripe.queue.add(pending);
+
+        stripe.lock.lock();
+        try {
+            if (!pending.isDone()) {
+                drain(stripe);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        return pending.getResult();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void drain(Stripe<R, T> stripe) {
+        Map<Integer, List<Pending<R, T>>> batches = new LinkedHashMap<>();
+        Pending<R, T> next;
+        while ((next = stripe.queue.poll()) != null) {
+            batches.computeIfAbsent(next.getKey(), key -> new ArrayList<>()).add(next);
+        }
+
+        for (Map.Entry<Integer, List<Pending<R, T>>> batch : batches.entrySet()) {
+            List<Pending<R, T>> requests = batch.getValue();
+            batchCount.incrementAndGet();
+            requestCount.addAndGet(requests.size());
+            try {
+                handler.apply(batch.getKey(), requests);
+            } catch (RuntimeException e) {
+                for (Pending<R, T> request : requests) {
+                    if (!request.isDone()) {
+                        request.fail(e);
+                    }
+                }
+            }
+            for (Pending<R, T> request : requests) {
+                if (!request.isDone()) {
+                    request.fail(new IllegalStateException("Request was not completed by its batch"));
+                }
+            }
+        }
+    }
+
+    private int stripeIndex(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Applies a batch of requests for one key. Each request must be completed or failed before returning; if the
+     * handler throws, every request not yet completed fails with that exception
+     */
+    @FunctionalInterface
+    public interface BatchHandler<R, T> {
+        void apply(int key, List<Pending<R, T>> batch);
+    }
+
+    /**
+     * A request waiting in a batch, and the result it was completed with
+     */
+    public static final class Pending<R, T> {
+
+        private final int key;
+        private final R request;
+        private T result;
+        private RuntimeException error;
+        private boolean done;
+
+        private Pending(int key, R request) {
+            this.key = key;
+            this.request = request;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        public R getRequest() {
+            return request;
+        }
+
+        public void complete(T result) {
+            this.result = result;
+            this.done = true;
+        }
+
+        public void fail(RuntimeException error) {
+            this.error = error;
+            this.done = true;
+        }
+
+        private boolean isDone() {
+            return done;
+        }
+
+        private T getResult() {
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+    }
+
+    private static final class Stripe<R, T> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentLinkedQueue<Pending<R, T>> queue = new ConcurrentLinkedQueue<>();
+    }
+}
@@ -0,0 +1,96 @@
+package com.ippon.bankapp.service.read;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical loads (single flight).
+ *
+ * The first caller for a key runs the load; callers asking for the same key while it is in flight wait for it and
+ * share its result, or its exception, instead of running their own. Nothing is cached: once the load completes the
+ * next caller loads again.
+ *
+ * Each call carries a generation, such as the version of the data last seen changing. A caller only joins a flight
+ * started at its own generation or a later one, so it never gets a result read before a change it already knew of.
+ *
+ * @param <K>   key type
+ * @param <V>   result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * Loads the value of a key, or waits for the load of a concurrent caller
+     *
+     * @param key           what is loaded
+     * @param generation    generation of the data known to the caller
+     * @param loader        runs the load
+     * @return              the loaded value
+     */
+    public V get(K key, long generation, Supplier<V> loader) {
+        callCount.increment();
+        Flight<V> mine = new Flight<>(generation);
+        Flight<V> flight = inFlight.compute(key, (k, current) ->
+                current == null || current.generation < generation ? mine : current);
+        if (flight != mine) {
+            sharedCount.increment();
+            return flight.await();
+        }
+
+        try {
+            V value = loader.get();
+            mine.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return  number of calls
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    /**
+     * @return  number of calls answered by the load of another caller
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+
+    private static final class Flight<V> {
+
+        private final long generation;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private Flight(long generation) {
+            this.generation = generation;
+        }
+
+        private V await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
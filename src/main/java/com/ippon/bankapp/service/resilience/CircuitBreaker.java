@@ -0,0 +1,103 @@
+package com.ippon.bankapp.service.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling a failing dependency for a while.
+ *
+ * Closed, calls go through and consecutive failures are counted; reaching the threshold trips the breaker open.
+ * Open, calls are refused until the open duration is over. The breaker is then half-open and lets a single probe call
+ * through: its success closes the breaker, its failure opens it again for another full duration.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Asks for permission to make a call. A permitted call must end with {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #release()}
+     *
+     * @return  whether the call may be made
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * Records a successful call, closing the breaker
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Records a failed call
+     *
+     * @return  whether this failure tripped the breaker open
+     */
+    public synchronized boolean onFailure() {
+        probing = false;
+        if (state == State.OPEN) {
+            return false;
+        }
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            failures = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives a permission back for a call that was not made
+     */
+    public synchronized void release() {
+        probing = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,196 @@
+package com.ippon.bankapp.service.resilience;
+
+import com.ippon.bankapp.service.NotificationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Guards the provider of one notification channel.
+ *
+ * Messages are sent from a bulkhead, a pool of at most a few threads with no queue, so a slow provider can only tie
+ * up that many threads and callers past the limit are refused at once instead of piling up. The caller waits for
+ * the send up to a timeout. Failures and timeouts feed a {@link CircuitBreaker}, which refuses calls while the
+ * provider keeps failing. A refused, failed or timed out message goes to the fallback service, when there is one.
+ *
+ * A timeout does not mean the message was not sent: the send is cancelled, but a provider that already took the
+ * request may still deliver it, so the recipient can get it twice, once from each channel. Notifications are
+ * at-least-once anyway; these possible duplicates are counted by channel in
+ * {@code bankapp.notification.possible.duplicates}.
+ */
+class GuardedNotificationService implements NotificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(GuardedNotificationService.class);
+
+    private final String channel;
+    private final NotificationService delegate;
+    private final NotificationService fallback;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor bulkhead;
+    private final long timeoutMillis;
+
+    private final Counter successCounter;
+    private final Counter failureCounter;
+    private final Counter timeoutCounter;
+    private final Counter circuitOpenCounter;
+    private final Counter bulkheadFullCounter;
+    private final Counter tripCounter;
+    private final Counter fallbackCounter;
+    private final Counter possibleDuplicateCounter;
+
+    /**
+     * @param channel           name of the channel, used to tag metrics
+     * @param delegate          provider of the channel
+     * @param fallback          service taking over the messages the provider could not send, null for none
+     * @param circuitBreaker    breaker of the channel
+     * @param maxConcurrent     maximum number of messages sent at once
+     * @param timeoutMillis     time to wait for the provider
+     * @param meterRegistry     registry of the channel metrics
+     */
+    GuardedNotificationService(String channel,
+                               NotificationService delegate,
+                               NotificationService fallback,
+                               CircuitBreaker circuitBreaker,
+                               int maxConcurrent,
+                               long timeoutMillis,
+                               MeterRegistry meterRegistry) {
+        this.channel = channel;
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.circuitBreaker = circuitBreaker;
+        this.timeoutMillis = timeoutMillis;
+        this.bulkhead = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new BulkheadThreadFactory(channel));
+        this.bulkhead.allowCoreThreadTimeOut(true);
+
+        this.successCounter = meterRegistry.counter("bankapp.notification.calls", "channel", channel, "outcome", "success");
+        this.failureCounter = meterRegistry.counter("bankapp.notification.calls", "channel", channel, "outcome", "failure");
+        this.timeoutCounter = meterRegistry.counter("bankapp.notification.calls", "channel", channel, "outcome", "timeout");
+        this.circuitOpenCounter = meterRegistry.counter("bankapp.notification.rejections",
+                "channel", channel, "reason", "circuit-open");
+        this.bulkheadFullCounter = meterRegistry.counter("bankapp.notification.rejections",
+                "channel", channel, "reason", "bulkhead-full");
+        this.tripCounter = meterRegistry.counter("bankapp.notification.circuit.trips", "channel", channel);
+        this.fallbackCounter = meterRegistry.counter("bankapp.notification.fallbacks", "channel", channel);
+        this.possibleDuplicateCounter = meterRegistry.counter("bankapp.notification.possible.duplicates",
+                "channel", channel);
+        Gauge.builder("bankapp.notification.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .tag("channel", channel)
+                .description("0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void sendMessage(String source, String destination, String subject, String message) {
+        try {
+            send(source, destination, subject, message);
+        } catch (RuntimeException e) {
+            if (fallback == null) {
+                throw e;
+            }
+            log.warn("Could not send through {}, falling back to {}: {}", channel, fallback.getName(), e.toString());
+            fallbackCounter.increment();
+            fallback.sendMessage(source, destination, subject, message);
+            if (e instanceof SendTimeoutException) {
+                possibleDuplicateCounter.increment();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    void shutdown() {
+        bulkhead.shutdownNow();
+    }
+
+    private void send(String source, String destination, String subject, String message) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitOpenCounter.increment();
+            throw new NotificationUnavailableException("Circuit of " + channel + " is open");
+        }
+
+        Future<?> sent;
+        try {
+            sent = bulkhead.submit(() -> delegate.sendMessage(source, destination, subject, message));
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.release();
+            bulkheadFullCounter.increment();
+            throw new NotificationUnavailableException("Bulkhead of " + channel + " is full");
+        }
+
+        try {
+            sent.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            sent.cancel(true);
+            timeoutCounter.increment();
+            failed();
+            throw new SendTimeoutException(channel + " did not answer within " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            failureCounter.increment();
+            failed();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            sent.cancel(true);
+            circuitBreaker.release();
+            Thread.currentThread().interrupt();
+            throw new NotificationUnavailableException("Interrupted while sending through " + channel);
+        }
+        successCounter.increment();
+        circuitBreaker.onSuccess();
+    }
+
+    private void failed() {
+        if (circuitBreaker.onFailure()) {
+            tripCounter.increment();
+            log.warn("Circuit of {} is open", channel);
+        }
+    }
+
+    /**
+     * The provider did not answer in time, and may still have sent the message
+     */
+    private static final class SendTimeoutException extends NotificationUnavailableException {
+
+        private SendTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class BulkheadThreadFactory implements ThreadFactory {
+
+        private final String channel;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private BulkheadThreadFactory(String channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "notification-" + channel + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ippon.bankapp.service.resilience;
+
+import com.ippon.bankapp.service.NotificationFactory;
+import com.ippon.bankapp.service.NotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the notification services resolved by the {@link NotificationFactory} with a per-channel bulkhead, timeout
+ * and circuit breaker (see {@link GuardedNotificationService}). Messages a preferred channel cannot send fall back to
+ * the guarded default channel.
+ */
+@Component
+public class NotificationResilience {
+
+    private final NotificationFactory notificationFactory;
+    private final MeterRegistry meterRegistry;
+    private final int maxConcurrent;
+    private final long timeoutMillis;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private final String defaultChannel;
+    private final GuardedNotificationService defaultService;
+    private final ConcurrentHashMap<String, GuardedNotificationService> preferredServices = new ConcurrentHashMap<>();
+
+    public NotificationResilience(NotificationFactory notificationFactory,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${bankapp.notification.resilience.max-concurrent:10}") int maxConcurrent,
+                                  @Value("${bankapp.notification.resilience.timeout-ms:2000}") long timeoutMillis,
+                                  @Value("${bankapp.notification.resilience.failure-threshold:5}") int failureThreshold,
+                                  @Value("${bankapp.notification.resilience.open-ms:30000}") long openMillis) {
+        this.notificationFactory = notificationFactory;
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutMillis = timeoutMillis;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = Duration.ofMillis(openMillis);
+        this.defaultChannel = notificationFactory.getDefaultNotification().getName();
+        this.defaultService = guard(defaultChannel, notificationFactory.getDefaultNotification(), null);
+    }
+
+    /**
+     * Gets the guarded service of a channel
+     *
+     * @param channel   name of the preferred notification service
+     * @return          the guarded preferred service falling back to the default one, or the guarded default service
+     *                  when the channel is the default one or is unknown
+     */
+    public NotificationService getService(String channel) {
+        if (channel == null || channel.equals(defaultChannel)) {
+            return defaultService;
+        }
+        Optional<NotificationService> preferred = notificationFactory.getPreferredService(channel);
+        if (!preferred.isPresent()) {
+            return defaultService;
+        }
+        return preferredServices.computeIfAbsent(channel, name -> guard(name, preferred.get(), defaultService));
+    }
+
+    /**
+     * Gets the longest a message can take to send: the timeout of its preferred channel, then that of the default one
+     *
+     * @return          milliseconds
+     */
+    public long getMaxSendMillis() {
+        return 2 * timeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        defaultService.shutdown();
+        preferredServices.values().forEach(GuardedNotificationService::shutdown);
+    }
+
+    private GuardedNotificationService guard(String channel, NotificationService service, NotificationService fallback) {
+        return new GuardedNotificationService(channel, service, fallback,
+                new CircuitBreaker(failureThreshold, openDuration), maxConcurrent, timeoutMillis, meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.ippon.bankapp.service.resilience;
+
+/**
+ * A notification could not be handed to its provider: the circuit of the channel is open, its bulkhead is full or
+ * the provider did not answer in time
+ */
+public class NotificationUnavailableException extends RuntimeException {
+
+    public NotificationUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,209 @@
+package com.ippon.bankapp.service.rules;
+
+import java.util.Arrays;
+
+/**
+ * Recent postings of one account, kept for the sliding window rules, and the accounts it has transferred to.
+ *
+ * Postings are held in a ring of parallel primitive arrays, newest overwriting oldest, which starts small and grows
+ * up to a fixed capacity, so accounts that rarely post stay cheap. Window counts and sums walk back from the newest
+ * posting and stop at the first one outside the window. They are exact as long as no posting of the counted kinds
+ * within the window has been overwritten, which {@link #holdsSince(int, long)} tells: the newest overwritten time is
+ * kept per kind, so deposits filling the ring do not stop a withdrawal rule from counting.
+ *
+ * A posting is recorded as pending when it passes the rules, so concurrent postings count against each other, and
+ * is then either kept once committed or voided.
+ *
+ * Not thread safe; the rules engine locks an account's activity while checking and recording a posting.
+ */
+final class AccountActivity {
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int KIND_COUNT = PostingKind.values().length;
+
+    private final int capacity;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private long sequence;
+    private final long[] overwrittenMillis = new long[KIND_COUNT];
+    private int pending;
+    private boolean retired;
+
+    private int[] counterparties = new int[0];
+    private int counterpartyCount;
+
+    AccountActivity(int capacity) {
+        this.capacity = Math.max(INITIAL_CAPACITY, capacity);
+        Arrays.fill(overwrittenMillis, Long.MIN_VALUE);
+    }
+
+    /**
+     * Records a pending posting as the newest
+     *
+     * @param kindMask      bits of the kinds the posting counts as
+     * @param nowMillis     time of the posting
+     * @param amountCents   amount of the posting in cents
+     * @return              sequence number of the posting, to keep or void it by
+     */
+    long record(int kindMask, long nowMillis, long amountCents) {
+        if (size == times.length && times.length < capacity) {
+            grow();
+        }
+        if (size == times.length) {
+            for (int kind = 0; kind < KIND_COUNT; kind++) {
+                if ((kinds[head] & (1 << kind)) != 0) {
+                    overwrittenMillis[kind] = Math.max(overwrittenMillis[kind], times[head]);
+                }
+            }
+        }
+        times[head] = nowMillis;
+        cents[head] = amountCents;
+        kinds[head] = (byte) kindMask;
+        head = (head + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+        pending++;
+        return ++sequence;
+    }
+
+    /**
+     * Keeps a pending posting once it has committed
+     */
+    void keep() {
+        pending--;
+    }
+
+    /**
+     * Voids a pending posting that did not commit, so it no longer counts in any window
+     *
+     * @param postingSequence   sequence number the posting was recorded with
+     */
+    void discard(long postingSequence) {
+        pending--;
+        long age = sequence - postingSequence;
+        if (age >= size) {
+            return;
+        }
+        int index = newest();
+        for (long i = 0; i < age; i++) {
+            index = previous(index);
+        }
+        kinds[index] = 0;
+        cents[index] = 0;
+    }
+
+    /**
+     * @param kindMask      bits of the kinds counted
+     * @param sinceMillis   start of a window
+     * @return              true if every posting of those kinds since the start of the window is still held
+     */
+    boolean holdsSince(int kindMask, long sinceMillis) {
+        for (int kind = 0; kind < KIND_COUNT; kind++) {
+            if ((kindMask & (1 << kind)) != 0 && overwrittenMillis[kind] >= sinceMillis) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param sinceMillis   time before which the account counts as idle
+     * @return              true if the account has no pending posting and has not posted since that time
+     */
+    boolean isIdleSince(long sinceMillis) {
+        return pending == 0 && (size == 0 || times[newest()] < sinceMillis);
+    }
+
+    /**
+     * Marks this activity as dropped by the rules engine, so a posting that looked it up concurrently looks again
+     */
+    void retire() {
+        retired = true;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * @param kindMask      bits of the kinds to count
+     * @param sinceMillis   start of the window
+     * @return              number of postings of those kinds since the start of the window
+     */
+    int count(int kindMask, long sinceMillis) {
+        int count = 0;
+        for (int i = 0, index = newest(); i < size && times[index] >= sinceMillis; i++, index = previous(index)) {
+            if ((kindMask & kinds[index]) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param kindMask      bits of the kinds to sum
+     * @param sinceMillis   start of the window
+     * @return              total in cents of the postings of those kinds since the start of the window
+     */
+    long sum(int kindMask, long sinceMillis) {
+        long sum = 0;
+        for (int i = 0, index = newest(); i < size && times[index] >= sinceMillis; i++, index = previous(index)) {
+            if ((kindMask & kinds[index]) != 0) {
+                sum += cents[index];
+            }
+        }
+        return sum;
+    }
+
+    boolean knowsCounterparty(int accountId) {
+        return Arrays.binarySearch(counterparties, 0, counterpartyCount, accountId) >= 0;
+    }
+
+    void addCounterparty(int accountId) {
+        int index = Arrays.binarySearch(counterparties, 0, counterpartyCount, accountId);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        if (counterpartyCount == counterparties.length) {
+            counterparties = Arrays.copyOf(counterparties, Math.max(4, counterpartyCount * 2));
+        }
+        System.arraycopy(counterparties, insertAt, counterparties, insertAt + 1, counterpartyCount - insertAt);
+        counterparties[insertAt] = accountId;
+        counterpartyCount++;
+    }
+
+    private int newest() {
+        return previous(head);
+    }
+
+    private int previous(int index) {
+        return index == 0 ? times.length - 1 : index - 1;
+    }
+
+    /**
+     * Doubles the ring, up to its capacity. Only called when full, when the oldest posting sits at the head
+     */
+    private void grow() {
+        int length = Math.min(capacity, times.length * 2);
+        long[] newTimes = new long[length];
+        long[] newCents = new long[length];
+        byte[] newKinds = new byte[length];
+        int tail = times.length - head;
+        System.arraycopy(times, head, newTimes, 0, tail);
+        System.arraycopy(times, 0, newTimes, tail, head);
+        System.arraycopy(cents, head, newCents, 0, tail);
+        System.arraycopy(cents, 0, newCents, tail, head);
+        System.arraycopy(kinds, head, newKinds, 0, tail);
+        System.arraycopy(kinds, 0, newKinds, tail, head);
+        times = newTimes;
+        cents = newCents;
+        kinds = newKinds;
+        head = size;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ippon.bankapp.service.rules;
+
+/**
+ * Kinds of posting the rules engine checks
+ */
+public enum PostingKind {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER;
+
+    /**
+     * @return  bit of this kind in a rule's kind mask
+     */
+    int bit() {
+        return 1 << ordinal();
+    }
+}
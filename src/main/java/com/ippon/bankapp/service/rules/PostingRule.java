@@ -0,0 +1,154 @@
+package com.ippon.bankapp.service.rules;
+
+import com.ippon.bankapp.service.dto.PostingRuleDTO;
+import com.ippon.bankapp.service.exception.InvalidPostingRuleException;
+
+/**
+ * A compiled posting rule: limits converted to cents and milliseconds, and the kinds it applies to to a bit mask
+ */
+abstract class PostingRule {
+
+    private static final int ALL_KINDS = (1 << PostingKind.values().length) - 1;
+
+    private final String name;
+    private final int kindMask;
+
+    private PostingRule(String name, int kindMask) {
+        this.name = name;
+        this.kindMask = kindMask;
+    }
+
+    /**
+     * Compiles a rule definition
+     *
+     * @param definition    DTO of the rule
+     * @return              the rule
+     * @throws InvalidPostingRuleException  if the definition is incomplete, or a window rule has no window
+     */
+    static PostingRule compile(PostingRuleDTO definition) {
+        if (definition.getName() == null || definition.getType() == null || definition.getLimit() == null
+                || definition.getLimit().signum() < 0) {
+            throw new InvalidPostingRuleException();
+        }
+        int kindMask = definition.getAppliesTo() == null ? ALL_KINDS : definition.getAppliesTo().bit();
+        long windowMillis = definition.getWindowSeconds() * 1000;
+        switch (definition.getType()) {
+            case COUNT_PER_WINDOW:
+                requireWindow(windowMillis);
+                return new CountPerWindow(definition.getName(), kindMask, windowMillis,
+                        definition.getLimit().intValue());
+            case AMOUNT_PER_WINDOW:
+                requireWindow(windowMillis);
+                return new AmountPerWindow(definition.getName(), kindMask, windowMillis,
+                        PostingRulesEngine.toCents(definition.getLimit()));
+            case NEW_COUNTERPARTY:
+                return new NewCounterparty(definition.getName(), PostingKind.TRANSFER.bit(),
+                        PostingRulesEngine.toCents(definition.getLimit()));
+            default:
+                throw new InvalidPostingRuleException();
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @param postingKinds  bits of the kinds a posting counts as
+     * @return              true if this rule applies to any of them
+     */
+    boolean appliesTo(int postingKinds) {
+        return (kindMask & postingKinds) != 0;
+    }
+
+    /**
+     * @return  length of the sliding window this rule looks back over, 0 if it has none
+     */
+    long getWindowMillis() {
+        return 0;
+    }
+
+    /**
+     * Window rules reject a posting when the activity no longer holds every posting within their window, rather
+     * than let it through on a partial count
+     *
+     * @param activity          recent postings of the account posting
+     * @param amountCents       amount of the posting in cents
+     * @param counterpartyId    id of the account transferred to, only used for transfers
+     * @param nowMillis         time of the posting
+     * @return                  true if the posting is allowed
+     */
+    abstract boolean allows(AccountActivity activity, long amountCents, int counterpartyId, long nowMillis);
+
+    int getKindMask() {
+        return kindMask;
+    }
+
+    private static void requireWindow(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new InvalidPostingRuleException();
+        }
+    }
+
+    private static final class CountPerWindow extends PostingRule {
+
+        private final long windowMillis;
+        private final int limit;
+
+        private CountPerWindow(String name, int kindMask, long windowMillis, int limit) {
+            super(name, kindMask);
+            this.windowMillis = windowMillis;
+            this.limit = limit;
+        }
+
+        @Override
+        boolean allows(AccountActivity activity, long amountCents, int counterpartyId, long nowMillis) {
+            long sinceMillis = nowMillis - windowMillis;
+            return activity.holdsSince(getKindMask(), sinceMillis) && activity.count(getKindMask(), sinceMillis) < limit;
+        }
+
+        @Override
+        long getWindowMillis() {
+            return windowMillis;
+        }
+    }
+
+    private static final class AmountPerWindow extends PostingRule {
+
+        private final long windowMillis;
+        private final long limitCents;
+
+        private AmountPerWindow(String name, int kindMask, long windowMillis, long limitCents) {
+            super(name, kindMask);
+            this.windowMillis = windowMillis;
+            this.limitCents = limitCents;
+        }
+
+        @Override
+        boolean allows(AccountActivity activity, long amountCents, int counterpartyId, long nowMillis) {
+            long sinceMillis = nowMillis - windowMillis;
+            return activity.holdsSince(getKindMask(), sinceMillis)
+                    && activity.sum(getKindMask(), sinceMillis) + amountCents <= limitCents;
+        }
+
+        @Override
+        long getWindowMillis() {
+            return windowMillis;
+        }
+    }
+
+    private static final class NewCounterparty extends PostingRule {
+
+        private final long limitCents;
+
+        private NewCounterparty(String name, int kindMask, long limitCents) {
+            super(name, kindMask);
+            this.limitCents = limitCents;
+        }
+
+        @Override
+        boolean allows(AccountActivity activity, long amountCents, int counterpartyId, long nowMillis) {
+            return amountCents <= limitCents || activity.knowsCounterparty(counterpartyId);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ippon.bankapp.service.rules;
+
+/**
+ * Types of rule checked on postings
+ */
+public enum PostingRuleType {
+    /**
+     * Limits the number of postings within a sliding window
+     */
+    COUNT_PER_WINDOW,
+    /**
+     * Limits the total amount posted within a sliding window
+     */
+    AMOUNT_PER_WINDOW,
+    /**
+     * Limits the amount of a transfer to an account never transferred to before
+     */
+    NEW_COUNTERPARTY
+}
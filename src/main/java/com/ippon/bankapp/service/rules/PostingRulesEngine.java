@@ -0,0 +1,258 @@
+package com.ippon.bankapp.service.rules;
+
+import com.ippon.bankapp.service.dto.PostingRuleDTO;
+import com.ippon.bankapp.service.exception.PostingRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Checks velocity and fraud rules inline on every posting, against the recent activity of the account kept in
+ * memory.
+ *
+ * The rules are compiled into an immutable rule set published through a volatile field, so they can be replaced
+ * while postings are being checked; a check sees either the old or the new set as a whole. Checking a posting and
+ * recording it happen under the account's activity lock, so concurrent postings to one account cannot both slip
+ * under a limit. A posting that passes the rules is held as pending and counts against later checks; the caller
+ * keeps it once the posting has committed, or releases it, which voids it, when the posting fails. A transfer is
+ * recorded once on each account: as both a transfer and a withdrawal on the account transferred from, and as a
+ * deposit on the account transferred to.
+ *
+ * The activity is not persisted: after a restart the windows start empty and every account transferred to counts
+ * as a new counterparty again. The activity of an account idle for longer than the idle timeout and every window is
+ * dropped, with the same effect.
+ */
+@Component
+public class PostingRulesEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingRulesEngine.class);
+
+    private static final int NO_COUNTERPARTY = Integer.MIN_VALUE;
+
+    private final ConcurrentHashMap<Integer, AccountActivity> activities = new ConcurrentHashMap<>();
+    private final int windowCapacity;
+    private final long idleMillis;
+    private final LongSupplier clock;
+
+    private volatile RuleSet ruleSet = new RuleSet(Collections.emptyList(), new PostingRule[0]);
+
+    @Autowired
+    public PostingRulesEngine(PostingRulesProperties properties,
+                              @Value("${bankapp.rules.window-capacity:64}") int windowCapacity,
+                              @Value("${bankapp.rules.idle-timeout-ms:86400000}") long idleMillis) {
+        this(properties.getDefinitions(), windowCapacity, idleMillis, System::currentTimeMillis);
+    }
+
+    PostingRulesEngine(List<PostingRuleDTO> definitions, int windowCapacity, long idleMillis, LongSupplier clock) {
+        this.windowCapacity = windowCapacity;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        reload(definitions);
+    }
+
+    /**
+     * Checks a deposit or withdrawal against the rules, and holds it as pending if allowed
+     *
+     * @param accountId id of the account posted to
+     * @param kind      kind of posting
+     * @param amount    amount posted
+     * @return          the pending posting, to keep once committed or release
+     * @throws PostingRejectedException if a rule rejects the posting
+     */
+    public Hold check(int accountId, PostingKind kind, BigDecimal amount) {
+        return check(accountId, kind.bit(), toCents(amount), NO_COUNTERPARTY);
+    }
+
+    /**
+     * Checks a transfer against the rules applying to transfers and withdrawals of the account transferred from, and
+     * to deposits of the account transferred to, and holds it as pending on both if allowed
+     *
+     * @param fromId    id of the account transferred from
+     * @param toId      id of the account transferred to
+     * @param amount    amount transferred
+     * @return          the pending transfer, to keep once committed or release
+     * @throws PostingRejectedException if a rule rejects the transfer
+     */
+    public Hold checkTransfer(int fromId, int toId, BigDecimal amount) {
+        long amountCents = toCents(amount);
+        // The two accounts are locked one after the other, never together
+        ActivityHold from = check(fromId, PostingKind.TRANSFER.bit() | PostingKind.WITHDRAW.bit(), amountCents, toId);
+        ActivityHold to;
+        try {
+            to = check(toId, PostingKind.DEPOSIT.bit(), amountCents, NO_COUNTERPARTY);
+        } catch (PostingRejectedException e) {
+            from.release();
+            throw e;
+        }
+        return new Hold() {
+            @Override
+            public void keep() {
+                from.keep();
+                to.keep();
+            }
+
+            @Override
+            public void release() {
+                from.release();
+                to.release();
+            }
+        };
+    }
+
+    /**
+     * Replaces the rules. Every definition is compiled before any is applied, so an invalid one leaves the current
+     * rules in place
+     *
+     * @param definitions   DTOs of the new rules
+     * @return              DTOs of the rules now applied
+     */
+    public List<PostingRuleDTO> reload(List<PostingRuleDTO> definitions) {
+        PostingRule[] rules = new PostingRule[definitions.size()];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = PostingRule.compile(definitions.get(i));
+        }
+        ruleSet = new RuleSet(Collections.unmodifiableList(new ArrayList<>(definitions)), rules);
+        log.info("Loaded {} posting rules", rules.length);
+        return ruleSet.definitions;
+    }
+
+    /**
+     * @return  DTOs of the rules applied
+     */
+    public List<PostingRuleDTO> getRules() {
+        return ruleSet.definitions;
+    }
+
+    /**
+     * Drops the activity of accounts with no pending posting that have not posted for longer than the idle timeout
+     * and the longest window of the current rules
+     */
+    @Scheduled(fixedDelayString = "${bankapp.rules.eviction-interval-ms:600000}")
+    public void evictIdle() {
+        long idleSince = clock.getAsLong() - Math.max(idleMillis, ruleSet.longestWindowMillis);
+        int evicted = 0;
+        for (Map.Entry<Integer, AccountActivity> entry : activities.entrySet()) {
+            AccountActivity activity = entry.getValue();
+            synchronized (activity) {
+                if (activity.isIdleSince(idleSince)) {
+                    activity.retire();
+                    activities.remove(entry.getKey(), activity);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.info("Dropped the activity of {} idle accounts", evicted);
+        }
+    }
+
+    /**
+     * @return  number of accounts whose activity is kept
+     */
+    public int getActivityCount() {
+        return activities.size();
+    }
+
+    private ActivityHold check(int accountId, int postingKinds, long amountCents, int counterpartyId) {
+        PostingRule[] rules = ruleSet.rules;
+        while (true) {
+            AccountActivity activity = activities.get(accountId);
+            if (activity == null) {
+                activity = activities.computeIfAbsent(accountId, id -> new AccountActivity(windowCapacity));
+            }
+
+            synchronized (activity) {
+                if (activity.isRetired()) {
+                    continue;
+                }
+                long now = clock.getAsLong();
+                for (PostingRule rule : rules) {
+                    if (rule.appliesTo(postingKinds) && !rule.allows(activity, amountCents, counterpartyId, now)) {
+                        throw new PostingRejectedException(rule.getName());
+                    }
+                }
+                return new ActivityHold(activity, activity.record(postingKinds, now, amountCents), counterpartyId);
+            }
+        }
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * A posting that passed the rules and counts against them while pending
+     */
+    public interface Hold {
+
+        /**
+         * Keeps the posting once it has committed. A transfer also makes the account transferred to a known
+         * counterparty
+         */
+        void keep();
+
+        /**
+         * Voids the posting when it failed, so it no longer counts against the rules
+         */
+        void release();
+    }
+
+    private static final class ActivityHold implements Hold {
+
+        private final AccountActivity activity;
+        private final long sequence;
+        private final int counterpartyId;
+
+        private ActivityHold(AccountActivity activity, long sequence, int counterpartyId) {
+            this.activity = activity;
+            this.sequence = sequence;
+            this.counterpartyId = counterpartyId;
+        }
+
+        @Override
+        public void keep() {
+            synchronized (activity) {
+                activity.keep();
+                if (counterpartyId != NO_COUNTERPARTY) {
+                    activity.addCounterparty(counterpartyId);
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+            synchronized (activity) {
+                activity.discard(sequence);
+            }
+        }
+    }
+
+    private static final class RuleSet {
+
+        private final List<PostingRuleDTO> definitions;
+        private final PostingRule[] rules;
+        private final long longestWindowMillis;
+
+        private RuleSet(List<PostingRuleDTO> definitions, PostingRule[] rules) {
+            this.definitions = definitions;
+            this.rules = rules;
+            long longest = 0;
+            for (PostingRule rule : rules) {
+                longest = Math.max(longest, rule.getWindowMillis());
+            }
+            this.longestWindowMillis = longest;
+        }
+    }
+}
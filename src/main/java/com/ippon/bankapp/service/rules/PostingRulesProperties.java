@@ -0,0 +1,26 @@
+package com.ippon.bankapp.service.rules;
+
+import com.ippon.bankapp.service.dto.PostingRuleDTO;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posting rules the application starts with, bound from bankapp.rules.definitions
+ */
+@Component
+@ConfigurationProperties(prefix = "bankapp.rules")
+public class PostingRulesProperties {
+
+    private List<PostingRuleDTO> definitions = new ArrayList<>();
+
+    public List<PostingRuleDTO> getDefinitions() {
+        return definitions;
+    }
+
+    public void setDefinitions(List<PostingRuleDTO> definitions) {
+        this.definitions = definitions;
+    }
+}
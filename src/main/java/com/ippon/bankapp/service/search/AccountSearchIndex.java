@@ -0,0 +1,148 @@
+package com.ippon.bankapp.service.search;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.repository.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over account first and last names.
+ *
+ * Every word of an account's first and last name is normalized (lower cased, accents removed) and stored as a
+ * sorted key pointing at the account's last name, so a prefix lookup is a single range scan over the skip list.
+ */
+@Component
+public class AccountSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountSearchIndex.class);
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final char KEY_UPPER_BOUND = '\uffff';
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AccountRepository accountRepository;
+
+    private volatile ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+
+    //Index being built by a rebuild in progress, which accounts added meanwhile also go into
+    private volatile ConcurrentSkipListMap<String, String> building;
+
+    public AccountSearchIndex(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Loads every existing account into a new index once the application has started, and then swaps it in.
+     * Searches keep being answered from the current index while it is built
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        ConcurrentSkipListMap<String, String> rebuilt = new ConcurrentSkipListMap<>();
+        //Published before reading, so an account committed too late to be read is still added to the new index
+        building = rebuilt;
+        int count = 0;
+        try {
+            for (Account account : accountRepository.findAll()) {
+                add(rebuilt, account);
+                count++;
+            }
+            entries = rebuilt;
+        } finally {
+            building = null;
+        }
+        log.info("Account search index built with {} accounts", count);
+    }
+
+    /**
+     * Adds an account to the index under every word of its first and last name. To be called once the account has
+     * been committed
+     *
+     * @param account   account to index
+     */
+    public void add(Account account) {
+        //Read before the current index: a rebuild swaps its index in before it stops publishing it
+        ConcurrentSkipListMap<String, String> rebuilt = building;
+        if (rebuilt != null) {
+            add(rebuilt, account);
+        }
+        add(entries, account);
+    }
+
+    /**
+     * Finds the last names of accounts having a first or last name word starting with the query
+     *
+     * @param query     prefix to search for, case and accent insensitive
+     * @param page      zero based page number
+     * @param size      maximum number of results in the page
+     * @return          distinct last names of matching accounts, in name order
+     */
+    public List<String> search(String query, int page, int size) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty() || page < 0 || size <= 0) {
+            return Collections.emptyList();
+        }
+
+        ConcurrentNavigableMap<String, String> matches = entries.subMap(prefix, true, prefix + KEY_UPPER_BOUND, true);
+        long skip = (long) page * size;
+        Set<String> seen = new LinkedHashSet<>();
+        List<String> results = new ArrayList<>(size);
+        for (String lastName : matches.values()) {
+            if (!seen.add(lastName)) {
+                continue;
+            }
+            if (seen.size() > skip) {
+                results.add(lastName);
+                if (results.size() == size) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static void add(ConcurrentSkipListMap<String, String> index, Account account) {
+        String lastName = account.getLastName();
+        if (lastName == null) {
+            return;
+        }
+        indexWords(index, account.getFirstName(), lastName);
+        indexWords(index, lastName, lastName);
+    }
+
+    private static void indexWords(ConcurrentSkipListMap<String, String> index, String name, String lastName) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        for (String word : WHITESPACE.split(normalized)) {
+            index.put(word + KEY_SEPARATOR + lastName, lastName);
+        }
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,215 @@
+package com.ippon.bankapp.service.stats;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.domain.AccountMonthlyStats;
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.dto.AccountStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-account, per-month deposit and withdrawal aggregates.
+ *
+ * Postings add to the aggregates of their month in the same transaction as the posting itself, with a single
+ * increment statement, so reading the statistics of an account never touches the transaction history. For an
+ * account whose balance is split across slots, each posting picks one of as many stripes of the aggregates at random
+ * (see {@link AccountMonthlyStats}), so concurrent postings do not queue on one row.
+ */
+@Component
+public class AccountStatsProjection {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountStatsProjection.class);
+
+    private final AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildParallelism;
+    private final int rebuildChunkSize;
+
+    public AccountStatsProjection(AccountMonthlyStatsRepository accountMonthlyStatsRepository,
+                                  AccountRepository accountRepository,
+                                  TransactionRepository transactionRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${bankapp.stats.rebuild.parallelism:4}") int rebuildParallelism,
+                                  @Value("${bankapp.stats.rebuild.chunk-size:500}") int rebuildChunkSize) {
+        this.accountMonthlyStatsRepository = accountMonthlyStatsRepository;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.rebuildParallelism = rebuildParallelism;
+        this.rebuildChunkSize = rebuildChunkSize;
+    }
+
+    /**
+     * Adds deposits to the aggregates of their month, in the caller's transaction
+     *
+     * @param account       the account deposited into
+     * @param date          date of the deposits
+     * @param count         number of deposits
+     * @param total         sum of the deposits
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeposits(Account account, LocalDate date, long count, BigDecimal total) {
+        String period = YearMonth.from(date).toString();
+        int stripe = pickStripe(account);
+        if (accountMonthlyStatsRepository.addDeposits(account.getId(), period, stripe, count, total) == 0) {
+            AccountMonthlyStats stats = new AccountMonthlyStats(account.getId(), period, stripe);
+            stats.addDeposits(count, total);
+            insert(stats);
+        }
+    }
+
+    /**
+     * Adds a withdrawal to the aggregates of its month, in the caller's transaction
+     *
+     * @param account       the account withdrawn from
+     * @param date          date of the withdrawal
+     * @param amount        amount withdrawn
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWithdrawal(Account account, LocalDate date, BigDecimal amount) {
+        String period = YearMonth.from(date).toString();
+        int stripe = pickStripe(account);
+        if (accountMonthlyStatsRepository.addWithdrawals(account.getId(), period, stripe, 1, amount) == 0) {
+            AccountMonthlyStats stats = new AccountMonthlyStats(account.getId(), period, stripe);
+            stats.addWithdrawals(1, amount);
+            insert(stats);
+        }
+    }
+
+    private static int pickStripe(Account account) {
+        return account.isSplitBalance() ? ThreadLocalRandom.current().nextInt(account.getBalanceSlots()) : 0;
+    }
+
+    /**
+     * Inserts the first aggregates of an account's month. When a concurrent posting inserted them first, the unique
+     * index rejects this one and the posting fails as a concurrency failure, to be run again; the update then finds
+     * the row. Retrying the update in the same transaction is not an option, a failed insert aborts it on PostgreSQL
+     *
+     * @param stats     aggregates of a month that had none
+     */
+    private void insert(AccountMonthlyStats stats) {
+        try {
+            accountMonthlyStatsRepository.saveAndFlush(stats);
+        } catch (DataIntegrityViolationException e) {
+            throw new ConcurrencyFailureException("Statistics of account " + stats.getAccountId() + " for "
+                    + stats.getPeriod() + " were created concurrently", e);
+        }
+    }
+
+    /**
+     * Gets the monthly statistics of an account
+     *
+     * @param accountId     id of the account
+     * @return              DTOs of the monthly statistics, oldest month first
+     */
+    @Transactional(readOnly = true)
+    public List<AccountStatsDTO> getMonthlyStats(int accountId) {
+        Map<String, AccountMonthlyStats> byPeriod = new TreeMap<>();
+        for (AccountMonthlyStats stripe : accountMonthlyStatsRepository.findAllByAccountIdOrderByPeriod(accountId)) {
+            byPeriod.computeIfAbsent(stripe.getPeriod(), period -> new AccountMonthlyStats(accountId, period))
+                    .add(stripe);
+        }
+
+        List<AccountStatsDTO> result = new ArrayList<>();
+        for (AccountMonthlyStats stats : byPeriod.values()) {
+            result.add(new AccountStatsDTO(stats.getPeriod(),
+                    stats.getDepositCount(),
+                    stats.getDepositTotal(),
+                    average(stats.getDepositTotal(), stats.getDepositCount()),
+                    stats.getWithdrawalCount(),
+                    stats.getWithdrawalTotal(),
+                    average(stats.getWithdrawalTotal(), stats.getWithdrawalCount())));
+        }
+        return result;
+    }
+
+    /**
+     * Throws the projection away and recomputes it from the transaction history. Accounts are split in chunks that
+     * are recomputed in parallel, each chunk in its own transaction, into the first stripe of each month. Postings
+     * made while the rebuild runs may be counted twice or lost, so it must only run while postings are stopped (see
+     * {@link AccountStatsRebuildRunner})
+     *
+     * @return  number of accounts rebuilt
+     */
+    public int rebuild() {
+        List<Integer> accountIds = accountRepository.findAllIds();
+        transactionTemplate.execute(status -> {
+            accountMonthlyStatsRepository.deleteAll();
+            return null;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < accountIds.size(); from += rebuildChunkSize) {
+                List<Integer> chunk = accountIds.subList(from, Math.min(from + rebuildChunkSize, accountIds.size()));
+                chunks.add(executor.submit(() -> transactionTemplate.execute(status -> {
+                    for (Integer accountId : chunk) {
+                        accountMonthlyStatsRepository.saveAll(aggregate(accountId));
+                    }
+                    return null;
+                })));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Statistics rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Statistics rebuild failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("Rebuilt account statistics for {} accounts", accountIds.size());
+        return accountIds.size();
+    }
+
+    private List<AccountMonthlyStats> aggregate(int accountId) {
+        Map<String, AccountMonthlyStats> byPeriod = new TreeMap<>();
+        for (TransactionRepository.PostingRow posting : transactionRepository.findPostingsByAccountId(accountId)) {
+            String period = YearMonth.from(posting.getDate()).toString();
+            AccountMonthlyStats stats = byPeriod.computeIfAbsent(period, p -> new AccountMonthlyStats(accountId, p));
+            // Withdrawals and outgoing transfers debit the account, so their legs are negative
+            if (posting.getAmount().signum() < 0) {
+                stats.addWithdrawals(1, posting.getAmount().negate());
+            } else {
+                stats.addDeposits(1, posting.getAmount());
+            }
+        }
+        return new ArrayList<>(byPeriod.values());
+    }
+
+    private static BigDecimal average(BigDecimal total, long count) {
+        if (count == 0) {
+            return BigDecimal.ZERO;
+        }
+        return total.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_EVEN);
+    }
+}
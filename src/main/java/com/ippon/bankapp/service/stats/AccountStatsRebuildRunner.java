@@ -0,0 +1,33 @@
+package com.ippon.bankapp.service.stats;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the account statistics projection at startup when the application is started with
+ * {@code --rebuild-account-stats}.
+ *
+ * The rebuild runs once all beans are created, before the web server starts and before the scheduled tasks are
+ * registered, so no posting can be made while it runs.
+ */
+@Component
+public class AccountStatsRebuildRunner implements SmartInitializingSingleton {
+
+    public static final String REBUILD_OPTION = "rebuild-account-stats";
+
+    private final AccountStatsProjection accountStatsProjection;
+    private final ApplicationArguments args;
+
+    public AccountStatsRebuildRunner(AccountStatsProjection accountStatsProjection, ApplicationArguments args) {
+        this.accountStatsProjection = accountStatsProjection;
+        this.args = args;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (args.containsOption(REBUILD_OPTION)) {
+            accountStatsProjection.rebuild();
+        }
+    }
+}
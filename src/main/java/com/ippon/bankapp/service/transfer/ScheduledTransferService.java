@@ -0,0 +1,325 @@
+package com.ippon.bankapp.service.transfer;
+
+import com.ippon.bankapp.domain.ScheduledTransfer;
+import com.ippon.bankapp.repository.ScheduledTransferRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.ScheduledTransferDTO;
+import com.ippon.bankapp.service.exception.ScheduledTransferNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs scheduled and recurring transfers (standing orders) through {@link AccountService#transfer(int, int,
+ * java.math.BigDecimal)}.
+ *
+ * Transfers due within the load horizon are read from the database in id pages and put in a {@link TimingWheel},
+ * which is advanced every tick on a thread of its own; the transfers falling due are run in batches on a bounded
+ * worker pool, and the ticking thread waits for room in its queue, so a backlog of runs never spills onto the
+ * application's shared scheduling thread. Each run is
+ * claimed by moving the transfer to its next run in the same transaction as its posting, so a run happens exactly
+ * once even when the application restarts mid-batch: a run whose posting never committed is still due. A run whose
+ * transfer fails is claimed on its own with the failure recorded, and is not retried. Transfers that fell due while
+ * the application was down are loaded as already due, and a standing order that missed several runs catches up one
+ * run at a time.
+ */
+@Service
+public class ScheduledTransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledTransferService.class);
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final ScheduledTransferRepository scheduledTransferRepository;
+    private final AccountService accountService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long tickMillis;
+    private final Duration loadHorizon;
+    private final int batchSize;
+    private final TimingWheel wheel;
+    private final Set<Integer> loaded = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService ticker;
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public ScheduledTransferService(ScheduledTransferRepository scheduledTransferRepository,
+                                    AccountService accountService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${bankapp.transfers.tick-ms:1000}") long tickMillis,
+                                    @Value("${bankapp.transfers.load-interval-ms:60000}") long loadIntervalMillis,
+                                    @Value("${bankapp.transfers.workers:4}") int workerCount,
+                                    @Value("${bankapp.transfers.batch-size:100}") int batchSize) {
+        this.scheduledTransferRepository = scheduledTransferRepository;
+        this.accountService = accountService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tickMillis = tickMillis;
+        // Load twice as far ahead as the load interval, so a late load never misses a run
+        this.loadHorizon = Duration.ofMillis(loadIntervalMillis * 2);
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerCount * 4), new WaitForRoomPolicy());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "scheduled-transfers-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleWithFixedDelay(this::tickSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules a transfer between two accounts
+     *
+     * @param transfer  DTO holding the accounts, the amount, the first run and the interval
+     * @return          DTO of the scheduled transfer
+     */
+    public ScheduledTransferDTO schedule(ScheduledTransferDTO transfer) {
+        int fromId = accountService.getAccountId(transfer.getFrom());
+        int toId = accountService.getAccountId(transfer.getTo());
+        ScheduledTransfer save = scheduledTransferRepository.save(new ScheduledTransfer(fromId, toId,
+                transfer.getAmount(), transfer.getNextRunAt(), transfer.getIntervalDays()));
+
+        if (save.getNextRunAt().isBefore(Instant.now().plus(loadHorizon))) {
+            addToWheel(save.getId(), save.getNextRunAt());
+        }
+        return mapToDTO(save, transfer.getFrom(), transfer.getTo());
+    }
+
+    /**
+     * Cancels a scheduled transfer. A run being posted meanwhile either completes or is not made
+     *
+     * @param id    id of the scheduled transfer
+     */
+    public void cancel(int id) {
+        ScheduledTransfer transfer = scheduledTransferRepository
+                .findById(id)
+                .orElseThrow(ScheduledTransferNotFoundException::new);
+        transfer.setActive(false);
+        scheduledTransferRepository.save(transfer);
+    }
+
+    /**
+     * Gets the active scheduled transfers out of an account
+     *
+     * @param lastName  last name of the account transferred from
+     * @return          DTOs of the scheduled transfers, next to run first
+     */
+    public List<ScheduledTransferDTO> getScheduledTransfers(String lastName) {
+        List<ScheduledTransferDTO> transfers = new ArrayList<>();
+        for (ScheduledTransfer transfer : scheduledTransferRepository
+                .findAllByFromAccountIdAndActiveTrueOrderByNextRunAt(accountService.getAccountId(lastName))) {
+            String to = accountService.getAccountDTO(transfer.getToAccountId()).getLastName();
+            transfers.add(mapToDTO(transfer, lastName, to));
+        }
+        return transfers;
+    }
+
+    /**
+     * Puts every active transfer due within the load horizon in the timing wheel, including overdue ones
+     */
+    @Scheduled(fixedDelayString = "${bankapp.transfers.load-interval-ms:60000}")
+    public void load() {
+        Instant until = Instant.now().plus(loadHorizon);
+        int afterId = Integer.MIN_VALUE;
+        int count = 0;
+        List<ScheduledTransferRepository.DueTransfer> page;
+        do {
+            page = scheduledTransferRepository.findDueBefore(until, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (ScheduledTransferRepository.DueTransfer due : page) {
+                if (addToWheel(due.getId(), due.getNextRunAt())) {
+                    count++;
+                }
+                afterId = due.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        if (count > 0) {
+            log.info("Loaded {} scheduled transfers due before {}", count, until);
+        }
+    }
+
+    /**
+     * Advances the timing wheel and hands the transfers falling due to the workers in batches, waiting while their
+     * queue is full
+     */
+    public void tick() {
+        List<Integer> due;
+        synchronized (wheel) {
+            due = wheel.advance(System.currentTimeMillis());
+        }
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Integer> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            workers.execute(() -> runBatch(batch));
+        }
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return  number of transfers in the timing wheel or being run
+     */
+    public int getPendingCount() {
+        return loaded.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic tick
+            log.error("Scheduled transfers tick failed", e);
+        }
+    }
+
+    private boolean addToWheel(int id, Instant runAt) {
+        if (!loaded.add(id)) {
+            return false;
+        }
+        synchronized (wheel) {
+            wheel.add(id, runAt.toEpochMilli());
+        }
+        return true;
+    }
+
+    private void runBatch(List<Integer> batch) {
+        for (Integer id : batch) {
+            boolean requeued = false;
+            try {
+                requeued = run(id);
+            } catch (RuntimeException e) {
+                log.error("Scheduled transfer {} could not be run", id, e);
+            } finally {
+                if (!requeued) {
+                    loaded.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims and posts the current run of a transfer in one transaction, then puts its next run back in the wheel
+     * when it falls within the load horizon. The transfer stays marked as loaded meanwhile, so runs of one standing
+     * order never overlap. A transfer not due yet, moved since it was loaded, is put back in the wheel when it falls
+     * within the load horizon; a cancelled one, or one moved further, is dropped and the next load picks it up again
+     * if needed
+     *
+     * @param id    id of the scheduled transfer
+     * @return      true if the next run was put back in the wheel
+     */
+    private boolean run(int id) {
+        ScheduledTransfer transfer = scheduledTransferRepository.findById(id).orElse(null);
+        Instant now = Instant.now();
+        if (transfer == null || !transfer.isActive()) {
+            return false;
+        }
+        if (transfer.getNextRunAt().isAfter(now)) {
+            return requeue(id, transfer.getNextRunAt(), now);
+        }
+
+        Instant due = transfer.getNextRunAt();
+        Instant next = transfer.nextRunAfter(due);
+        try {
+            if (!accountService.transfer(transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount(),
+                    () -> scheduledTransferRepository.claim(id, due, next, transfer.isRecurring()) == 1)) {
+                return false;
+            }
+            runCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            // The claim rolled back with the transfer; claim the run again, recording why it failed
+            Integer claimed = transactionTemplate.execute(status -> {
+                int count = scheduledTransferRepository.claim(id, due, next, transfer.isRecurring());
+                if (count == 1) {
+                    scheduledTransferRepository.recordFailure(id, e.getClass().getSimpleName());
+                }
+                return count;
+            });
+            if (claimed == null || claimed == 0) {
+                return false;
+            }
+            failureCount.incrementAndGet();
+            log.warn("Scheduled transfer {} due at {} failed", id, due, e);
+        }
+
+        return transfer.isRecurring() && requeue(id, next, now);
+    }
+
+    private boolean requeue(int id, Instant runAt, Instant now) {
+        if (!runAt.isBefore(now.plus(loadHorizon))) {
+            return false;
+        }
+        synchronized (wheel) {
+            wheel.add(id, runAt.toEpochMilli());
+        }
+        return true;
+    }
+
+    private ScheduledTransferDTO mapToDTO(ScheduledTransfer transfer, String from, String to) {
+        return new ScheduledTransferDTO()
+                .id(transfer.getId())
+                .from(from)
+                .to(to)
+                .amount(transfer.getAmount())
+                .nextRunAt(transfer.getNextRunAt())
+                .intervalDays(transfer.getIntervalDays());
+    }
+
+    /**
+     * Makes the ticking thread wait for room in the worker queue instead of running the batch itself
+     */
+    private static final class WaitForRoomPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Scheduled transfer workers are shut down");
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted waiting for a scheduled transfer worker", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.ippon.bankapp.service.transfer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel holding int ids due at millisecond times.
+ *
+ * Level 0 has one bucket per tick; each higher level has buckets as wide as the whole level below, and is only
+ * created when an id is due too far ahead for the levels below. Adding an id is a bucket append, and advancing the
+ * clock by a tick drains one bucket per level at most, so the cost does not depend on how many ids are waiting.
+ * When the clock reaches a higher level bucket its ids are cascaded down to the finer levels. A level 0 bucket is
+ * drained whole once its tick has passed; the ids of the bucket the clock is in are only taken out when due, so an
+ * id is never returned early.
+ *
+ * Not thread safe; callers synchronize.
+ */
+public class TimingWheel {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level> levels = new ArrayList<>();
+    private final List<Integer> expired = new ArrayList<>();
+
+    private long currentTime;
+    private int size;
+
+    /**
+     * @param tickMillis    width of a level 0 bucket, the resolution of the wheel
+     * @param wheelSize     number of buckets per level
+     * @param startMillis   current time
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and a level needs at least two buckets");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+        levels.add(new Level(tickMillis, wheelSize));
+    }
+
+    /**
+     * Adds an id due at a time. Ids already due are returned by the next {@link #advance(long)}
+     *
+     * @param id        id to add
+     * @param dueMillis time the id is due at
+     */
+    public void add(int id, long dueMillis) {
+        size++;
+        place(id, dueMillis);
+    }
+
+    /**
+     * Moves the clock forward and takes out every id due by then
+     *
+     * @param nowMillis current time
+     * @return          ids due, roughly in due order
+     */
+    public List<Integer> advance(long nowMillis) {
+        while (currentTime + tickMillis <= nowMillis) {
+            Bucket bucket = levels.get(0).take(currentTime);
+            for (int j = 0; j < bucket.count; j++) {
+                expired.add(bucket.ids[j]);
+            }
+            currentTime += tickMillis;
+            for (int i = levels.size() - 1; i > 0; i--) {
+                Level level = levels.get(i);
+                if (currentTime % level.tickMillis == 0) {
+                    Bucket cascaded = level.take(currentTime);
+                    for (int j = 0; j < cascaded.count; j++) {
+                        place(cascaded.ids[j], cascaded.due[j]);
+                    }
+                }
+            }
+        }
+        levels.get(0).bucketFor(currentTime).takeDue(nowMillis, expired);
+
+        List<Integer> due = new ArrayList<>(expired);
+        expired.clear();
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * @return  number of ids waiting, including those due but not yet taken out
+     */
+    public int size() {
+        return size;
+    }
+
+    private void place(int id, long dueMillis) {
+        if (dueMillis < currentTime) {
+            expired.add(id);
+            return;
+        }
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                Level below = levels.get(i - 1);
+                levels.add(new Level(below.tickMillis * wheelSize, wheelSize));
+            }
+            Level level = levels.get(i);
+            long levelStart = currentTime - Math.floorMod(currentTime, level.tickMillis);
+            if (dueMillis < levelStart + level.tickMillis * wheelSize) {
+                level.bucketFor(dueMillis).add(id, dueMillis);
+                return;
+            }
+        }
+    }
+
+    private static final class Level {
+
+        private final long tickMillis;
+        private final Bucket[] buckets;
+
+        private Level(long tickMillis, int wheelSize) {
+            this.tickMillis = tickMillis;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        private Bucket bucketFor(long timeMillis) {
+            return buckets[(int) Math.floorMod(Math.floorDiv(timeMillis, tickMillis), (long) buckets.length)];
+        }
+
+        private Bucket take(long timeMillis) {
+            int index = (int) Math.floorMod(Math.floorDiv(timeMillis, tickMillis), (long) buckets.length);
+            Bucket bucket = buckets[index];
+            if (bucket.count > 0) {
+                buckets[index] = new Bucket();
+            }
+            return bucket;
+        }
+    }
+
+    /**
+     * Growable pair of primitive arrays, so waiting ids are not boxed
+     */
+    private static final class Bucket {
+
+        private int[] ids = new int[0];
+        private long[] due = new long[0];
+        private int count;
+
+        private void add(int id, long dueMillis) {
+            if (count == ids.length) {
+                int capacity = Math.max(4, count * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                due = Arrays.copyOf(due, capacity);
+            }
+            ids[count] = id;
+            due[count] = dueMillis;
+            count++;
+        }
+
+        /**
+         * Moves the ids due by a time out of the bucket, keeping the others
+         *
+         * @param nowMillis current time
+         * @param into      list the due ids are added to
+         */
+        private void takeDue(long nowMillis, List<Integer> into) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (due[i] <= nowMillis) {
+                    into.add(ids[i]);
+                } else {
+                    ids[kept] = ids[i];
+                    due[kept] = due[i];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+    }
+}
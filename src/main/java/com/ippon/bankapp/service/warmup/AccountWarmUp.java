@@ -0,0 +1,155 @@
+package com.ippon.bankapp.service.warmup;
+
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.audit.AuditLog;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.exception.AccountNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the application up after startup, before it reports itself ready.
+ *
+ * Picks the accounts with the most postings over the last days and reads each of them through the service hot
+ * paths a few rounds over: the first round fills the in-memory id index and version registry and the database
+ * buffers, the following ones give the JIT compiler enough calls to compile those paths. Runs on its own thread;
+ * until it is done the health of the application is OUT_OF_SERVICE, so load balancers keep traffic away.
+ *
+ * The reads are kept out of the audit trail, which is for calls made on behalf of clients, and stop once the time
+ * budget is spent, whatever round they are in. Only the read paths are warmed: warming the postings would mean moving
+ * money or holding row locks on the busiest accounts, just as traffic comes in.
+ */
+@Component
+public class AccountWarmUp implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountWarmUp.class);
+
+    private final AccountService accountService;
+    private final TransactionRepository transactionRepository;
+    private final AuditLog auditLog;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int accounts;
+    private final int days;
+    private final int rounds;
+    private final long maxDurationMillis;
+
+    private volatile Health health = Health.outOfService().withDetail("warmUp", "pending").build();
+
+    public AccountWarmUp(AccountService accountService,
+                         TransactionRepository transactionRepository,
+                         AuditLog auditLog,
+                         MeterRegistry meterRegistry,
+                         @Value("${bankapp.warm-up.enabled:true}") boolean enabled,
+                         @Value("${bankapp.warm-up.accounts:100}") int accounts,
+                         @Value("${bankapp.warm-up.days:7}") int days,
+                         @Value("${bankapp.warm-up.rounds:20}") int rounds,
+                         @Value("${bankapp.warm-up.max-duration-ms:30000}") long maxDurationMillis) {
+        this.accountService = accountService;
+        this.transactionRepository = transactionRepository;
+        this.auditLog = auditLog;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.accounts = accounts;
+        this.days = days;
+        this.rounds = rounds;
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    /**
+     * Starts the warm-up once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            health = Health.up().withDetail("warmUp", "disabled").build();
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "account-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Preloads the most active accounts and exercises the read paths, then reports the application ready
+     */
+    void warmUp() {
+        long start = System.nanoTime();
+        int warmed = 0;
+        try {
+            List<Integer> ids = transactionRepository.findMostActiveAccountIds(
+                    LocalDate.now().minusDays(days), PageRequest.of(0, Math.max(accounts, 1)));
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+            warmed = auditLog.unaudited(() -> readRounds(ids, deadline));
+        } catch (RuntimeException e) {
+            log.warn("Account warm-up failed, reporting ready anyway", e);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("bankapp.warm-up.duration").record(elapsed, TimeUnit.NANOSECONDS);
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        health = Health.up()
+                .withDetail("warmUp", "done")
+                .withDetail("accounts", warmed)
+                .withDetail("durationMs", TimeUnit.NANOSECONDS.toMillis(elapsed))
+                .withDetail("readyAfterMs", uptime)
+                .build();
+        log.info("Account warm-up of {} accounts done in {} ms, ready {} ms after JVM start",
+                warmed, TimeUnit.NANOSECONDS.toMillis(elapsed), uptime);
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    /**
+     * Reads the accounts round after round until all rounds are done or the deadline is reached
+     *
+     * @param ids           accounts to read
+     * @param deadline      System.nanoTime() after which no read is started
+     * @return number of accounts found in the first round
+     */
+    private int readRounds(List<Integer> ids, long deadline) {
+        int warmed = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int id : ids) {
+                if (System.nanoTime() - deadline >= 0) {
+                    log.info("Account warm-up out of time in round {} of {}", round + 1, rounds);
+                    return warmed;
+                }
+                if (read(id) && round == 0) {
+                    warmed++;
+                }
+            }
+        }
+        return warmed;
+    }
+
+    private boolean read(int id) {
+        try {
+            AccountDTO account = accountService.getAccountDTO(id);
+            accountService.getAccountId(account.getLastName());
+            accountService.getAccountDTOByLastName(account.getLastName());
+            accountService.getAccountVersion(id);
+            accountService.getLatestTenTransaction(id);
+            return true;
+        } catch (AccountNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ippon.bankapp.monitoring;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.domain.JournalEntry;
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.DepositUsageRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Fails the build when a service call starts issuing more SQL than its budget
+ */
+@SpringBootTest(properties = "bankapp.notification.relay.poll-interval-ms=3600000")
+public class SqlStatementBudgetIntegrationTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DepositUsageRepository depositUsageRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @BeforeEach
+    public void before() {
+        accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Scott"));
+        accountService.deposit("Scott", BigDecimal.valueOf(100));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        accountMonthlyStatsRepository.deleteAll();
+        transactionRepository.deleteAll();
+        depositUsageRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void createAccount_withinBudget() {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.createAccount(new AccountDTO().firstName("Erin").lastName("Geoghan"));
+
+            assertWithinBudget(statistics, 3, 1);
+        }
+    }
+
+    @Test
+    public void deposit_withinBudget() {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.deposit("Scott", BigDecimal.TEN);
+
+            // Includes reading the deposit usage and its conditional increment
+            assertWithinBudget(statistics, 7, 1);
+        }
+    }
+
+    @Test
+    public void withdraw_withinBudget() {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.withdraw("Scott", BigDecimal.TEN);
+
+            assertWithinBudget(statistics, 5, 1);
+        }
+    }
+
+    @Test
+    public void transfer_withinBudget() {
+        accountService.createAccount(new AccountDTO().firstName("Erin").lastName("Geoghan"));
+
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.transfer("Scott", "Geoghan", BigDecimal.TEN);
+
+            // A first credit to Geoghan: its deposit usage is missed, summed from the ledger and inserted
+            assertWithinBudget(statistics, 13, 1);
+        }
+    }
+
+    @Test
+    public void getAccount_withinBudget() {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.getAccountDTOByLastName("Scott");
+
+            assertWithinBudget(statistics, 1, 1);
+        }
+    }
+
+    @Test
+    public void getLatestTransactions_withinBudget() {
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            accountService.getLatestTenTransaction("Scott");
+
+            assertWithinBudget(statistics, 1, 1);
+        }
+    }
+
+    @Test
+    public void saveJournalEntries_insertedInOneBatchPerTable() {
+        Account account = accountRepository.findByLastName("Scott").orElseThrow(IllegalStateException::new);
+        List<JournalEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(JournalEntry.deposit(account, BigDecimal.ONE));
+        }
+
+        try (SqlStatistics statistics = SqlStatistics.open()) {
+            journalEntryRepository.saveAll(entries);
+
+            // One insert batch per table, and at most one sequence fetch per table
+            assertWithinBudget(statistics, 4, 1);
+        }
+    }
+
+    private static void assertWithinBudget(SqlStatistics statistics, long statements, long connections) {
+        assertThat(statistics.getStatements(), lessThanOrEqualTo(statements));
+        assertThat(statistics.getConnections(), lessThanOrEqualTo(connections));
+    }
+}
@@ -0,0 +1,51 @@
+package com.ippon.bankapp.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class SqlStatisticsFilterTest {
+
+    private final SqlStatisticsFilter subject = new SqlStatisticsFilter();
+
+    @Test
+    public void doFilter_writesCountsBeforeBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        subject.doFilter(new MockHttpServletRequest("GET", "/api/account/Scott"), response,
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        SqlStatistics.connectionAcquired();
+                        SqlStatistics.statementExecuted();
+                        SqlStatistics.statementExecuted();
+                        SqlStatistics.rowFetched();
+                        resp.getWriter().write("{}");
+                        SqlStatistics.statementExecuted();
+                    }
+                }));
+
+        assertThat(response.getHeader(SqlStatisticsFilter.STATEMENTS_HEADER), is("2"));
+        assertThat(response.getHeader(SqlStatisticsFilter.ROWS_HEADER), is("1"));
+        assertThat(response.getHeader(SqlStatisticsFilter.CONNECTIONS_HEADER), is("1"));
+    }
+
+    @Test
+    public void doFilter_noBody_writesCountsAfterChain() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        subject.doFilter(new MockHttpServletRequest("POST", "/api/account/transfer"), response,
+                (request, resp) -> SqlStatistics.statementExecuted());
+
+        assertThat(response.getHeader(SqlStatisticsFilter.STATEMENTS_HEADER), is("1"));
+    }
+}
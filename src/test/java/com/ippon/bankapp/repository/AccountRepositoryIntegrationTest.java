@@ -6,13 +6,20 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
 public class AccountRepositoryIntegrationTest {
@@ -55,6 +62,13 @@ public class AccountRepositoryIntegrationTest {
         assertThat(result, is(Optional.of(account)));
     }
 
+    @Test
+    public void rejectsDuplicateLastName() {
+        subject.saveAndFlush(new Account("First", "Last"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> subject.saveAndFlush(new Account("Other", "Last")));
+    }
+
     @Test
     @Sql(scripts = "classpath:sql/account_insert.sql")
     public void fetchesByLastname() {
@@ -70,6 +84,47 @@ public class AccountRepositoryIntegrationTest {
         assertThat(result.getNotificationPreference(), is("email"));
     }
 
+    @Test
+    @Sql(scripts = "classpath:sql/account_insert.sql")
+    public void fetchesViewByLastname() {
+
+        AccountView result = subject
+                .findViewByLastName("Geoghan")
+                .orElseThrow(AccountNotFoundException::new);
+
+        assertThat(result.getId(), is(-11));
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(1405.32)));
+        assertThat(result.getFirstName(), is("Erin"));
+        assertThat(result.getNotificationPreference(), is("sms"));
+        assertThat(result.isSplitBalance(), is(false));
+    }
+
+    @Test
+    @Sql(scripts = "classpath:sql/account_insert.sql")
+    public void pagesViewsAfterCursor() {
+
+        List<AccountView> result = subject.findViewsAfter(-14, PageRequest.of(0, 2));
+
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getId(), is(-13));
+        assertThat(result.get(1).getLastName(), is("Ortega"));
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:sql/account_insert.sql")
+    public void streamsAllViewsInIdOrder() {
+
+        List<Integer> ids;
+        try (Stream<AccountView> result = subject.streamAllViews()) {
+            ids = result.map(AccountView::getId).collect(Collectors.toList());
+        }
+
+        assertThat(ids.size(), is(6));
+        assertThat(ids.get(0), is(-15));
+        assertThat(ids.get(5), is(-10));
+    }
+
     @Test
     @Sql(scripts = "classpath:sql/account_insert.sql")
     public void fetchesByFirstname() {
@@ -4,34 +4,58 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ippon.bankapp.rest.errors.RestErrorHandler;
 import com.ippon.bankapp.service.AccountService;
 import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.AccountPageDTO;
+import com.ippon.bankapp.service.dto.AccountStatsDTO;
+import com.ippon.bankapp.service.dto.LeaderboardEntryDTO;
+import com.ippon.bankapp.service.events.AccountEventBus;
 import com.ippon.bankapp.service.exception.AccountLastNameExistsException;
 import com.ippon.bankapp.service.exception.AccountNotFoundException;
+import com.ippon.bankapp.service.exception.UnknownLeaderboardException;
+import com.ippon.bankapp.service.exception.UnknownTierException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest(classes = {AccountController.class, RestErrorHandler.class})
+@SpringBootTest(classes = {AccountController.class, RestErrorHandler.class, ObjectMapper.class})
 class AccountControllerTest {
 
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private AccountEventBus accountEventBus;
+
     @Autowired
     private RestErrorHandler restErrorHandler;
 
@@ -41,7 +65,7 @@ class AccountControllerTest {
 
     @BeforeEach
     public void before() {
-        AccountController subject = new AccountController(accountService);
+        AccountController subject = new AccountController(accountService, accountEventBus, objectMapper);
         this.mockMvc = MockMvcBuilders
                 .standaloneSetup(subject)
                 .setControllerAdvice(restErrorHandler)
@@ -62,6 +86,97 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.lastName").value("Scott"));
     }
 
+    @Test
+    public void testAccountRetrieval_returnsVersionETag() throws Exception {
+        given(accountService.getAccountVersion("Scott")).willReturn(3L);
+        given(accountService.getAccountDTOByLastName("Scott"))
+                .willReturn(new AccountDTO()
+                        .lastName("Scott")
+                        .firstName("Ben"));
+
+        mockMvc
+                .perform(get("/api/account/Scott"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+    }
+
+    @Test
+    public void testAccountRetrieval_NotModified() throws Exception {
+        given(accountService.getAccountVersion("Scott")).willReturn(3L);
+
+        mockMvc
+                .perform(get("/api/account/Scott").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified());
+
+        verify(accountService, never()).getAccountDTOByLastName("Scott");
+    }
+
+    @Test
+    public void testLatestTransactions_NotModified() throws Exception {
+        given(accountService.getAccountVersion("Scott")).willReturn(7L);
+
+        mockMvc
+                .perform(get("/api/account/transactions/Scott").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified());
+
+        verify(accountService, never()).getLatestTenTransaction("Scott");
+    }
+
+    @Test
+    public void testAccountRetrievalById_AccountExists() throws Exception {
+        given(accountService.getAccountVersion(7)).willReturn(2L);
+        given(accountService.getAccountDTO(7))
+                .willReturn(new AccountDTO()
+                        .id(7)
+                        .lastName("Scott")
+                        .firstName("Ben"));
+
+        mockMvc
+                .perform(get("/api/accounts/7"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.lastName").value("Scott"));
+    }
+
+    @Test
+    public void testDepositById() throws Exception {
+        given(accountService.deposit(7, BigDecimal.TEN))
+                .willReturn(new AccountDTO()
+                        .id(7)
+                        .lastName("Scott")
+                        .balance(BigDecimal.TEN));
+
+        mockMvc
+                .perform(post("/api/accounts/7/deposit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 10}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(10));
+    }
+
+    @Test
+    public void testEvents_subscribesToAccount() throws Exception {
+        given(accountService.getAccountId("Scott")).willReturn(7);
+        given(accountEventBus.subscribe(eq(7), any(AccountEventBus.EventSink.class)))
+                .willAnswer(invocation -> new AccountEventBus(1, 1, 1000).subscribe(7, invocation.getArgument(1)));
+
+        mockMvc
+                .perform(get("/api/account/Scott/events"))
+                .andExpect(request().asyncStarted());
+
+        verify(accountEventBus).subscribe(eq(7), any(AccountEventBus.EventSink.class));
+    }
+
+    @Test
+    public void testEvents_unknownAccount_notFound() throws Exception {
+        given(accountService.getAccountId("Scott")).willThrow(new AccountNotFoundException());
+
+        mockMvc
+                .perform(get("/api/account/Scott/events"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void testAccountRetrieval_AccountDoesNotExist() throws Exception {
         given(accountService.getAccountDTOByLastName("Scott"))
@@ -77,6 +192,142 @@ class AccountControllerTest {
         assertThat(errorMessage, is("Account not found"));
     }
 
+    @Test
+    public void testAccountSearch() throws Exception {
+        given(accountService.searchAccounts("sco", 1, 5))
+                .willReturn(Collections.singletonList(new AccountDTO()
+                        .lastName("Scott")
+                        .firstName("Ben")));
+
+        mockMvc
+                .perform(get("/api/account/search")
+                        .param("q", "sco")
+                        .param("page", "1")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].firstName").value("Ben"))
+                .andExpect(jsonPath("$[0].lastName").value("Scott"));
+    }
+
+    @Test
+    public void testListAccounts() throws Exception {
+        given(accountService.listAccounts(isNull(), eq(2)))
+                .willReturn(new AccountPageDTO(Arrays.asList(
+                        new AccountDTO().id(4).lastName("Scott"),
+                        new AccountDTO().id(9).lastName("Smith")), 9));
+
+        mockMvc
+                .perform(get("/api/accounts").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts[1].lastName").value("Smith"))
+                .andExpect(jsonPath("$.next").value(9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExportAccounts_oneJsonDocumentPerLine() throws Exception {
+        given(accountService.exportAccounts(any())).willAnswer(invocation -> {
+            Consumer<AccountDTO> action = invocation.getArgument(0);
+            action.accept(new AccountDTO().id(4).lastName("Scott"));
+            action.accept(new AccountDTO().id(9).lastName("Smith"));
+            return 2L;
+        });
+
+        MvcResult result = mockMvc
+                .perform(get("/api/accounts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The export sets its own timeout rather than relying on a global one
+        assertThat(result.getRequest().getAsyncContext().getTimeout(), is(600_000L));
+
+        String[] lines = mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        assertThat(lines.length, is(2));
+        assertThat(objectMapper.readValue(lines[0], AccountDTO.class).getLastName(), is("Scott"));
+        assertThat(objectMapper.readValue(lines[1], AccountDTO.class).getId(), is(9));
+    }
+
+    @Test
+    public void testTopAccounts() throws Exception {
+        given(accountService.getTopAccounts("activity", 3))
+                .willReturn(Collections.singletonList(new LeaderboardEntryDTO(1, 7, "Scott", BigDecimal.valueOf(12))));
+
+        mockMvc
+                .perform(get("/api/account/top")
+                        .param("by", "activity")
+                        .param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rank").value(1))
+                .andExpect(jsonPath("$[0].accountId").value(7))
+                .andExpect(jsonPath("$[0].lastName").value("Scott"))
+                .andExpect(jsonPath("$[0].value").value(12));
+    }
+
+    @Test
+    public void testChangeTierById_unknownTier() throws Exception {
+        given(accountService.changeTier(7, "gold")).willThrow(new UnknownTierException());
+
+        String errorMessage = mockMvc
+                .perform(put("/api/accounts/7/tier")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tier\": \"gold\"}"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getErrorMessage();
+
+        assertThat(errorMessage, is("Unknown tier"));
+    }
+
+    @Test
+    public void testChangeTierById_blankTier_badRequest() throws Exception {
+        mockMvc
+                .perform(put("/api/accounts/7/tier")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tier\": \"\"}"))
+                .andExpect(status().isBadRequest());
+
+        verify(accountService, never()).changeTier(eq(7), any());
+    }
+
+    @Test
+    public void testTopAccounts_unknownLeaderboard() throws Exception {
+        given(accountService.getTopAccounts("age", 10))
+                .willThrow(new UnknownLeaderboardException());
+
+        String errorMessage = mockMvc
+                .perform(get("/api/account/top").param("by", "age"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getErrorMessage();
+
+        assertThat(errorMessage, is("Unknown leaderboard"));
+    }
+
+    @Test
+    public void testAccountStats() throws Exception {
+        given(accountService.getAccountStats("Scott"))
+                .willReturn(Collections.singletonList(new AccountStatsDTO("2026-10",
+                        2, BigDecimal.valueOf(300), BigDecimal.valueOf(150),
+                        1, BigDecimal.valueOf(50), BigDecimal.valueOf(50))));
+
+        mockMvc
+                .perform(get("/api/account/Scott/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].month").value("2026-10"))
+                .andExpect(jsonPath("$[0].depositCount").value(2))
+                .andExpect(jsonPath("$[0].depositAverage").value(150))
+                .andExpect(jsonPath("$[0].withdrawalTotal").value(50));
+    }
+
     @Test
     public void testCreateAccount_requestValid() throws Exception {
         AccountDTO newAccount = new AccountDTO()
@@ -142,4 +393,21 @@ class AccountControllerTest {
                         .content(objectMapper.writeValueAsString(newAccount)))
                 .andExpect(status().isConflict());
     }
+
+    @Test
+    public void testWithdraw_concurrentUpdateAfterRetries_conflict() throws Exception {
+        given(accountService.withdraw(eq(7), any()))
+                .willThrow(new PessimisticLockingFailureException("deadlock"));
+
+        String errorMessage = mockMvc
+                .perform(post("/api/accounts/7/withdraw")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 10}"))
+                .andExpect(status().isConflict())
+                .andReturn()
+                .getResponse()
+                .getErrorMessage();
+
+        assertThat(errorMessage, is("Concurrent update, try again"));
+    }
 }
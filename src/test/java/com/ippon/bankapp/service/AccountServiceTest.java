@@ -1,29 +1,71 @@
 package com.ippon.bankapp.service;
 
 import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.domain.JournalEntry;
+import com.ippon.bankapp.domain.TransactionType;
 import com.ippon.bankapp.domain.Transaction;
 import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.AccountView;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
 import com.ippon.bankapp.repository.TransactionRepository;
 import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.AccountPageDTO;
 import com.ippon.bankapp.service.dto.TransactionDTO;
+import com.ippon.bankapp.service.events.AccountEventBus;
+import com.ippon.bankapp.service.events.BalanceEvent;
+import com.ippon.bankapp.service.history.BalanceHistory;
+import com.ippon.bankapp.service.leaderboard.AccountLeaderboards;
+import com.ippon.bankapp.service.limits.DepositLimitPolicyService;
+import com.ippon.bankapp.service.limits.DepositLimits;
+import com.ippon.bankapp.service.limits.DepositUsageTracker;
+import com.ippon.bankapp.service.exception.AccountLastNameExistsException;
+import com.ippon.bankapp.service.exception.AccountNotFoundException;
 import com.ippon.bankapp.service.exception.DepositLimitException;
 import com.ippon.bankapp.service.exception.InsufficientFundsException;
+import com.ippon.bankapp.service.exception.PostingRejectedException;
+import com.ippon.bankapp.service.exception.UnknownTierException;
+import com.ippon.bankapp.service.outbox.NotificationOutbox;
+import com.ippon.bankapp.service.posting.BalanceSlotService;
+import com.ippon.bankapp.service.rules.PostingKind;
+import com.ippon.bankapp.service.rules.PostingRulesEngine;
+import com.ippon.bankapp.service.search.AccountSearchIndex;
+import com.ippon.bankapp.service.stats.AccountStatsProjection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -36,15 +78,68 @@ public class AccountServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private JournalEntryRepository journalEntryRepository;
+
     @Mock
     private NotificationFactory notificationFactory;
 
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private AccountSearchIndex accountSearchIndex;
+
+    @Mock
+    private AccountVersionRegistry accountVersionRegistry;
+
+    @Mock
+    private AccountIdIndex accountIdIndex;
+
+    @Mock
+    private BalanceSlotService balanceSlotService;
+
+    @Mock
+    private NotificationOutbox notificationOutbox;
+
+    @Mock
+    private AccountStatsProjection accountStatsProjection;
+
+    @Mock
+    private BalanceHistory balanceHistory;
+
+    @Mock
+    private AccountLeaderboards accountLeaderboards;
+
+    @Mock
+    private AccountEventBus accountEventBus;
+
+    @Mock
+    private PostingRulesEngine postingRulesEngine;
+
+    @Mock
+    private PostingRulesEngine.Hold postingHold;
+
+    @Mock
+    private DepositLimitPolicyService depositLimitPolicyService;
+
+    @Mock
+    private DepositUsageTracker depositUsageTracker;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     public AccountService subject;
 
+    @BeforeEach
+    public void before() {
+        lenient().when(postingRulesEngine.check(anyInt(), any(), any())).thenReturn(postingHold);
+        lenient().when(postingRulesEngine.checkTransfer(anyInt(), anyInt(), any())).thenReturn(postingHold);
+    }
 
     @Test
     public void createsAccount() {
@@ -58,13 +153,10 @@ public class AccountServiceTest {
 
         given(emailService.getName()).willReturn("email");
 
-        given(notificationFactory.getPreferredService("email"))
-                .willReturn(Optional.of(emailService));
-
         Account account = new Account(accountDto.getFirstName(), accountDto.getLastName());
         account.setNotificationPreference("email");
 
-        given(accountRepository.save(account)).willReturn(account);
+        given(accountRepository.saveAndFlush(account)).willReturn(account);
 
         ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
 
@@ -77,12 +169,155 @@ public class AccountServiceTest {
         assertThat(accountResult.getFirstName(), is("Ben"));
         assertThat(accountResult.getLastName(), is("Scott"));
 
-        verify(emailService, times(1))
-                .sendMessage(message.capture(), message.capture(), message.capture(), message.capture());
-        assertThat(message.getAllValues().get(0), is("bank"));
-        assertThat(message.getAllValues().get(1), is(accountDto.getLastName()));
-        assertThat(message.getAllValues().get(2), is("Account Created"));
-        assertThat(message.getAllValues().get(3), is("Welcome aboard!"));
+        verify(notificationOutbox, times(1))
+                .enqueue(message.capture(), message.capture(), message.capture(), message.capture(), message.capture());
+        assertThat(message.getAllValues().get(0), is("email"));
+        assertThat(message.getAllValues().get(1), is("bank"));
+        assertThat(message.getAllValues().get(2), is(accountDto.getLastName()));
+        assertThat(message.getAllValues().get(3), is("Account Created"));
+        assertThat(message.getAllValues().get(4), is("Welcome aboard!"));
+        verify(emailService, never()).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        verify(accountSearchIndex).add(account);
+        verify(accountIdIndex).put("Scott", account.getId());
+    }
+
+    @Test
+    public void createAccount_duplicateLastName_throwsLastNameExists() {
+        given(notificationFactory.getDefaultNotification()).willReturn(emailService);
+        given(emailService.getName()).willReturn("email");
+        given(accountRepository.saveAndFlush(new Account("Ben", "Scott")))
+                .willThrow(new DataIntegrityViolationException("ux_account_last_name"));
+
+        assertThrows(AccountLastNameExistsException.class,
+                () -> subject.createAccount(new AccountDTO().firstName("Ben").lastName("Scott")));
+        verify(notificationOutbox, never()).enqueue("email", "bank", "Scott", "Account Created", "Welcome aboard!");
+    }
+
+    @Test
+    public void createAccount_tierInRequest_ignored() {
+        given(notificationFactory.getDefaultNotification()).willReturn(emailService);
+        given(emailService.getName()).willReturn("email");
+        given(accountRepository.saveAndFlush(any())).willAnswer(invocation -> invocation.getArgument(0));
+
+        AccountDTO result = subject.createAccount(new AccountDTO().firstName("Ben").lastName("Scott").tier("premium"));
+
+        assertThat(result.getTier(), is(Account.DEFAULT_TIER));
+    }
+
+    @Test
+    public void changeTier_knownTier_movesAccount() {
+        Account account = new Account("Ben", "Scott");
+        account.setId(7);
+        given(depositLimitPolicyService.isKnownTier("premium")).willReturn(true);
+        given(accountRepository.findById(7)).willReturn(Optional.of(account));
+        given(accountRepository.save(account)).willReturn(account);
+
+        AccountDTO result = subject.changeTier(7, "premium");
+
+        assertThat(result.getTier(), is("premium"));
+        assertThat(account.getTier(), is("premium"));
+    }
+
+    @Test
+    public void changeTier_unknownTier_throwsUnknownTier() {
+        given(depositLimitPolicyService.isKnownTier("gold")).willReturn(false);
+
+        assertThrows(UnknownTierException.class, () -> subject.changeTier(7, "gold"));
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    public void getAccountVersion_knownVersion_skipsRepository() {
+        given(accountIdIndex.get("Scott")).willReturn(OptionalInt.of(7));
+        given(accountVersionRegistry.get(7)).willReturn(4L);
+
+        assertThat(subject.getAccountVersion("Scott"), is(4L));
+        verify(accountRepository, never()).findIdByLastName("Scott");
+        verify(accountRepository, never()).findViewById(7);
+    }
+
+    @Test
+    public void getAccountVersion_unknownVersion_loadsAccount() {
+        Account account = new Account("Ben", "Scott");
+        account.setId(7);
+        given(accountVersionRegistry.get(7)).willReturn(AccountVersionRegistry.UNKNOWN_VERSION);
+        given(accountRepository.findViewById(7)).willReturn(Optional.of(view(account)));
+
+        assertThat(subject.getAccountVersion(7), is(0L));
+        verify(accountVersionRegistry).update(7, 0L);
+    }
+
+    @Test
+    public void getAccountId_unknownLastName_resolvesOnceFromRepository() {
+        given(accountRepository.findIdByLastName("Scott")).willReturn(Optional.of(7));
+
+        assertThat(subject.getAccountId("Scott"), is(7));
+        verify(accountIdIndex).put("Scott", 7);
+    }
+
+    @Test
+    public void getAccountId_missingAccount_throwsAccountNotFound() {
+        given(accountRepository.findIdByLastName("Scott")).willReturn(Optional.empty());
+
+        assertThrows(AccountNotFoundException.class, () -> subject.getAccountId("Scott"));
+    }
+
+    @Test
+    public void getAccountDTO_byId_mapsView() {
+        Account account = new Account("Ben", "Scott");
+        account.setId(7);
+        given(accountRepository.findViewById(7)).willReturn(Optional.of(view(account)));
+
+        AccountDTO result = subject.getAccountDTO(7);
+
+        assertThat(result.getId(), is(7));
+        assertThat(result.getLastName(), is("Scott"));
+    }
+
+    @Test
+    public void searchAccounts_keepsIndexOrder() {
+        AccountView scott = view(new Account("Ben", "Scott"));
+        AccountView scottie = view(new Account("Ben", "Scottie"));
+        given(accountSearchIndex.search("sco", 0, 20)).willReturn(Arrays.asList("Scott", "Scottie"));
+        given(accountRepository.findAllViewsByLastNameIn(Arrays.asList("Scott", "Scottie")))
+                .willReturn(Arrays.asList(scottie, scott));
+
+        List<AccountDTO> result = subject.searchAccounts("sco", 0, 20);
+
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getLastName(), is("Scott"));
+        assertThat(result.get(1).getLastName(), is("Scottie"));
+    }
+
+    @Test
+    public void listAccounts_returnsCursorOfNextPage() {
+        Account scott = new Account("Ben", "Scott");
+        scott.setId(4);
+        Account smith = new Account("Katie", "Smith");
+        smith.setId(9);
+        Account doe = new Account("Jane", "Doe");
+        doe.setId(12);
+        given(accountRepository.findViewsAfter(2, PageRequest.of(0, 3)))
+                .willReturn(Arrays.asList(view(scott), view(smith), view(doe)));
+
+        AccountPageDTO page = subject.listAccounts(2, 2);
+
+        assertThat(page.getAccounts().size(), is(2));
+        assertThat(page.getAccounts().get(1).getLastName(), is("Smith"));
+        assertThat(page.getNext(), is(9));
+    }
+
+    @Test
+    public void listAccounts_lastPageHasNoCursor() {
+        Account scott = new Account("Ben", "Scott");
+        scott.setId(4);
+        given(accountRepository.findViewsAfter(Integer.MIN_VALUE, PageRequest.of(0, 21)))
+                .willReturn(Collections.singletonList(view(scott)));
+
+        AccountPageDTO page = subject.listAccounts(null, 20);
+
+        assertThat(page.getAccounts().size(), is(1));
+        assertThat(page.getNext(), is(nullValue()));
     }
 
     @Test
@@ -91,10 +326,32 @@ public class AccountServiceTest {
         account.setFirstName("Ben");
         account.setLastName("Scott");
         account.setBalance(BigDecimal.ZERO);
-        given(accountRepository.findByLastName("Scott")).willReturn(Optional.of(account));
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
+        given(accountRepository.save(account)).willReturn(account);
+
+        AccountDTO result = subject.deposit("Scott", BigDecimal.valueOf(100));
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(100)));
+        verify(accountStatsProjection).recordDeposits(account, LocalDate.now(), 1, BigDecimal.valueOf(100));
+        verify(depositUsageTracker).add(any(), eq(BigDecimal.valueOf(100)), eq(DepositLimits.DEFAULT));
+
+        ArgumentCaptor<BalanceEvent> event = ArgumentCaptor.forClass(BalanceEvent.class);
+        verify(accountEventBus).publish(event.capture());
+        assertThat(event.getValue().getType(), is("deposit"));
+        assertThat(event.getValue().getBalance(), is(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void testDeposit_publishingFails_depositStillSucceeds() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(BigDecimal.ZERO);
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
         given(accountRepository.save(account)).willReturn(account);
+        willThrow(new IllegalStateException("subscriber failed")).given(accountEventBus).publish(any());
 
         AccountDTO result = subject.deposit("Scott", BigDecimal.valueOf(100));
+
         assertThat(result.getBalance(), is(BigDecimal.valueOf(100)));
     }
 
@@ -104,7 +361,8 @@ public class AccountServiceTest {
         account.setFirstName("Ben");
         account.setLastName("Scott");
         account.setBalance(BigDecimal.ZERO);
-        given(accountRepository.findByLastName("Scott")).willReturn(Optional.of(account));
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
         given(accountRepository.save(account)).willReturn(account);
 
         AccountDTO result = subject.deposit("Scott", BigDecimal.valueOf(100));
@@ -113,13 +371,40 @@ public class AccountServiceTest {
         assertThrows(DepositLimitException.class,() -> subject.deposit("Scott", BigDecimal.valueOf(5100)));
     }
 
+    @Test
+    public void testDepositLimit_countsDepositsMadeToday() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(BigDecimal.ZERO);
+        givenAccount(account);
+        givenDepositTotals(account, BigDecimal.valueOf(4950), BigDecimal.valueOf(4950));
+
+        assertThrows(DepositLimitException.class, () -> subject.deposit("Scott", BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void testDepositLimit_appliesLimitsOfAccountTier() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(BigDecimal.ZERO);
+        account.setTier("premium");
+        givenAccount(account);
+        given(accountRepository.save(account)).willReturn(account);
+        given(depositLimitPolicyService.forTier("premium")).willReturn(new DepositLimits(BigDecimal.valueOf(8000), null, BigDecimal.valueOf(20000)));
+        given(depositUsageTracker.read(account.getId(), LocalDate.now()))
+                .willReturn(usage(BigDecimal.valueOf(6000), BigDecimal.valueOf(12500)));
+
+        assertThat(subject.deposit("Scott", BigDecimal.valueOf(7500)).getBalance(), is(BigDecimal.valueOf(7500)));
+        assertThrows(DepositLimitException.class, () -> subject.deposit("Scott", BigDecimal.valueOf(8500)));
+        assertThrows(DepositLimitException.class, () -> subject.deposit("Scott", BigDecimal.valueOf(7501)));
+    }
+
     @Test
     public void testInvalidWithdraw() {
         Account account = new Account();
         account.setFirstName("Ben");
         account.setLastName("Scott");
         account.setBalance(BigDecimal.ZERO);
-        given(accountRepository.findByLastName("Scott")).willReturn(Optional.of(account));
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
         given(accountRepository.save(account)).willReturn(account);
 
         AccountDTO result = subject.deposit("Scott", BigDecimal.valueOf(100));
@@ -128,17 +413,112 @@ public class AccountServiceTest {
         assertThrows(InsufficientFundsException.class,() -> subject.withdraw("Scott", BigDecimal.valueOf(101)));
     }
 
+    @Test
+    public void testWithdraw_publishingFails_withdrawalStillSucceeds() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(BigDecimal.valueOf(100));
+        givenAccount(account);
+        given(accountRepository.save(account)).willReturn(account);
+        willThrow(new IllegalStateException("subscriber failed")).given(accountEventBus).publish(any());
+
+        AccountDTO result = subject.withdraw("Scott", BigDecimal.valueOf(50));
+
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(50)));
+    }
+
     @Test
     public void testValidWithdraw() {
         Account account = new Account();
         account.setFirstName("Ben");
         account.setLastName("Scott");
         account.setBalance(BigDecimal.valueOf(100));
-        given(accountRepository.findByLastName("Scott")).willReturn(Optional.of(account));
+        givenAccount(account);
         given(accountRepository.save(account)).willReturn(account);
 
         AccountDTO result = subject.withdraw("Scott", BigDecimal.valueOf(50));
         assertThat(result.getBalance(), is(BigDecimal.valueOf(50)));
+        ArgumentCaptor<BalanceEvent> event = ArgumentCaptor.forClass(BalanceEvent.class);
+        verify(accountEventBus).publish(event.capture());
+        assertThat(event.getValue().getType(), is("withdraw"));
+        assertThat(event.getValue().getAmount(), is(BigDecimal.valueOf(50)));
+        verify(accountStatsProjection).recordWithdrawal(account, LocalDate.now(), BigDecimal.valueOf(50));
+    }
+
+    @Test
+    public void testDeposit_splitBalance_creditsSlot() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalanceSlots(4);
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
+        given(balanceSlotService.getTotals(account)).willReturn(slotTotals(BigDecimal.valueOf(100), 3));
+
+        AccountDTO result = subject.deposit("Scott", BigDecimal.valueOf(50));
+
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(150)));
+        verify(balanceSlotService).credit(account, BigDecimal.valueOf(50));
+        verify(accountRepository, never()).save(account);
+    }
+
+    @Test
+    public void testWithdraw_splitBalance_debitsSlots() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalanceSlots(4);
+        givenAccount(account);
+        given(balanceSlotService.getTotals(account)).willReturn(slotTotals(BigDecimal.valueOf(50), 3));
+
+        AccountDTO result = subject.withdraw("Scott", BigDecimal.valueOf(50));
+
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(50)));
+        verify(balanceSlotService).debit(account, BigDecimal.valueOf(50));
+        verify(accountRepository, never()).save(account);
+    }
+
+    @Test
+    public void testWithdraw_splitBalance_insufficientFunds() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalanceSlots(4);
+        givenAccount(account);
+        willThrow(new InsufficientFundsException()).given(balanceSlotService).debit(account, BigDecimal.valueOf(50));
+
+        assertThrows(InsufficientFundsException.class, () -> subject.withdraw("Scott", BigDecimal.valueOf(50)));
+    }
+
+    @Test
+    public void testWithdraw_splitBalance_lostRace_retriedInNewTransaction() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalanceSlots(4);
+        givenAccount(account);
+        given(balanceSlotService.getTotals(account)).willReturn(slotTotals(BigDecimal.valueOf(50), 3));
+        willThrow(new CannotAcquireLockException("deadlock")).willDoNothing()
+                .given(balanceSlotService).debit(account, BigDecimal.valueOf(50));
+
+        AccountDTO result = subject.withdraw("Scott", BigDecimal.valueOf(50));
+
+        assertThat(result.getBalance(), is(BigDecimal.valueOf(50)));
+        verify(balanceSlotService, times(2)).debit(account, BigDecimal.valueOf(50));
+    }
+
+    @Test
+    public void testWithdraw_rejectedByRule_postsNothing() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(BigDecimal.valueOf(100));
+        given(accountRepository.findIdByLastName("Scott")).willReturn(Optional.of(account.getId()));
+        willThrow(new PostingRejectedException("withdrawals-per-minute"))
+                .given(postingRulesEngine).check(account.getId(), PostingKind.WITHDRAW, BigDecimal.valueOf(50));
+
+        assertThrows(PostingRejectedException.class, () -> subject.withdraw("Scott", BigDecimal.valueOf(50)));
+        assertThat(account.getBalance(), is(BigDecimal.valueOf(100)));
+        verify(journalEntryRepository, never()).save(any());
+        verify(accountEventBus, never()).publish(any());
+    }
+
+    @Test
+    public void testTransfer_rejectedByRule_movesNothing() {
+        willThrow(new PostingRejectedException("new-counterparty"))
+                .given(postingRulesEngine).checkTransfer(1, 3, BigDecimal.valueOf(2000));
+
+        assertThrows(PostingRejectedException.class, () -> subject.transfer(1, 3, BigDecimal.valueOf(2000)));
+        verify(accountRepository, never()).findById(anyInt());
     }
 
     @Test
@@ -146,11 +526,12 @@ public class AccountServiceTest {
         //Set up accounts
         Account account1 = new Account("first1", "last1");
         account1.setBalance(BigDecimal.valueOf(100));
-        given(accountRepository.findByLastName("last1")).willReturn(Optional.of(account1));
+        givenAccount(account1);
         given(accountRepository.save(account1)).willReturn(account1);
         Account account2 = new Account("first2", "last2");
         account2.setId(3);
-        given(accountRepository.findByLastName("last2")).willReturn(Optional.of(account2));
+        givenAccount(account2);
+        givenDepositTotals(account2, null, null);
         given(accountRepository.save(account2)).willReturn(account2);
 
         //Do transfer
@@ -159,29 +540,111 @@ public class AccountServiceTest {
         //Assert that balances have been updated correctly
         assertThat(account1.getBalance(), is(BigDecimal.valueOf(50)));
         assertThat(account2.getBalance(), is(BigDecimal.valueOf(50)));
+
+        //Assert that the transfer is one balanced entry
+        ArgumentCaptor<JournalEntry> entry = ArgumentCaptor.forClass(JournalEntry.class);
+        verify(journalEntryRepository).save(entry.capture());
+        assertThat(entry.getValue().getType(), is(TransactionType.TRANSFER));
+        assertThat(entry.getValue().getLegs().size(), is(2));
+        assertThat(entry.getValue().getLegs().get(0).getAccount(), is(account1));
+        assertThat(entry.getValue().getLegs().get(0).getAmount(), is(BigDecimal.valueOf(-50)));
+        assertThat(entry.getValue().isBalanced(), is(true));
+        verify(accountStatsProjection).recordWithdrawal(account1, LocalDate.now(), BigDecimal.valueOf(50));
+        verify(accountStatsProjection).recordDeposits(account2, LocalDate.now(), 1, BigDecimal.valueOf(50));
+        verify(postingHold).keep();
+    }
+
+    @Test
+    public void testTransfer_publishingFails_transferStillSucceeds() {
+        Account account1 = new Account("first1", "last1");
+        account1.setBalance(BigDecimal.valueOf(100));
+        givenAccount(account1);
+        given(accountRepository.save(account1)).willReturn(account1);
+        Account account2 = new Account("first2", "last2");
+        account2.setId(3);
+        givenAccount(account2);
+        givenDepositTotals(account2, null, null);
+        given(accountRepository.save(account2)).willReturn(account2);
+        willThrow(new IllegalStateException("subscriber failed")).given(accountEventBus).publish(any());
+
+        subject.transfer("last1", "last2", BigDecimal.valueOf(50));
+
+        assertThat(account1.getBalance(), is(BigDecimal.valueOf(50)));
+        assertThat(account2.getBalance(), is(BigDecimal.valueOf(50)));
+        verify(accountEventBus, times(2)).publish(any());
+    }
+
+    @Test
+    public void testTransfer_insufficientFunds_movesNothing() {
+        Account account1 = new Account("first1", "last1");
+        account1.setBalance(BigDecimal.valueOf(10));
+        givenAccount(account1);
+        Account account2 = new Account("first2", "last2");
+        account2.setId(3);
+        given(accountRepository.findIdByLastName("last2")).willReturn(Optional.of(3));
+
+        assertThrows(InsufficientFundsException.class, () -> subject.transfer("last1", "last2", BigDecimal.valueOf(50)));
+        assertThat(account2.getBalance(), is(BigDecimal.ZERO));
+        verify(journalEntryRepository, never()).save(any());
+        verify(postingHold).release();
+        verify(postingHold, never()).keep();
+    }
+
+    @Test
+    public void testTransfer_overDepositLimitOfAccountTransferredTo_movesNothing() {
+        Account account1 = new Account("first1", "last1");
+        account1.setBalance(BigDecimal.valueOf(6000));
+        givenAccount(account1);
+        given(accountRepository.save(account1)).willReturn(account1);
+        Account account2 = new Account("first2", "last2");
+        account2.setId(3);
+        givenAccount(account2);
+        givenDepositTotals(account2, BigDecimal.valueOf(4950), BigDecimal.valueOf(4950));
+
+        assertThrows(DepositLimitException.class, () -> subject.transfer("last1", "last2", BigDecimal.valueOf(100)));
+        assertThat(account2.getBalance(), is(BigDecimal.ZERO));
+        verify(depositUsageTracker, never()).add(any(), any(), any());
+        verify(journalEntryRepository, never()).save(any());
     }
 
     @Test
     public void testLatestTransactionsNotTen() {
         Account account = new Account("Tyler", "Yarow");
         given(accountRepository.save(account)).willReturn(account);
-        given(accountRepository.findByLastName("Yarow")).willReturn(Optional.of(account));
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
         subject.deposit("Yarow", BigDecimal.valueOf(100));
 
-        Transaction transaction = new Transaction(account, "deposit", BigDecimal.valueOf(100));
-        ArrayList<Transaction> transactionList = new ArrayList<>();
-        transactionList.add(transaction);
-        given(transactionRepository.findAllByAccount(account)).willReturn(transactionList);
+        given(transactionRepository.findLatestByAccountId(account.getId(), PageRequest.of(0, 10)))
+                .willReturn(Collections.singletonList(new TransactionDTO("deposit", BigDecimal.valueOf(100))));
 
         assertThat(subject.getLatestTenTransaction("Yarow").get(0).getType(), is("deposit"));
     }
 
+    @Test
+    public void testLatestTransactions_unknownAccount_throwsAccountNotFound() {
+        given(accountRepository.existsById(5)).willReturn(false);
+
+        assertThrows(AccountNotFoundException.class, () -> subject.getLatestTenTransaction(5));
+    }
+
+    @Test
+    public void testGetAccountDTOByLastName_splitBalance_sumsSlots() {
+        Account account = new Account("Ben", "Scott");
+        account.setBalanceSlots(4);
+        given(accountRepository.findViewByLastName("Scott")).willReturn(Optional.of(view(account)));
+        given(balanceSlotService.getTotals(account.getId())).willReturn(slotTotals(BigDecimal.valueOf(75), 2));
+
+        assertThat(subject.getAccountDTOByLastName("Scott").getBalance(), is(BigDecimal.valueOf(75)));
+    }
+
     @Test
     public void testLatestTransactionsOverTen() {
         //Setup account
         Account account = new Account("Tyler", "Yarow");
         given(accountRepository.save(account)).willReturn(account);
-        given(accountRepository.findByLastName("Yarow")).willReturn(Optional.of(account));
+        givenAccount(account);
+        givenDepositTotals(account, null, null);
 
         //Make 11 deposits
         subject.deposit("Yarow", BigDecimal.valueOf(1));
@@ -196,31 +659,12 @@ public class AccountServiceTest {
         subject.deposit("Yarow", BigDecimal.valueOf(10));
         subject.deposit("Yarow", BigDecimal.valueOf(11));
 
-        //Create list to hold correct transaction list to test against
-        ArrayList<Transaction> transactionList = new ArrayList<>();
-        Transaction transaction1 = new Transaction(account, "deposit", BigDecimal.valueOf(1));
-        transactionList.add(transaction1);
-        Transaction transaction2 = new Transaction(account, "deposit", BigDecimal.valueOf(2));
-        transactionList.add(transaction2);
-        Transaction transaction3 = new Transaction(account, "deposit", BigDecimal.valueOf(3));
-        transactionList.add(transaction3);
-        Transaction transaction4 = new Transaction(account, "deposit", BigDecimal.valueOf(4));
-        transactionList.add(transaction4);
-        Transaction transaction5 = new Transaction(account, "deposit", BigDecimal.valueOf(5));
-        transactionList.add(transaction5);
-        Transaction transaction6 = new Transaction(account, "deposit", BigDecimal.valueOf(6));
-        transactionList.add(transaction6);
-        Transaction transaction7 = new Transaction(account, "deposit", BigDecimal.valueOf(7));
-        transactionList.add(transaction7);
-        Transaction transaction8 = new Transaction(account, "deposit", BigDecimal.valueOf(8));
-        transactionList.add(transaction8);
-        Transaction transaction9 = new Transaction(account, "deposit", BigDecimal.valueOf(9));
-        transactionList.add(transaction9);
-        Transaction transaction10 = new Transaction(account, "deposit", BigDecimal.valueOf(10));
-        transactionList.add(transaction10);
-        Transaction transaction11 = new Transaction(account, "deposit", BigDecimal.valueOf(11));
-        transactionList.add(transaction11);
-        given(transactionRepository.findAllByAccount(account)).willReturn(transactionList);
+        //Repository returns the ten newest transactions, newest first
+        List<TransactionDTO> latestTen = new ArrayList<>();
+        for (int amount = 11; amount >= 2; amount--) {
+            latestTen.add(new TransactionDTO("deposit", BigDecimal.valueOf(amount)));
+        }
+        given(transactionRepository.findLatestByAccountId(account.getId(), PageRequest.of(0, 10))).willReturn(latestTen);
 
         //Assert that list contains correct transaction amount and type for each transaction in list
         for (int i = 0; i < 10; i++) {
@@ -230,4 +674,40 @@ public class AccountServiceTest {
         }
     }
 
+    private void givenAccount(Account account) {
+        given(accountRepository.findIdByLastName(account.getLastName())).willReturn(Optional.of(account.getId()));
+        given(accountRepository.findById(account.getId())).willReturn(Optional.of(account));
+    }
+
+    private void givenDepositTotals(Account account, BigDecimal today, BigDecimal thisWeek) {
+        given(depositLimitPolicyService.forTier(account.getTier())).willReturn(DepositLimits.DEFAULT);
+        given(depositUsageTracker.read(account.getId(), LocalDate.now())).willReturn(usage(today, thisWeek));
+    }
+
+    private static AccountView view(Account account) {
+        return new AccountView(account.getId(), account.getFirstName(), account.getLastName(), account.getBalance(),
+                account.getNotificationPreference(), account.getBalanceSlots(), account.getVersion(),
+                account.getTier());
+    }
+
+    private static DepositUsageTracker.Usage usage(BigDecimal today, BigDecimal thisWeek) {
+        LocalDate day = LocalDate.now();
+        return new DepositUsageTracker.Usage(0, day, day, today == null ? BigDecimal.ZERO : today,
+                thisWeek == null ? BigDecimal.ZERO : thisWeek, true);
+    }
+
+    private static BalanceSlotRepository.SlotTotals slotTotals(BigDecimal balance, long version) {
+        return new BalanceSlotRepository.SlotTotals() {
+            @Override
+            public BigDecimal getBalance() {
+                return balance;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+
 }
@@ -0,0 +1,38 @@
+package com.ippon.bankapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AccountVersionRegistryTest {
+
+    private final AccountVersionRegistry subject = new AccountVersionRegistry();
+
+    @Test
+    public void get_unknownAccount_returnsUnknownVersion() {
+        assertThat(subject.get(7), is(AccountVersionRegistry.UNKNOWN_VERSION));
+    }
+
+    @Test
+    public void update_keepsNewestVersion() {
+        subject.update(7, 0);
+        assertThat(subject.get(7), is(0L));
+
+        subject.update(7, 5);
+        subject.update(7, 3);
+        assertThat(subject.get(7), is(5L));
+    }
+
+    @Test
+    public void update_manyAccounts_growsTable() {
+        for (int id = -5000; id < 5000; id++) {
+            subject.update(id, id + 5000);
+        }
+
+        for (int id = -5000; id < 5000; id++) {
+            assertThat(subject.get(id), is((long) id + 5000));
+        }
+        assertThat(subject.get(5000), is(AccountVersionRegistry.UNKNOWN_VERSION));
+    }
+}
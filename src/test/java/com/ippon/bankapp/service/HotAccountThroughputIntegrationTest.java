@@ -0,0 +1,255 @@
+package com.ippon.bankapp.service;
+
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.DepositUsageRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.exception.DepositLimitException;
+import com.ippon.bankapp.service.rules.PostingRulesEngine;
+import com.ippon.bankapp.service.rules.PostingRulesProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Runs the same burst of concurrent withdrawals against one account holding its balance in a single row and against
+ * one whose balance is split across slots, and logs the throughput of both side by side. Checks that each account
+ * still matches its ledger afterwards. Also runs concurrent deposits and incoming transfers against a split account, to
+ * check they hold its daily deposit limit exactly without conflicting on the account row.
+ *
+ * The size of a run can be raised with {@code -Dbankapp.hot.operations}, {@code -Dbankapp.hot.threads} and
+ * {@code -Dbankapp.hot.slots}.
+ */
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        // Own database, so the create-drop of contexts started by other tests cannot reset sequences mid-run
+        "spring.datasource.url=jdbc:h2:mem:bankapp-hot"})
+public class HotAccountThroughputIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HotAccountThroughputIntegrationTest.class);
+
+    private static final int OPERATIONS = Integer.getInteger("bankapp.hot.operations", 2000);
+    private static final int THREADS = Integer.getInteger("bankapp.hot.threads", 8);
+    private static final int SLOTS = Integer.getInteger("bankapp.hot.slots", 8);
+    private static final BigDecimal OPENING_DEPOSIT = BigDecimal.valueOf(5000);
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private PostingRulesEngine postingRulesEngine;
+
+    @Autowired
+    private PostingRulesProperties postingRulesProperties;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private BalanceSlotRepository balanceSlotRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private DepositUsageRepository depositUsageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void before() {
+        // The velocity rules would reject most of a run; this suite is about the postings themselves
+        postingRulesEngine.reload(Collections.emptyList());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        postingRulesEngine.reload(postingRulesProperties.getDefinitions());
+
+        balanceSlotRepository.deleteAll();
+        accountMonthlyStatsRepository.deleteAll();
+        depositUsageRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void concurrentWithdrawals_splitAccountAgainstSingleRowAccount() throws InterruptedException {
+        int single = openAccount("Single");
+        int split = openAccount("Split");
+        accountService.splitBalance(split, SLOTS);
+
+        Run singleRun = withdrawConcurrently(single);
+        Run splitRun = withdrawConcurrently(split);
+
+        log.info("{} withdrawals on {} threads, single row: {} ops/s, {} applied, {} conflicts",
+                OPERATIONS, THREADS, singleRun.opsPerSecond(), singleRun.applied.get(), singleRun.conflicts.get());
+        log.info("{} withdrawals on {} threads, {} slots: {} ops/s, {} applied, {} conflicts",
+                OPERATIONS, THREADS, SLOTS, splitRun.opsPerSecond(), splitRun.applied.get(), splitRun.conflicts.get());
+
+        assertRun(single, singleRun);
+        assertRun(split, splitRun);
+    }
+
+    @Test
+    public void concurrentCredits_splitAccount_holdDepositLimitWithoutTouchingAccountRow() throws InterruptedException {
+        int split = accountService.createAccount(new AccountDTO().firstName("Hot").lastName("Credited")).getId();
+        accountService.splitBalance(split, SLOTS);
+        int[] sources = new int[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            sources[t] = openAccount("Source" + t);
+        }
+        long version = accountRepository.findById(split).get().getVersion();
+        // Twice as much as the standard daily limit of 5000 is credited, half by deposits and half by transfers
+        BigDecimal amount = BigDecimal.valueOf(10000L / OPERATIONS);
+        long accepted = 5000 / amount.longValue();
+
+        Run run = new Run();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        int perThread = OPERATIONS / THREADS;
+        for (int t = 0; t < THREADS; t++) {
+            int source = sources[t];
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        if (i % 2 == 0) {
+                            accountService.deposit(split, amount);
+                        } else {
+                            accountService.transfer(source, split, amount);
+                        }
+                        run.applied.incrementAndGet();
+                    } catch (DepositLimitException e) {
+                        run.rejected.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        run.conflicts.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        run.unexpected.add(e);
+                    }
+                }
+            });
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES), is(true));
+        run.elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        log.info("{} credits on {} threads, {} slots: {} ops/s, {} applied, {} over the limit, {} conflicts",
+                OPERATIONS, THREADS, SLOTS, run.opsPerSecond(), run.applied.get(), run.rejected.get(),
+                run.conflicts.get());
+        assertThat(run.unexpected, is(empty()));
+        assertThat(run.conflicts.get(), is(0L));
+        assertThat(run.applied.get(), is(accepted));
+        BigDecimal balance = accountService.getAccountDTO(split).getBalance();
+        assertThat(balance, comparesEqualTo(BigDecimal.valueOf(5000)));
+        assertThat(balance, comparesEqualTo(jdbcTemplate.queryForObject(
+                "select coalesce(sum(amount), 0) from transaction where account_id = ?", BigDecimal.class, split)));
+        assertThat(accountRepository.findById(split).get().getVersion(), is(version));
+    }
+
+    private int openAccount(String lastName) {
+        int id = accountService.createAccount(new AccountDTO().firstName("Hot").lastName(lastName)).getId();
+        accountService.deposit(id, OPENING_DEPOSIT);
+        return id;
+    }
+
+    private Run withdrawConcurrently(int id) throws InterruptedException {
+        Run run = new Run();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        int perThread = OPERATIONS / THREADS;
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        accountService.withdraw(id, BigDecimal.ONE);
+                        run.applied.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        run.conflicts.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        run.unexpected.add(e);
+                    }
+                }
+            });
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES), is(true));
+        run.elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return run;
+    }
+
+    private void assertRun(int id, Run run) {
+        assertThat(run.unexpected, is(empty()));
+        assertThat(run.applied.get(), greaterThan(0L));
+        BigDecimal balance = accountService.getAccountDTO(id).getBalance();
+        assertThat(balance, comparesEqualTo(OPENING_DEPOSIT.subtract(BigDecimal.valueOf(run.applied.get()))));
+        assertThat(balance, comparesEqualTo(jdbcTemplate.queryForObject(
+                "select coalesce(sum(amount), 0) from transaction where account_id = ?", BigDecimal.class, id)));
+    }
+
+    private static final class Run {
+        private final AtomicLong applied = new AtomicLong();
+        private final AtomicLong conflicts = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        private long elapsedMillis;
+
+        private long opsPerSecond() {
+            return applied.get() * 1000L / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.ippon.bankapp.service;
+
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.exception.BankAppException;
+import com.ippon.bankapp.service.limits.DepositLimits;
+import com.ippon.bankapp.service.rules.PostingRulesEngine;
+import com.ippon.bankapp.service.rules.PostingRulesProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Runs randomized deposits, withdrawals and transfers from many threads against the real context and database, then
+ * checks that no money was created or lost, that no balance went negative and that no account got over its daily
+ * deposit limit. Logs the throughput, so a run also gives a baseline to compare changes against.
+ *
+ * The size of a run can be raised with {@code -Dbankapp.stress.operations} and {@code -Dbankapp.stress.threads}.
+ */
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        // Own database, so the create-drop of contexts started by other tests cannot reset sequences mid-run
+        "spring.datasource.url=jdbc:h2:mem:bankapp-stress"})
+public class PostingStressIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingStressIntegrationTest.class);
+
+    private static final int OPERATIONS = Integer.getInteger("bankapp.stress.operations", 4000);
+    private static final int THREADS = Integer.getInteger("bankapp.stress.threads", 8);
+    private static final int ACCOUNTS = 12;
+    private static final long OPENING_DEPOSIT = 2000;
+    private static final int MAX_AMOUNT = 100;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private PostingRulesEngine postingRulesEngine;
+
+    @Autowired
+    private PostingRulesProperties postingRulesProperties;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private BalanceSlotRepository balanceSlotRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Integer> accountIds = new ArrayList<>();
+
+    private final AtomicLong deposited = new AtomicLong();
+    private final AtomicLong withdrawn = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    public void before() {
+        // The velocity rules would reject most of a run; this suite is about the postings themselves
+        postingRulesEngine.reload(Collections.emptyList());
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            int id = accountService.createAccount(new AccountDTO().firstName("Stress").lastName("Stress" + i)).getId();
+            accountService.deposit(id, BigDecimal.valueOf(OPENING_DEPOSIT));
+            deposited.addAndGet(OPENING_DEPOSIT);
+            accountIds.add(id);
+        }
+        accountService.splitBalance(accountIds.get(0), 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        postingRulesEngine.reload(postingRulesProperties.getDefinitions());
+
+        balanceSlotRepository.deleteAll();
+        accountMonthlyStatsRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void concurrentPostings_keepBalanceInvariants() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        int perThread = OPERATIONS / THREADS;
+        for (int t = 0; t < THREADS; t++) {
+            long seed = 31L * t + 7;
+            executor.execute(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    post(random);
+                }
+            });
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES), is(true));
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        log.info("{} postings on {} threads in {} ms: {} ops/s, {} accepted, {} rejected, {} conflicts",
+                perThread * THREADS, THREADS, elapsedMillis, perThread * THREADS * 1000L / elapsedMillis,
+                accepted.get(), rejected.get(), conflicts.get());
+
+        assertThat(unexpected, is(empty()));
+        // Postings that lose a race are retried by the service, so none should reach the caller
+        assertThat(conflicts.get(), is(0L));
+        assertThat(accepted.get(), greaterThan(0L));
+        assertInvariants();
+    }
+
+    private void post(Random random) {
+        int from = accountIds.get(random.nextInt(ACCOUNTS));
+        long amount = 1 + random.nextInt(MAX_AMOUNT);
+        try {
+            switch (random.nextInt(3)) {
+                case 0:
+                    accountService.deposit(from, BigDecimal.valueOf(amount));
+                    deposited.addAndGet(amount);
+                    break;
+                case 1:
+                    accountService.withdraw(from, BigDecimal.valueOf(amount));
+                    withdrawn.addAndGet(amount);
+                    break;
+                default:
+                    int to = accountIds.get(random.nextInt(ACCOUNTS));
+                    if (to == from) {
+                        return;
+                    }
+                    accountService.transfer(from, to, BigDecimal.valueOf(amount));
+                    break;
+            }
+            accepted.incrementAndGet();
+        } catch (BankAppException e) {
+            rejected.incrementAndGet();
+        } catch (ConcurrencyFailureException e) {
+            conflicts.incrementAndGet();
+        } catch (RuntimeException e) {
+            unexpected.add(e);
+        }
+    }
+
+    private void assertInvariants() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int id : accountIds) {
+            BigDecimal balance = accountService.getAccountDTO(id).getBalance();
+            assertThat("balance of " + id, balance, greaterThanOrEqualTo(BigDecimal.ZERO));
+            assertThat("ledger of " + id, balance, comparesEqualTo(sumLegs(id)));
+            assertThat("credited today to " + id, sumCreditsToday(id),
+                    lessThanOrEqualTo(DepositLimits.DEFAULT.getDaily()));
+            total = total.add(balance);
+        }
+
+        assertThat(total, comparesEqualTo(BigDecimal.valueOf(deposited.get() - withdrawn.get())));
+        assertThat(jdbcTemplate.queryForObject("select coalesce(sum(amount), 0) from transaction", BigDecimal.class),
+                comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    private BigDecimal sumLegs(int accountId) {
+        return jdbcTemplate.queryForObject(
+                "select coalesce(sum(amount), 0) from transaction where account_id = ?", BigDecimal.class, accountId);
+    }
+
+    /**
+     * Sums deposits and the credit legs of incoming transfers, which both count against the deposit limits
+     */
+    private BigDecimal sumCreditsToday(int accountId) {
+        return jdbcTemplate.queryForObject(
+                "select coalesce(sum(amount), 0) from transaction "
+                        + "where account_id = ? and amount > 0 and date = current_date", BigDecimal.class, accountId);
+    }
+}
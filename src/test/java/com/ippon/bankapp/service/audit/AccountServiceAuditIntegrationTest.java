@@ -0,0 +1,112 @@
+package com.ippon.bankapp.service.audit;
+
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.exception.AccountNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        "bankapp.audit.directory=target/audit-test"
+})
+public class AccountServiceAuditIntegrationTest {
+
+    private static final Path DIRECTORY = Paths.get("target/audit-test");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @AfterEach
+    public void tearDown() {
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void accountServiceCalls_areWrittenToTheAuditTrail() throws InterruptedException {
+        String lastName = "Audit" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(new AccountDTO().firstName("Ben").lastName(lastName));
+        assertThrows(AccountNotFoundException.class, () -> accountService.getAccountDTOByLastName(lastName + "x"));
+
+        List<String> lines = awaitLines(lastName, 2);
+
+        assertThat(lines, hasItem(matchesPattern("\\d+\\|[^|]+\\|createAccount\\|.*" + lastName + ".*\\|ok\\|\\d+\\|[0-9a-f]{8}")));
+        assertThat(lines, hasItem(matchesPattern(
+                "\\d+\\|[^|]+\\|getAccountDTOByLastName\\|" + lastName + "x\\|\\|AccountNotFoundException\\|\\d+\\|[0-9a-f]{8}")));
+    }
+
+    @Test
+    public void unauditedCalls_areKeptOutOfTheAuditTrail() throws InterruptedException {
+        String lastName = "Audit" + UUID.randomUUID().toString().substring(0, 8);
+        assertThrows(AccountNotFoundException.class, () -> auditLog.unaudited(
+                () -> accountService.getAccountDTOByLastName(lastName + "x")));
+        assertThrows(AccountNotFoundException.class, () -> accountService.getAccountDTOByLastName(lastName + "y"));
+
+        // Records are written in the order they were published, so once the later call is there the first would be
+        assertThat(awaitLines(lastName + "y", 1), hasSize(1));
+        assertThat(linesContaining(lastName + "x"), is(empty()));
+    }
+
+    private static List<String> awaitLines(String text, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        List<String> lines = linesContaining(text);
+        while (lines.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            lines = linesContaining(text);
+        }
+        return lines;
+    }
+
+    private static List<String> linesContaining(String text) {
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            return files.flatMap(AccountServiceAuditIntegrationTest::lines)
+                    .filter(line -> line.contains(text))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static Stream<String> lines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8).stream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ippon.bankapp.service.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+class AuditFileWriterTest {
+
+    private static final Instant START = Instant.parse("2026-10-19T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void onRecord_writesSequencedLinesWithChainedChecksums() throws IOException {
+        AuditFileWriter subject = new AuditFileWriter(directory, 1 << 20, START);
+        subject.onRecord(record(0, "deposit", "Scott", BigDecimal.TEN, null));
+        subject.onRecord(record(1, "withdraw", "Sc|ott", new BigDecimal("1.50"), IllegalStateException.class));
+        subject.close();
+
+        List<String> lines = lines(files().get(0));
+        assertThat(lines, hasSize(2));
+        assertThat(lines.get(0), startsWith("0|2026-10-19T10:00:00Z|deposit|Scott|10|ok|25|"));
+        assertThat(lines.get(1), startsWith("1|2026-10-19T10:00:00Z|withdraw|Sc ott|1.50|IllegalStateException|25|"));
+        assertThat(verifyChain(lines), is(true));
+
+        lines.set(0, lines.get(0).replace("|10|", "|90|"));
+        assertThat(verifyChain(lines), is(false));
+    }
+
+    @Test
+    public void onRecord_fullFile_rotatesToAFileNamedAfterItsFirstSequence() throws IOException {
+        AuditFileWriter subject = new AuditFileWriter(directory, 100, START);
+        for (int i = 0; i < 4; i++) {
+            subject.onRecord(record(i, "deposit", "Scott", BigDecimal.TEN, null));
+            subject.flush();
+        }
+        subject.close();
+
+        List<String> names = files().stream().map(file -> file.getFileName().toString()).collect(Collectors.toList());
+        assertThat(names, contains("audit-20261019T100000-000000000000.log", "audit-20261019T100000-000000000002.log"));
+    }
+
+    @Test
+    public void flush_failure_keepsLinesForTheNextFlush() throws IOException {
+        Path blocked = directory.resolve("audit");
+        Files.createFile(blocked);
+        AuditFileWriter subject = new AuditFileWriter(blocked, 1 << 20, START);
+        subject.onRecord(record(0, "deposit", "Scott", BigDecimal.TEN, null));
+
+        assertThat(subject.flush(), is(false));
+        assertThat(subject.hasPending(), is(true));
+        assertThat(subject.getFailures(), is(1L));
+
+        Files.delete(blocked);
+        subject.onRecord(record(1, "withdraw", "Scott", BigDecimal.ONE, null));
+        assertThat(subject.flush(), is(true));
+        subject.close();
+
+        try (Stream<Path> files = Files.list(blocked)) {
+            List<String> lines = lines(files.findFirst().get());
+            assertThat(lines, hasSize(2));
+            assertThat(lines.get(0), startsWith("0|"));
+            assertThat(lines.get(1), startsWith("1|"));
+            assertThat(verifyChain(lines), is(true));
+        }
+    }
+
+    private static AuditRecord record(long sequence, String operation, Object subject, Object detail,
+                                      Class<?> outcome) {
+        AuditRecord record = new AuditRecord();
+        record.sequence = sequence;
+        record.timestamp = START.toEpochMilli();
+        record.operation = operation;
+        record.subject.set(subject);
+        record.detail.set(detail);
+        record.outcome = outcome;
+        record.duration = 25;
+        return record;
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    private static boolean verifyChain(List<String> lines) {
+        long checksum = 0;
+        CRC32 crc = new CRC32();
+        for (String line : lines) {
+            int separator = line.lastIndexOf('|');
+            byte[] content = line.substring(0, separator).getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8),
+                    (byte) checksum});
+            crc.update(content);
+            checksum = crc.getValue();
+            if (!String.format("%08x", checksum).equals(line.substring(separator + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
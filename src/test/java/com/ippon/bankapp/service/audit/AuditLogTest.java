@@ -0,0 +1,51 @@
+package com.ippon.bankapp.service.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shutdown_writesRecordsPublishedBefore_andDropsLaterOnes() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AuditLog subject = new AuditLog(meterRegistry, true, directory.toString(), 16, 4, 1 << 20, 100);
+        for (int i = 0; i < 10; i++) {
+            subject.record("deposit", "Scott", i, null, 10);
+        }
+
+        subject.shutdown();
+        subject.record("deposit", "Scott", 10, null, 10);
+
+        assertThat(lines(), hasSize(10));
+        assertThat(meterRegistry.get("bankapp.audit.dropped").functionCounter().count(), is(1.0));
+    }
+
+    private List<String> lines() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.flatMap(file -> {
+                try {
+                    return Files.readAllLines(file, StandardCharsets.UTF_8).stream();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        }
+    }
+}
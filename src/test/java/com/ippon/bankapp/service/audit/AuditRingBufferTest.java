@@ -0,0 +1,198 @@
+package com.ippon.bankapp.service.audit;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuditRingBufferTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditRingBufferTest.class);
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    public void drain_handsRecordsOverInSequenceOrder_acrossTheEndOfTheRing() {
+        AuditRingBuffer subject = new AuditRingBuffer(4, MAX_WAIT_NANOS);
+        List<String> drained = new ArrayList<>();
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 3; i++) {
+                subject.publish(1000, "deposit", "Scott", round * 3 + i, null, 10);
+            }
+            subject.drain(record -> drained.add(record.getSequence() + ":" + record.getDetail()), 10);
+        }
+
+        assertThat(drained, contains("0:0", "1:1", "2:2", "3:3", "4:4", "5:5", "6:6", "7:7", "8:8"));
+        assertThat(subject.getPending(), is(0L));
+    }
+
+    @Test
+    public void publish_copiesArguments_laterChangesDoNotShow() {
+        AuditRingBuffer subject = new AuditRingBuffer(4, MAX_WAIT_NANOS);
+        StringBuilder name = new StringBuilder("Sc|ott");
+        subject.publish(1000, "getAccountDTOByLastName", name, new BigDecimal("10.50"), null, 10);
+        name.append("Changed");
+        List<String> drained = new ArrayList<>();
+
+        subject.drain(record -> drained.add(record.getSubject() + ":" + record.getDetail()), 10);
+
+        assertThat(drained, contains("Sc ott:10.50"));
+    }
+
+    @Test
+    public void publish_longText_isCut() {
+        AuditRingBuffer subject = new AuditRingBuffer(4, MAX_WAIT_NANOS);
+        char[] name = new char[100];
+        Arrays.fill(name, 'a');
+        subject.publish(1000, "getAccountDTOByLastName", new String(name), null, null, 10);
+        List<String> drained = new ArrayList<>();
+
+        subject.drain(record -> drained.add(record.getSubject() + ":" + record.getDetail()), 10);
+
+        assertThat(drained.get(0).length(), is(AuditRecord.Value.MAX_CHARS + 1));
+    }
+
+    @Test
+    public void drain_stopsAtMaxBatch() {
+        AuditRingBuffer subject = new AuditRingBuffer(8, MAX_WAIT_NANOS);
+        for (int i = 0; i < 5; i++) {
+            subject.publish(1000, "withdraw", "Scott", i, IllegalStateException.class, 10);
+        }
+
+        assertThat(subject.drain(record -> { }, 3), is(3));
+        assertThat(subject.getPending(), is(2L));
+        assertThat(subject.drain(record -> { }, 3), is(2));
+    }
+
+    @Test
+    public void publish_fullRing_waitsForTheConsumer() throws Exception {
+        AuditRingBuffer subject = new AuditRingBuffer(2, MAX_WAIT_NANOS);
+        subject.publish(1000, "deposit", "Scott", 1, null, 10);
+        subject.publish(1000, "deposit", "Scott", 2, null, 10);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> third = executor.submit(() -> subject.publish(1000, "deposit", "Scott", 3, null, 10));
+            assertThrows(Exception.class, () -> third.get(50, TimeUnit.MILLISECONDS));
+
+            subject.drain(record -> { }, 1);
+
+            assertThat(third.get(5, TimeUnit.SECONDS), is(2L));
+            assertThat(subject.getFullWaits(), is(1L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void publish_fullRingPastMaxWait_dropsTheRecord() {
+        AuditRingBuffer subject = new AuditRingBuffer(2, TimeUnit.MILLISECONDS.toNanos(20));
+        subject.publish(1000, "deposit", "Scott", 1, null, 10);
+        subject.publish(1000, "deposit", "Scott", 2, null, 10);
+
+        assertThat(subject.publish(1000, "deposit", "Scott", 3, null, 10), is(-1L));
+        assertThat(subject.getDropped(), is(1L));
+
+        // The dropped record left no gap: the next one takes the sequence after the drained ones
+        subject.drain(record -> { }, 10);
+        assertThat(subject.publish(1000, "deposit", "Scott", 4, null, 10), is(2L));
+        List<String> drained = new ArrayList<>();
+        subject.drain(record -> drained.add(record.getSequence() + ":" + record.getDetail()), 10);
+        assertThat(drained, contains("2:4"));
+    }
+
+    @Test
+    public void close_dropsLaterRecords_earlierOnesStillDrained() {
+        AuditRingBuffer subject = new AuditRingBuffer(4, MAX_WAIT_NANOS);
+        subject.publish(1000, "deposit", "Scott", 1, null, 10);
+
+        subject.close();
+
+        assertThat(subject.publish(1000, "deposit", "Scott", 2, null, 10), is(-1L));
+        assertThat(subject.getDropped(), is(1L));
+        assertThat(subject.isDrained(), is(false));
+        assertThat(subject.drain(record -> { }, 10), is(1));
+        assertThat(subject.isDrained(), is(true));
+        assertThat(subject.getPending(), is(0L));
+    }
+
+    @Test
+    public void publish_manyProducers_everyRecordDrainedOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        AuditRingBuffer subject = new AuditRingBuffer(1024, MAX_WAIT_NANOS);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> published = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                published.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        subject.publish(i, "deposit", producer, i, null, 10);
+                    }
+                    return null;
+                }));
+            }
+
+            long[] nextPerProducer = new long[producers];
+            long[] expectedSequence = {0};
+            boolean[] inOrder = {true};
+            start.countDown();
+            long total = (long) producers * perProducer;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (expectedSequence[0] < total && System.nanoTime() < deadline) {
+                subject.drain(record -> {
+                    int producer = Integer.parseInt(record.getSubject().toString());
+                    inOrder[0] &= record.getSequence() == expectedSequence[0]++
+                            && Long.parseLong(record.getDetail().toString()) == nextPerProducer[producer]++;
+                }, 256);
+            }
+            for (Future<?> future : published) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            assertThat(expectedSequence[0], is(total));
+            assertThat(inOrder[0], is(true));
+            assertThat(subject.getPending(), is(0L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Not a benchmark harness, but gives the order of magnitude of the cost of recording a call
+     */
+    @Test
+    public void publish_overheadPerCall() {
+        AuditRingBuffer subject = new AuditRingBuffer(1 << 16, MAX_WAIT_NANOS);
+        int calls = 1 << 20;
+        long elapsed = 0;
+        for (int i = 0; i < calls; i += 1 << 15) {
+            long started = System.nanoTime();
+            for (int j = 0; j < 1 << 15; j++) {
+                subject.publish(j, "deposit", "Scott", null, null, 10);
+            }
+            elapsed += System.nanoTime() - started;
+            subject.drain(record -> { }, 1 << 15);
+        }
+
+        log.info("Published {} audit records at {} ns each", calls, elapsed / calls);
+        assertThat(subject.getPending(), is(0L));
+    }
+}
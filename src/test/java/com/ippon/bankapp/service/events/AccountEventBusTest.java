@@ -0,0 +1,168 @@
+package com.ippon.bankapp.service.events;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AccountEventBusTest {
+
+    private final AccountEventBus subject = new AccountEventBus(4, 2, 200);
+
+    @AfterEach
+    public void tearDown() {
+        subject.shutdown();
+    }
+
+    @Test
+    public void publish_fansOutToSubscribersOfTheAccount() throws Exception {
+        RecordingSink first = new RecordingSink(2);
+        RecordingSink second = new RecordingSink(2);
+        RecordingSink otherAccount = new RecordingSink(1);
+        subject.subscribe(7, first);
+        subject.subscribe(7, second);
+        subject.subscribe(8, otherAccount);
+
+        subject.publish(event(7, 1));
+        subject.publish(event(7, 2));
+
+        assertThat(first.delivered.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(second.delivered.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(first.versions(), is("1,2"));
+        assertThat(second.versions(), is("1,2"));
+        assertThat(otherAccount.events.isEmpty(), is(true));
+    }
+
+    @Test
+    public void cancel_stopsDelivery() throws Exception {
+        RecordingSink sink = new RecordingSink(1);
+        AccountEventBus.Subscription subscription = subject.subscribe(7, sink);
+
+        subscription.cancel();
+        subscription.cancel();
+        subject.publish(event(7, 1));
+
+        assertThat(sink.delivered.await(200, TimeUnit.MILLISECONDS), is(false));
+        assertThat(subject.getSubscriberCount(), is(0));
+    }
+
+    @Test
+    public void publish_slowSubscriber_isEvictedWithoutBlockingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(1) {
+            @Override
+            public void send(BalanceEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(event);
+            }
+        };
+        RecordingSink fast = new RecordingSink(10);
+        AccountEventBus.Subscription slowSubscription = subject.subscribe(7, slow);
+        subject.subscribe(7, fast);
+
+        for (int version = 1; version <= 10; version++) {
+            subject.publish(event(7, version));
+            awaitDelivered(fast, version);
+        }
+
+        assertThat(fast.delivered.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(slowSubscription.isCancelled(), is(true));
+        assertThat(subject.getEvictionCount(), is(1L));
+        assertThat(subject.getSubscriberCount(), is(1));
+        assertThat(slow.closed.getCount(), is(1L));
+
+        release.countDown();
+
+        assertThat(slow.closed.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void publish_stuckSubscribers_areEvictedWithoutStarvingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<RecordingSink> stuck = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            RecordingSink sink = new RecordingSink(1) {
+                @Override
+                public void send(BalanceEvent event) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            stuck.add(sink);
+            subject.subscribe(7, sink);
+        }
+        RecordingSink healthy = new RecordingSink(3);
+        subject.subscribe(7, healthy);
+
+        for (int version = 1; version <= 3; version++) {
+            subject.publish(event(7, version));
+        }
+
+        assertThat(healthy.delivered.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(healthy.versions(), is("1,2,3"));
+        assertThat(subject.getEvictionCount(), is(4L));
+        assertThat(subject.getSubscriberCount(), is(1));
+        release.countDown();
+        for (RecordingSink sink : stuck) {
+            assertThat(sink.closed.await(5, TimeUnit.SECONDS), is(true));
+        }
+    }
+
+    private static void awaitDelivered(RecordingSink sink, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sink.events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static BalanceEvent event(int accountId, long version) {
+        return new BalanceEvent(accountId, "Scott", "deposit", BigDecimal.ONE, BigDecimal.valueOf(version), version);
+    }
+
+    private static class RecordingSink implements AccountEventBus.EventSink {
+
+        private final List<BalanceEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch delivered;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private RecordingSink(int expected) {
+            this.delivered = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void send(BalanceEvent event) {
+            events.add(event);
+            delivered.countDown();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        private String versions() {
+            StringBuilder versions = new StringBuilder();
+            for (BalanceEvent event : events) {
+                if (versions.length() > 0) {
+                    versions.append(',');
+                }
+                versions.append(event.getVersion());
+            }
+            return versions.toString();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.ippon.bankapp.service.history;
+
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceCheckpointRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(properties = "bankapp.notification.relay.poll-interval-ms=3600000")
+public class BalanceHistoryIntegrationTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private BalanceHistory subject;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private BalanceCheckpointRepository balanceCheckpointRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int accountId;
+
+    @BeforeEach
+    public void before() {
+        accountId = accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Scott")).getId();
+        postOn(TODAY.minusDays(400), BigDecimal.valueOf(1000));
+        postOn(TODAY.minusDays(30), BigDecimal.valueOf(500));
+        withdrawOn(TODAY.minusDays(2), BigDecimal.valueOf(200));
+        accountService.deposit("Scott", BigDecimal.valueOf(50));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        balanceCheckpointRepository.deleteAll();
+        accountMonthlyStatsRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void balanceAsOf_withoutCheckpoints_sumsPostings() {
+        assertBalances();
+    }
+
+    @Test
+    public void closeDays_checkpointsEveryPastDayWithPostings() {
+        assertThat(subject.closeDays(), is(3));
+        assertThat(balanceCheckpointRepository.count(), is(3L));
+        assertThat(subject.closeDays(), is(0));
+
+        assertBalances();
+    }
+
+    @Test
+    public void closeDays_catchesUpFromLastClosedDay() {
+        subject.closeDays();
+        postOn(TODAY.minusDays(1), BigDecimal.valueOf(25));
+
+        assertThat(subject.closeDays(), is(1));
+
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(1)), comparesEqualTo(BigDecimal.valueOf(1325)));
+        assertThat(subject.getBalanceAsOf(accountId, TODAY), comparesEqualTo(BigDecimal.valueOf(1375)));
+    }
+
+    @Test
+    public void closeDays_leavesYesterdayOpenUntilSettled() {
+        postOn(TODAY.minusDays(1), BigDecimal.valueOf(25));
+
+        assertThat(subject.closeDays(TODAY.atStartOfDay().plusSeconds(30)), is(3));
+        assertThat(subject.closeDays(TODAY.atStartOfDay().plusMinutes(5)), is(1));
+
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(1)), comparesEqualTo(BigDecimal.valueOf(1325)));
+    }
+
+    @Test
+    public void closeDays_concurrentCloses_eachDayClosedOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 5; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                Callable<Integer> close = () -> {
+                    start.await();
+                    return subject.closeDays();
+                };
+                Future<Integer> first = executor.submit(close);
+                Future<Integer> second = executor.submit(close);
+                start.countDown();
+
+                assertThat(first.get(10, TimeUnit.SECONDS) + second.get(10, TimeUnit.SECONDS), is(3));
+                assertThat(balanceCheckpointRepository.count(), is(3L));
+                assertBalances();
+                balanceCheckpointRepository.deleteAll();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rebuild_recomputesSameCheckpoints() {
+        subject.closeDays();
+        balanceCheckpointRepository.deleteAll();
+
+        assertThat(subject.rebuild(), is(1));
+
+        assertThat(balanceCheckpointRepository.count(), is(3L));
+        assertBalances();
+    }
+
+    private void assertBalances() {
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(500)), comparesEqualTo(BigDecimal.ZERO));
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(400)), comparesEqualTo(BigDecimal.valueOf(1000)));
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(31)), comparesEqualTo(BigDecimal.valueOf(1000)));
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(3)), comparesEqualTo(BigDecimal.valueOf(1500)));
+        assertThat(subject.getBalanceAsOf(accountId, TODAY.minusDays(1)), comparesEqualTo(BigDecimal.valueOf(1300)));
+        assertThat(accountService.getBalanceAsOf("Scott", TODAY).getBalance(),
+                comparesEqualTo(BigDecimal.valueOf(1350)));
+    }
+
+    private void postOn(LocalDate day, BigDecimal amount) {
+        accountService.deposit("Scott", amount);
+        backdateLatest(day);
+    }
+
+    private void withdrawOn(LocalDate day, BigDecimal amount) {
+        accountService.withdraw("Scott", amount);
+        backdateLatest(day);
+    }
+
+    private void backdateLatest(LocalDate day) {
+        jdbcTemplate.update("update transaction set date = ? where journal_entry_id = (select max(id) from journal_entry)",
+                Date.valueOf(day));
+    }
+}
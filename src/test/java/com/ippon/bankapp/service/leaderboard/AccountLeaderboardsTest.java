@@ -0,0 +1,169 @@
+package com.ippon.bankapp.service.leaderboard;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.dto.LeaderboardEntryDTO;
+import com.ippon.bankapp.service.exception.UnknownLeaderboardException;
+import com.ippon.bankapp.service.posting.BalanceSlotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class AccountLeaderboardsTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BalanceSlotService balanceSlotService;
+
+    private AccountLeaderboards subject;
+
+    @BeforeEach
+    public void before() {
+        subject = new AccountLeaderboards(accountRepository, transactionRepository, balanceSlotService, 3);
+    }
+
+    @Test
+    public void rebuild_ranksAccountsByBalanceAndTodaysPostings() {
+        Account hot = account(3, "Geoghan", BigDecimal.ZERO);
+        hot.setBalanceSlots(4);
+        given(accountRepository.findAll()).willReturn(Arrays.asList(
+                account(1, "Scott", BigDecimal.valueOf(50)),
+                account(2, "Smith", BigDecimal.valueOf(300)),
+                hot));
+        given(balanceSlotService.getTotals(hot)).willReturn(slotTotals(BigDecimal.valueOf(900)));
+        given(transactionRepository.countByAccountOn(LocalDate.now())).willReturn(Arrays.asList(
+                accountCount(1, 7),
+                accountCount(2, 2)));
+
+        subject.rebuild();
+
+        List<LeaderboardEntryDTO> balances = subject.top(LeaderboardType.BALANCE, 10);
+        assertThat(lastNames(balances), contains("Geoghan", "Smith", "Scott"));
+        assertThat(balances.get(0).getRank(), is(1));
+        assertThat(balances.get(0).getValue(), comparesEqualTo(BigDecimal.valueOf(900)));
+
+        List<LeaderboardEntryDTO> activity = subject.top(LeaderboardType.ACTIVITY, 10);
+        assertThat(lastNames(activity), contains("Scott", "Smith"));
+        assertThat(activity.get(0).getValue(), comparesEqualTo(BigDecimal.valueOf(7)));
+    }
+
+    @Test
+    public void rebuild_keepsServingCurrentBoard_andKeepsPostingsRecordedMeanwhile() {
+        subject.add(account(1, "Scott", BigDecimal.valueOf(50)));
+        given(accountRepository.findAll()).willAnswer(invocation -> {
+            assertThat(lastNames(subject.top(LeaderboardType.BALANCE, 10)), contains("Scott"));
+            subject.recordPostings(2, "Smith", BigDecimal.valueOf(300), 1, 1);
+            return Collections.singletonList(account(1, "Scott", BigDecimal.valueOf(50)));
+        });
+        given(transactionRepository.countByAccountOn(LocalDate.now())).willReturn(Collections.emptyList());
+
+        subject.rebuild();
+
+        assertThat(lastNames(subject.top(LeaderboardType.BALANCE, 10)), contains("Smith", "Scott"));
+        assertThat(lastNames(subject.top(LeaderboardType.ACTIVITY, 10)), contains("Smith"));
+    }
+
+    @Test
+    public void recordPostings_movesAccounts_andIgnoresOlderBalances() {
+        subject.add(account(1, "Scott", BigDecimal.ZERO));
+        subject.add(account(2, "Smith", BigDecimal.ZERO));
+
+        subject.recordPostings(1, "Scott", BigDecimal.valueOf(100), 1, 1);
+        subject.recordPostings(2, "Smith", BigDecimal.valueOf(250), 1, 2);
+        subject.recordPostings(1, "Scott", BigDecimal.valueOf(400), 3, 1);
+        subject.recordPostings(1, "Scott", BigDecimal.valueOf(150), 2, 1);
+
+        List<LeaderboardEntryDTO> balances = subject.top(LeaderboardType.BALANCE, 10);
+        assertThat(lastNames(balances), contains("Scott", "Smith"));
+        assertThat(balances.get(0).getValue(), comparesEqualTo(BigDecimal.valueOf(400)));
+
+        List<LeaderboardEntryDTO> activity = subject.top(LeaderboardType.ACTIVITY, 10);
+        assertThat(lastNames(activity), contains("Scott", "Smith"));
+        assertThat(activity.get(0).getValue(), comparesEqualTo(BigDecimal.valueOf(3)));
+        assertThat(activity.get(1).getValue(), comparesEqualTo(BigDecimal.valueOf(2)));
+    }
+
+    @Test
+    public void top_isCappedAtMaxSize() {
+        for (int id = 1; id <= 5; id++) {
+            subject.recordPostings(id, "Name" + id, BigDecimal.valueOf(id * 10), 1, 1);
+        }
+
+        assertThat(lastNames(subject.top(LeaderboardType.BALANCE, 10)), contains("Name5", "Name4", "Name3"));
+        assertThat(lastNames(subject.top(LeaderboardType.BALANCE, 1)), contains("Name5"));
+        assertThat(subject.top(LeaderboardType.BALANCE, 0), is(empty()));
+    }
+
+    @Test
+    public void fromName_unknownLeaderboard() {
+        assertThat(LeaderboardType.fromName("Activity"), is(LeaderboardType.ACTIVITY));
+        assertThrows(UnknownLeaderboardException.class, () -> LeaderboardType.fromName("age"));
+    }
+
+    private static Account account(int id, String lastName, BigDecimal balance) {
+        Account account = new Account("Ben", lastName);
+        account.setId(id);
+        account.setBalance(balance);
+        return account;
+    }
+
+    private static List<String> lastNames(List<LeaderboardEntryDTO> entries) {
+        String[] lastNames = new String[entries.size()];
+        for (int i = 0; i < lastNames.length; i++) {
+            lastNames[i] = entries.get(i).getLastName();
+        }
+        return Arrays.asList(lastNames);
+    }
+
+    private static TransactionRepository.AccountCount accountCount(int accountId, long count) {
+        return new TransactionRepository.AccountCount() {
+            @Override
+            public int getAccountId() {
+                return accountId;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private static BalanceSlotRepository.SlotTotals slotTotals(BigDecimal balance) {
+        return new BalanceSlotRepository.SlotTotals() {
+            @Override
+            public BigDecimal getBalance() {
+                return balance;
+            }
+
+            @Override
+            public long getVersion() {
+                return 4;
+            }
+        };
+    }
+}
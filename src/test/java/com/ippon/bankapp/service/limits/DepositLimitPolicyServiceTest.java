@@ -0,0 +1,92 @@
+package com.ippon.bankapp.service.limits;
+
+import com.ippon.bankapp.domain.DepositLimitPolicy;
+import com.ippon.bankapp.repository.DepositLimitPolicyRepository;
+import com.ippon.bankapp.service.dto.DepositLimitPolicyDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class DepositLimitPolicyServiceTest {
+
+    @Mock
+    private DepositLimitPolicyRepository depositLimitPolicyRepository;
+
+    @InjectMocks
+    private DepositLimitPolicyService subject;
+
+    @Test
+    public void forTier_withoutPolicies_usesDefaultLimits() {
+        assertThat(subject.forTier("standard"), is(DepositLimits.DEFAULT));
+        assertThat(subject.forTier(null), is(DepositLimits.DEFAULT));
+    }
+
+    @Test
+    public void refresh_compilesPolicies_andFallsBackToStandardTier() {
+        given(depositLimitPolicyRepository.findAll()).willReturn(Arrays.asList(
+                policy("standard", null, BigDecimal.valueOf(3000), null),
+                policy("premium", BigDecimal.valueOf(10000), null, BigDecimal.valueOf(50000))));
+
+        subject.refresh();
+
+        DepositLimits premium = subject.forTier("premium");
+        assertThat(premium.getPerTransaction(), comparesEqualTo(BigDecimal.valueOf(10000)));
+        assertThat(premium.getDaily(), is(nullValue()));
+        assertThat(premium.allows(BigDecimal.valueOf(10000), BigDecimal.valueOf(30000), BigDecimal.valueOf(40000)),
+                is(true));
+        assertThat(premium.allows(BigDecimal.valueOf(10000), BigDecimal.ZERO, BigDecimal.valueOf(40001)), is(false));
+        assertThat(subject.forTier("unknown").getDaily(), comparesEqualTo(BigDecimal.valueOf(3000)));
+    }
+
+    @Test
+    public void savePolicy_appliesRightAway() {
+        DepositLimitPolicy saved = policy("student", BigDecimal.valueOf(200), BigDecimal.valueOf(500), null);
+        given(depositLimitPolicyRepository.findById("student")).willReturn(Optional.empty());
+        given(depositLimitPolicyRepository.save(any())).willReturn(saved);
+        given(depositLimitPolicyRepository.findAll()).willReturn(Collections.singletonList(saved));
+
+        DepositLimitPolicyDTO result = subject.savePolicy("student", new DepositLimitPolicyDTO()
+                .perTransactionLimit(BigDecimal.valueOf(200))
+                .dailyLimit(BigDecimal.valueOf(500)));
+
+        assertThat(result.getTier(), is("student"));
+        assertThat(subject.forTier("student").allows(BigDecimal.valueOf(201), BigDecimal.ZERO, BigDecimal.ZERO),
+                is(false));
+        assertThat(subject.forTier("student").allows(BigDecimal.valueOf(200), BigDecimal.valueOf(300),
+                BigDecimal.valueOf(300)), is(true));
+    }
+
+    @Test
+    public void isKnownTier_standardOrStoredPolicy() {
+        given(depositLimitPolicyRepository.existsById("premium")).willReturn(true);
+        given(depositLimitPolicyRepository.existsById("gold")).willReturn(false);
+
+        assertThat(subject.isKnownTier("standard"), is(true));
+        assertThat(subject.isKnownTier("premium"), is(true));
+        assertThat(subject.isKnownTier("gold"), is(false));
+    }
+
+    private static DepositLimitPolicy policy(String tier, BigDecimal perTransaction, BigDecimal daily,
+                                             BigDecimal weekly) {
+        DepositLimitPolicy policy = new DepositLimitPolicy(tier);
+        policy.setPerTransactionLimit(perTransaction);
+        policy.setDailyLimit(daily);
+        policy.setWeeklyLimit(weekly);
+        return policy;
+    }
+}
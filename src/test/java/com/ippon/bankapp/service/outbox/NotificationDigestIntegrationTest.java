@@ -0,0 +1,86 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.service.EmailService;
+import com.ippon.bankapp.service.SmsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        "bankapp.notification.relay.claim-lease-ms=7200000",
+        "bankapp.notification.digest.window-ms=300",
+        "bankapp.notification.digest.max-messages=2"
+})
+public class NotificationDigestIntegrationTest {
+
+    // A spy keeps the name of the default channel, which is resolved when the context starts
+    @SpyBean
+    private EmailService emailService;
+
+    @MockBean
+    private SmsService smsService;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    @Autowired
+    private NotificationRelay subject;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        outboxNotificationRepository.deleteAll();
+    }
+
+    @Test
+    public void relay_fullDigest_sendsOneMessagePerRecipient() {
+        enqueue("Deposit", "Deposit of 10");
+        enqueue("Withdrawal", "Withdrawal of 5");
+
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "2 notifications",
+                "Deposit: Deposit of 10\nWithdrawal: Withdrawal of 5");
+        assertThat(outboxNotificationRepository.count(), is(0L));
+    }
+
+    @Test
+    public void relay_digestWindowOver_sendsBufferedNotification() throws InterruptedException {
+        enqueue("Deposit", "Deposit of 10");
+
+        subject.relay();
+
+        verify(smsService, never()).sendMessage(anyString(), anyString(), anyString(), anyString());
+        assertThat(outboxNotificationRepository.count(), is(1L));
+
+        Thread.sleep(400);
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "Deposit", "Deposit of 10");
+        assertThat(outboxNotificationRepository.count(), is(0L));
+    }
+
+    private void enqueue(String title, String message) {
+        transactionTemplate.execute(status -> {
+            notificationOutbox.enqueue("sms", "bank", "Scott", title, message);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+class NotificationDigestTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-19T10:00:00Z");
+
+    @Test
+    public void add_zeroWindow_sendsEveryNotificationAsIs() {
+        NotificationDigest subject = new NotificationDigest(Duration.ZERO, 20, 100);
+
+        Optional<NotificationDigest.Digest> digest = subject.add(notification("sms", "Scott", "Deposit"), NOW);
+
+        assertThat(digest.isPresent(), is(true));
+        assertThat(digest.get().getSubject(), is("Deposit"));
+        assertThat(digest.get().getMessage(), is("Deposit made"));
+        assertThat(subject.getBuffered(), is(0));
+    }
+
+    @Test
+    public void add_fullBuffer_flushesRecipientAtOnce() {
+        NotificationDigest subject = new NotificationDigest(Duration.ofSeconds(10), 3, 100);
+
+        assertThat(subject.add(notification("sms", "Scott", "Deposit"), NOW).isPresent(), is(false));
+        assertThat(subject.add(notification("sms", "Smith", "Deposit"), NOW).isPresent(), is(false));
+        assertThat(subject.add(notification("email", "Scott", "Deposit"), NOW).isPresent(), is(false));
+        assertThat(subject.add(notification("sms", "Scott", "Withdrawal"), NOW).isPresent(), is(false));
+        Optional<NotificationDigest.Digest> digest = subject.add(notification("sms", "Scott", "Transfer"), NOW);
+
+        assertThat(digest.isPresent(), is(true));
+        assertThat(digest.get().getDestination(), is("Scott"));
+        assertThat(digest.get().getChannel(), is("sms"));
+        assertThat(digest.get().getSubject(), is("3 notifications"));
+        assertThat(digest.get().getMessage(),
+                is("Deposit: Deposit made\nWithdrawal: Withdrawal made\nTransfer: Transfer made"));
+        assertThat(subject.getBuffered(), is(2));
+    }
+
+    @Test
+    public void flushDue_sendsBuffersWhoseWindowIsOver_oldestFirst() {
+        NotificationDigest subject = new NotificationDigest(Duration.ofSeconds(10), 20, 100);
+        subject.add(notification("sms", "Scott", "Deposit"), NOW);
+        subject.add(notification("sms", "Smith", "Deposit"), NOW.plusSeconds(5));
+        subject.add(notification("sms", "Scott", "Withdrawal"), NOW.plusSeconds(6));
+
+        assertThat(subject.flushDue(NOW.plusSeconds(9)), is(empty()));
+
+        List<NotificationDigest.Digest> due = subject.flushDue(NOW.plusSeconds(10));
+        assertThat(due, hasSize(1));
+        assertThat(due.get(0).getDestination(), is("Scott"));
+        assertThat(due.get(0).getNotifications(), hasSize(2));
+
+        due = subject.flushDue(NOW.plusSeconds(15));
+        assertThat(due, hasSize(1));
+        assertThat(due.get(0).getDestination(), is("Smith"));
+        assertThat(subject.getBuffered(), is(0));
+    }
+
+    @Test
+    public void isFull_onceMaxBufferedIsReached() {
+        NotificationDigest subject = new NotificationDigest(Duration.ofSeconds(10), 20, 2);
+        subject.add(notification("sms", "Scott", "Deposit"), NOW);
+
+        assertThat(subject.isFull(), is(false));
+
+        subject.add(notification("sms", "Smith", "Deposit"), NOW);
+
+        assertThat(subject.isFull(), is(true));
+    }
+
+    private static OutboxNotification notification(String channel, String destination, String subject) {
+        return new OutboxNotification(channel, "bank", destination, subject, subject + " made");
+    }
+}
@@ -0,0 +1,156 @@
+package com.ippon.bankapp.service.outbox;
+
+import com.ippon.bankapp.domain.OutboxNotification;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.service.EmailService;
+import com.ippon.bankapp.service.SmsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "bankapp.notification.relay.poll-interval-ms=3600000")
+public class NotificationRelayIntegrationTest {
+
+    // A spy keeps the name of the default channel, which is resolved when the context starts
+    @SpyBean
+    private EmailService emailService;
+
+    @MockBean
+    private SmsService smsService;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    @Autowired
+    private NotificationRelay subject;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        outboxNotificationRepository.deleteAll();
+    }
+
+    @Test
+    public void enqueue_outsideTransaction_isRejected() {
+        assertThrows(RuntimeException.class,
+                () -> notificationOutbox.enqueue("sms", "bank", "Scott", "Account Created", "Welcome aboard!"));
+    }
+
+    @Test
+    public void relay_deliversThroughPreferredServiceAndEmptiesOutbox() {
+        enqueue("sms");
+
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        assertThat(outboxNotificationRepository.count(), is(0L));
+    }
+
+    @Test
+    public void relay_unknownChannel_fallsBackToDefaultService() {
+        enqueue("pigeon");
+
+        subject.relay();
+
+        verify(emailService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+    }
+
+    @Test
+    public void relay_preferredServiceFails_fallsBackToDefaultService() {
+        willThrow(new IllegalStateException("provider down"))
+                .given(smsService).sendMessage(anyString(), anyString(), anyString(), anyString());
+        enqueue("sms");
+
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        verify(emailService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        assertThat(outboxNotificationRepository.count(), is(0L));
+    }
+
+    @Test
+    public void relay_deliveryFails_keepsNotificationForRetry() {
+        willThrow(new IllegalStateException("provider down"))
+                .given(smsService).sendMessage(anyString(), anyString(), anyString(), anyString());
+        willThrow(new IllegalStateException("provider down"))
+                .given(emailService).sendMessage(anyString(), anyString(), anyString(), anyString());
+        enqueue("sms");
+
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        assertThat(outboxNotificationRepository.count(), is(1L));
+        assertThat(outboxNotificationRepository.findAll().iterator().next().getAttempts(), is(1));
+    }
+
+    @Test
+    public void relay_lastAttemptFails_deadLettersNotification() {
+        willThrow(new IllegalStateException("provider down"))
+                .given(smsService).sendMessage(anyString(), anyString(), anyString(), anyString());
+        willThrow(new IllegalStateException("provider down"))
+                .given(emailService).sendMessage(anyString(), anyString(), anyString(), anyString());
+        enqueue("sms");
+        OutboxNotification notification = outboxNotificationRepository.findAll().iterator().next();
+        notification.setAttempts(9);
+        outboxNotificationRepository.save(notification);
+
+        subject.relay();
+
+        notification = outboxNotificationRepository.findById(notification.getId()).get();
+        assertThat(notification.getAttempts(), is(10));
+        assertThat(notification.getDeadLetteredAt(), is(notNullValue()));
+        assertThat(notification.getClaimedUntil(), is(nullValue()));
+        assertThat(outboxNotificationRepository.countByDeadLetteredAtIsNotNull(), is(1L));
+        assertThat(outboxNotificationRepository.findClaimableIds(Instant.now().plus(Duration.ofHours(1)),
+                PageRequest.of(0, 10)), is(empty()));
+    }
+
+    @Test
+    public void relay_claimTakenOverDuringDelivery_leavesNotificationToNewOwner() {
+        enqueue("sms");
+        int id = outboxNotificationRepository.findAll().iterator().next().getId();
+        // Another relay claims the row as if the lease had run out while the provider was answering
+        willAnswer(invocation -> transactionTemplate.execute(status -> outboxNotificationRepository.claim(
+                Collections.singletonList(id), "other", Instant.now().plus(Duration.ofHours(1)),
+                Instant.now().plus(Duration.ofHours(2)))))
+                .given(smsService).sendMessage(anyString(), anyString(), anyString(), anyString());
+
+        subject.relay();
+
+        verify(smsService).sendMessage("bank", "Scott", "Account Created", "Welcome aboard!");
+        assertThat(outboxNotificationRepository.findById(id).get().getClaimToken(), is("other"));
+        assertThat(outboxNotificationRepository.findById(id).get().getAttempts(), is(0));
+    }
+
+    private void enqueue(String channel) {
+        transactionTemplate.execute(status -> {
+            notificationOutbox.enqueue(channel, "bank", "Scott", "Account Created", "Welcome aboard!");
+            return null;
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.ippon.bankapp.service.posting;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.service.exception.InsufficientFundsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class BalanceSlotServiceIntegrationTest {
+
+    @Autowired
+    private BalanceSlotService subject;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceSlotRepository balanceSlotRepository;
+
+    @AfterEach
+    public void tearDown() {
+        balanceSlotRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void split_movesBalanceIntoSlots() {
+        Account account = splitAccount(BigDecimal.valueOf(100), 4);
+
+        assertThat(account.getBalanceSlots(), is(4));
+        assertThat(account.getBalance(), comparesEqualTo(BigDecimal.ZERO));
+        assertThat(balanceSlotRepository.count(), is(4L));
+        assertThat(subject.getTotals(account).getBalance(), comparesEqualTo(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void credit_addsToTotalAndVersion() {
+        Account account = splitAccount(BigDecimal.ZERO, 4);
+        long version = subject.getTotals(account).getVersion();
+
+        for (int i = 0; i < 10; i++) {
+            subject.credit(account, BigDecimal.TEN);
+        }
+
+        assertThat(subject.getTotals(account).getBalance(), comparesEqualTo(BigDecimal.valueOf(100)));
+        assertThat(subject.getTotals(account).getVersion(), greaterThan(version));
+    }
+
+    @Test
+    public void debit_spreadAcrossSlots_drainsSeveralSlots() {
+        Account account = splitAccount(BigDecimal.ZERO, 4);
+        for (int i = 0; i < 8; i++) {
+            subject.credit(account, BigDecimal.TEN);
+        }
+
+        subject.debit(account, BigDecimal.valueOf(75));
+
+        assertThat(subject.getTotals(account).getBalance(), comparesEqualTo(BigDecimal.valueOf(5)));
+    }
+
+    @Test
+    public void debit_moreThanTotal_throwsInsufficientFunds() {
+        Account account = splitAccount(BigDecimal.valueOf(40), 4);
+
+        assertThrows(InsufficientFundsException.class, () -> subject.debit(account, BigDecimal.valueOf(41)));
+        assertThat(subject.getTotals(account).getBalance(), comparesEqualTo(BigDecimal.valueOf(40)));
+    }
+
+    private Account splitAccount(BigDecimal balance, int slots) {
+        Account account = new Account("Ben", "Scott");
+        account.setBalance(balance);
+        return subject.split(accountRepository.save(account), slots);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ippon.bankapp.service.posting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GroupCommitterTest {
+
+    @Test
+    public void submit_uncontended_appliesOwnRequest() {
+        GroupCommitter<Integer, Integer> subject = new GroupCommitter<>((key, batch) -> {
+            for (GroupCommitter.Pending<Integer, Integer> pending : batch) {
+                pending.complete(pending.getRequest() * 2);
+            }
+        });
+
+        assertThat(subject.submit(10, 21), is(42));
+        assertThat(subject.getBatchCount(), is(1L));
+    }
+
+    @Test
+    public void submit_failedRequest_throwsToItsCallerOnly() {
+        GroupCommitter<Integer, Integer> subject = new GroupCommitter<>((key, batch) -> {
+            for (GroupCommitter.Pending<Integer, Integer> pending : batch) {
+                if (pending.getRequest() < 0) {
+                    pending.fail(new IllegalArgumentException());
+                } else {
+                    pending.complete(pending.getRequest());
+                }
+            }
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> subject.submit(10, -1));
+        assertThat(subject.submit(10, 1), is(1));
+    }
+
+    @Test
+    public void submit_handlerThrows_failsWholeBatch() {
+        GroupCommitter<Integer, Integer> subject = new GroupCommitter<>((key, batch) -> {
+            throw new IllegalStateException();
+        });
+
+        assertThrows(IllegalStateException.class, () -> subject.submit(10, 1));
+    }
+
+    @Test
+    public void submit_concurrentRequests_areCoalescedPerKey() throws Exception {
+        int threads = 16;
+        int requestsPerThread = 200;
+        long[] balance = new long[1];
+        GroupCommitter<Integer, Long> subject = new GroupCommitter<>((key, batch) -> {
+            sleepQuietly();
+            for (GroupCommitter.Pending<Integer, Long> pending : batch) {
+                balance[0] += pending.getRequest();
+                pending.complete(balance[0]);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < requestsPerThread; i++) {
+                    subject.submit(42, 1);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(balance[0], is((long) threads * requestsPerThread));
+        assertThat(subject.getRequestCount(), is((long) threads * requestsPerThread));
+        assertThat(subject.getBatchCount(), lessThan(subject.getRequestCount()));
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
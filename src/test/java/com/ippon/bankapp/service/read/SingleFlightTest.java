@@ -0,0 +1,127 @@
+package com.ippon.bankapp.service.read;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private static final int READERS = 50;
+
+    @Test
+    public void get_uncontended_loadsEveryTime() {
+        SingleFlight<String, Integer> subject = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(subject.get("Scott", 0, loads::incrementAndGet), is(1));
+        assertThat(subject.get("Scott", 0, loads::incrementAndGet), is(2));
+        assertThat(subject.getSharedCount(), is(0L));
+    }
+
+    @Test
+    public void get_thunderingHerd_sharesOneLoad() throws Exception {
+        SingleFlight<String, Integer> subject = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch leaderLoading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            Future<Integer> leader = executor.submit(() -> subject.get("Scott", 3, () -> {
+                leaderLoading.countDown();
+                awaitSharedCount(subject, READERS - 1);
+                return loads.incrementAndGet();
+            }));
+            leaderLoading.await();
+
+            List<Future<Integer>> followers = new ArrayList<>();
+            for (int i = 1; i < READERS; i++) {
+                followers.add(executor.submit(() -> subject.get("Scott", 3, loads::incrementAndGet)));
+            }
+
+            assertThat(leader.get(5, TimeUnit.SECONDS), is(1));
+            for (Future<Integer> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS), is(1));
+            }
+            assertThat(loads.get(), is(1));
+            assertThat(subject.getCallCount(), is((long) READERS));
+            assertThat(subject.getSharedCount(), is((long) READERS - 1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void get_failedLoad_throwsToEveryWaitingCaller() throws Exception {
+        SingleFlight<String, Integer> subject = new SingleFlight<>();
+        CountDownLatch leaderLoading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = executor.submit(() -> subject.get("Scott", 0, () -> {
+                leaderLoading.countDown();
+                awaitSharedCount(subject, 1);
+                throw new IllegalStateException();
+            }));
+            leaderLoading.await();
+            Future<Integer> follower = executor.submit(() -> subject.get("Scott", 0, () -> 1));
+
+            assertThrowsCause(IllegalStateException.class, leader);
+            assertThrowsCause(IllegalStateException.class, follower);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void get_newerGeneration_doesNotJoinOlderFlight() throws Exception {
+        SingleFlight<String, Integer> subject = new SingleFlight<>();
+        CountDownLatch leaderLoading = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> leader = executor.submit(() -> subject.get("Scott", 1, () -> {
+                leaderLoading.countDown();
+                await(releaseLeader);
+                return 100;
+            }));
+            leaderLoading.await();
+
+            assertThat(subject.get("Scott", 2, () -> 150), is(150));
+            releaseLeader.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS), is(100));
+            assertThat(subject.getSharedCount(), is(0L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitSharedCount(SingleFlight<?, ?> subject, long count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subject.getSharedCount() < count && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertThrowsCause(Class<? extends Throwable> type, Future<?> future) {
+        Throwable thrown = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertThat(type.isInstance(thrown.getCause()), is(true));
+    }
+}
@@ -0,0 +1,62 @@
+package com.ippon.bankapp.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final CircuitBreaker subject = new CircuitBreaker(3, OPEN_DURATION, nanoTime::get);
+
+    @Test
+    public void onFailure_successInBetween_resetsConsecutiveFailures() {
+        assertThat(subject.onFailure(), is(false));
+        assertThat(subject.onFailure(), is(false));
+        subject.onSuccess();
+        assertThat(subject.onFailure(), is(false));
+        assertThat(subject.onFailure(), is(false));
+
+        assertThat(subject.onFailure(), is(true));
+        assertThat(subject.tryAcquire(), is(false));
+    }
+
+    @Test
+    public void tryAcquire_halfOpen_letsOneProbeThrough_andReopensWhenItFails() {
+        trip();
+        nanoTime.addAndGet(OPEN_DURATION.toNanos());
+
+        assertThat(subject.tryAcquire(), is(true));
+        assertThat(subject.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(subject.tryAcquire(), is(false));
+
+        assertThat(subject.onFailure(), is(true));
+        assertThat(subject.getState(), is(CircuitBreaker.State.OPEN));
+        nanoTime.addAndGet(OPEN_DURATION.toNanos() - 1);
+        assertThat(subject.tryAcquire(), is(false));
+    }
+
+    @Test
+    public void release_givesTheProbeBack() {
+        trip();
+        nanoTime.addAndGet(OPEN_DURATION.toNanos());
+        assertThat(subject.tryAcquire(), is(true));
+
+        subject.release();
+
+        assertThat(subject.tryAcquire(), is(true));
+    }
+
+    private void trip() {
+        for (int i = 0; i < 3; i++) {
+            subject.onFailure();
+        }
+        assertThat(subject.getState(), is(CircuitBreaker.State.OPEN));
+    }
+}
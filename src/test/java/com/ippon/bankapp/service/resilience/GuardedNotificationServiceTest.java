@@ -0,0 +1,184 @@
+package com.ippon.bankapp.service.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.ippon.bankapp.service.NotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the guard against a provider stand-in served by WireMock, which injects the latency and errors.
+ */
+class GuardedNotificationServiceTest {
+
+    private static final long TIMEOUT_MILLIS = 200;
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private WireMockServer provider;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong nanoTime;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void before() {
+        provider = new WireMockServer(options().dynamicPort());
+        provider.start();
+        // The first request of a run is slow on its own, as the HTTP client and server load; keep it off the timeouts
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(202)));
+        send(new HttpNotificationService("http://localhost:" + provider.port() + "/messages"));
+        provider.resetAll();
+        meterRegistry = new SimpleMeterRegistry();
+        nanoTime = new AtomicLong();
+        circuitBreaker = new CircuitBreaker(2, OPEN_DURATION, nanoTime::get);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        provider.stop();
+    }
+
+    @Test
+    public void sendMessage_slowProvider_timesOutAndTripsCircuit() {
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(202).withFixedDelay(1000)));
+        GuardedNotificationService subject = guard(10, null);
+
+        assertThrows(NotificationUnavailableException.class, () -> send(subject));
+        assertThrows(NotificationUnavailableException.class, () -> send(subject));
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+
+        assertThrows(NotificationUnavailableException.class, () -> send(subject));
+
+        provider.verify(2, postRequestedFor(urlEqualTo("/messages")));
+        assertThat(count("bankapp.notification.calls", "outcome", "timeout"), is(2.0));
+        assertThat(count("bankapp.notification.circuit.trips", "channel", "sms"), is(1.0));
+        assertThat(count("bankapp.notification.rejections", "reason", "circuit-open"), is(1.0));
+    }
+
+    @Test
+    public void sendMessage_openCircuit_letsOneProbeThroughOnceOpenDurationIsOver() {
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(500)));
+        GuardedNotificationService subject = guard(10, null);
+        assertThrows(IllegalStateException.class, () -> send(subject));
+        assertThrows(IllegalStateException.class, () -> send(subject));
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(202)));
+        nanoTime.addAndGet(OPEN_DURATION.toNanos());
+        send(subject);
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+        provider.verify(3, postRequestedFor(urlEqualTo("/messages")));
+        assertThat(count("bankapp.notification.calls", "outcome", "failure"), is(2.0));
+        assertThat(count("bankapp.notification.calls", "outcome", "success"), is(1.0));
+    }
+
+    @Test
+    public void sendMessage_bulkheadFull_rejectsAtOnce() {
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(202).withFixedDelay(1000)));
+        GuardedNotificationService subject = guard(1, null);
+
+        //The caller gives up after the timeout, the stalled provider still holds the only bulkhead thread
+        assertThrows(NotificationUnavailableException.class, () -> send(subject));
+        assertThrows(NotificationUnavailableException.class, () -> send(subject));
+
+        assertThat(count("bankapp.notification.calls", "outcome", "timeout"), is(1.0));
+        assertThat(count("bankapp.notification.rejections", "reason", "bulkhead-full"), is(1.0));
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void sendMessage_failingProvider_fallsBack() {
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(503)));
+        NotificationService fallback = mock(NotificationService.class);
+        GuardedNotificationService subject = guard(10, fallback);
+
+        send(subject);
+
+        verify(fallback).sendMessage("bank", "Scott", "Deposit", "Deposit of 10");
+        assertThat(count("bankapp.notification.fallbacks", "channel", "sms"), is(1.0));
+        assertThat(count("bankapp.notification.possible.duplicates", "channel", "sms"), is(0.0));
+    }
+
+    @Test
+    public void sendMessage_slowProvider_fallsBackAndCountsPossibleDuplicate() {
+        provider.stubFor(post(urlEqualTo("/messages")).willReturn(aResponse().withStatus(202).withFixedDelay(1000)));
+        NotificationService fallback = mock(NotificationService.class);
+        GuardedNotificationService subject = guard(10, fallback);
+
+        send(subject);
+
+        verify(fallback).sendMessage("bank", "Scott", "Deposit", "Deposit of 10");
+        assertThat(count("bankapp.notification.possible.duplicates", "channel", "sms"), is(1.0));
+    }
+
+    private GuardedNotificationService guard(int maxConcurrent, NotificationService fallback) {
+        NotificationService http = new HttpNotificationService("http://localhost:" + provider.port() + "/messages");
+        return new GuardedNotificationService("sms", http, fallback, circuitBreaker, maxConcurrent, TIMEOUT_MILLIS,
+                meterRegistry);
+    }
+
+    private static void send(NotificationService subject) {
+        subject.sendMessage("bank", "Scott", "Deposit", "Deposit of 10");
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
+
+    /**
+     * Provider stand-in posting each message to an HTTP endpoint
+     */
+    private static final class HttpNotificationService implements NotificationService {
+
+        private final String url;
+
+        private HttpNotificationService(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void sendMessage(String source, String destination, String subject, String message) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                try (OutputStream body = connection.getOutputStream()) {
+                    body.write((destination + "\n" + subject + "\n" + message).getBytes(StandardCharsets.UTF_8));
+                }
+                int status = connection.getResponseCode();
+                connection.disconnect();
+                if (status >= 300) {
+                    throw new IllegalStateException("Provider answered " + status);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "sms";
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.ippon.bankapp.service.rules;
+
+import com.ippon.bankapp.service.dto.PostingRuleDTO;
+import com.ippon.bankapp.service.exception.InvalidPostingRuleException;
+import com.ippon.bankapp.service.exception.PostingRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostingRulesEngineTest {
+
+    private static final long IDLE_MILLIS = 3_600_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    public void countPerWindow_rejectsOnceLimitReached_untilWindowSlides() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawals-per-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(60)
+                .limit(BigDecimal.valueOf(3)));
+
+        for (int i = 0; i < 3; i++) {
+            subject.check(7, PostingKind.WITHDRAW, BigDecimal.TEN);
+            now.addAndGet(1000);
+        }
+        PostingRejectedException rejected = assertThrows(PostingRejectedException.class,
+                () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.TEN));
+
+        assertThat(rejected.getRule(), is("withdrawals-per-minute"));
+        // Other kinds and other accounts are not counted
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.TEN);
+        subject.check(8, PostingKind.WITHDRAW, BigDecimal.TEN);
+        // The first withdrawal leaves the window
+        now.addAndGet(58_000);
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.TEN);
+    }
+
+    @Test
+    public void amountPerWindow_sumsPostingsInWindow() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawn-per-hour")
+                .type(PostingRuleType.AMOUNT_PER_WINDOW)
+                .windowSeconds(3600)
+                .limit(new BigDecimal("100.00")));
+
+        subject.check(7, PostingKind.WITHDRAW, new BigDecimal("60.50"));
+        now.addAndGet(1000);
+        subject.check(7, PostingKind.DEPOSIT, new BigDecimal("39.50"));
+
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.WITHDRAW, new BigDecimal("0.01")));
+        now.addAndGet(3_600_000);
+        subject.check(7, PostingKind.WITHDRAW, new BigDecimal("60.50"));
+    }
+
+    @Test
+    public void newCounterparty_limitsFirstTransferToAnAccount() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("transfer-to-new-account")
+                .type(PostingRuleType.NEW_COUNTERPARTY)
+                .limit(BigDecimal.valueOf(1000)));
+
+        assertThrows(PostingRejectedException.class, () -> subject.checkTransfer(7, 9, BigDecimal.valueOf(1500)));
+        subject.checkTransfer(7, 9, BigDecimal.valueOf(500)).keep();
+        subject.checkTransfer(7, 9, BigDecimal.valueOf(1500));
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(1500));
+        assertThrows(PostingRejectedException.class, () -> subject.checkTransfer(7, 3, BigDecimal.valueOf(1500)));
+    }
+
+    @Test
+    public void rejectedPosting_isNotRecorded() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawn-per-hour")
+                .type(PostingRuleType.AMOUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(3600)
+                .limit(BigDecimal.valueOf(100)));
+
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(90));
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(20)));
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(10));
+    }
+
+    @Test
+    public void window_keepsCountingPastInitialRingSize() {
+        PostingRulesEngine subject = new PostingRulesEngine(Collections.singletonList(new PostingRuleDTO()
+                .name("postings-per-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .windowSeconds(60)
+                .limit(BigDecimal.valueOf(20))), 64, IDLE_MILLIS, now::get);
+
+        for (int i = 0; i < 20; i++) {
+            subject.check(7, i % 2 == 0 ? PostingKind.DEPOSIT : PostingKind.WITHDRAW, BigDecimal.ONE);
+        }
+
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE));
+    }
+
+    @Test
+    public void newCounterparty_releasedTransfer_leavesCounterpartyNew() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("transfer-to-new-account")
+                .type(PostingRuleType.NEW_COUNTERPARTY)
+                .limit(BigDecimal.valueOf(1000)));
+
+        subject.checkTransfer(7, 9, BigDecimal.valueOf(500)).release();
+
+        assertThrows(PostingRejectedException.class, () -> subject.checkTransfer(7, 9, BigDecimal.valueOf(1500)));
+    }
+
+    @Test
+    public void releasedPosting_noLongerCounts_whilePendingOneDoes() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawn-per-hour")
+                .type(PostingRuleType.AMOUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(3600)
+                .limit(BigDecimal.valueOf(100)));
+
+        PostingRulesEngine.Hold pending = subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(60));
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(60)));
+
+        pending.release();
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(60)).keep();
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.valueOf(60)));
+    }
+
+    @Test
+    public void transfer_countsOnceOnEachAccount() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("postings-per-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .windowSeconds(60)
+                .limit(BigDecimal.valueOf(2)));
+
+        subject.checkTransfer(7, 9, BigDecimal.TEN).keep();
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.TEN).keep();
+        subject.check(9, PostingKind.WITHDRAW, BigDecimal.TEN).keep();
+
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.DEPOSIT, BigDecimal.TEN));
+        assertThrows(PostingRejectedException.class, () -> subject.check(9, PostingKind.DEPOSIT, BigDecimal.TEN));
+    }
+
+    @Test
+    public void transfer_rejectedOnAccountTransferredTo_releasesAccountTransferredFrom() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("deposits-per-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .appliesTo(PostingKind.DEPOSIT)
+                .windowSeconds(60)
+                .limit(BigDecimal.ONE), new PostingRuleDTO()
+                .name("withdrawals-per-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(60)
+                .limit(BigDecimal.ONE));
+        subject.check(9, PostingKind.DEPOSIT, BigDecimal.TEN).keep();
+
+        assertThrows(PostingRejectedException.class, () -> subject.checkTransfer(7, 9, BigDecimal.TEN));
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.TEN).keep();
+    }
+
+    @Test
+    public void window_overwrittenWithinWindow_rejects() {
+        // A withdrawal in the ring of 8 postings is overwritten well within the window, so the count can no longer
+        // be trusted
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawals-per-hour")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(3600)
+                .limit(BigDecimal.valueOf(10)));
+        for (int i = 0; i < 9; i++) {
+            subject.check(7, PostingKind.WITHDRAW, BigDecimal.ONE).keep();
+        }
+
+        PostingRejectedException rejected = assertThrows(PostingRejectedException.class,
+                () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.ONE));
+
+        assertThat(rejected.getRule(), is("withdrawals-per-hour"));
+        // Once the overwritten postings leave the window, counting is exact again
+        now.addAndGet(3_600_001);
+        subject.check(7, PostingKind.WITHDRAW, BigDecimal.ONE);
+    }
+
+    @Test
+    public void window_otherKindsOverwritten_stillCounts() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("withdrawn-per-hour")
+                .type(PostingRuleType.AMOUNT_PER_WINDOW)
+                .appliesTo(PostingKind.WITHDRAW)
+                .windowSeconds(3600)
+                .limit(new BigDecimal("100.00")));
+        // Deposits overflow the ring of 8 postings well within the window
+        for (int i = 0; i < 20; i++) {
+            subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE).keep();
+        }
+
+        // Only deposits were overwritten, so withdrawals are still counted exactly
+        subject.check(7, PostingKind.WITHDRAW, new BigDecimal("60.00")).keep();
+        subject.check(7, PostingKind.WITHDRAW, new BigDecimal("40.00")).keep();
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.WITHDRAW, BigDecimal.ONE));
+    }
+
+    @Test
+    public void evictIdle_dropsOnlyIdleActivity() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("one-a-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .windowSeconds(60)
+                .limit(BigDecimal.ONE));
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE).keep();
+        PostingRulesEngine.Hold pending = subject.check(8, PostingKind.DEPOSIT, BigDecimal.ONE);
+        now.addAndGet(IDLE_MILLIS + 1);
+        subject.check(9, PostingKind.DEPOSIT, BigDecimal.ONE).keep();
+
+        subject.evictIdle();
+
+        assertThat(subject.getActivityCount(), is(2));
+        assertThrows(PostingRejectedException.class, () -> subject.check(9, PostingKind.DEPOSIT, BigDecimal.ONE));
+        pending.keep();
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE);
+    }
+
+    @Test
+    public void reload_replacesRules_andKeepsThemOnInvalidDefinition() {
+        PostingRulesEngine subject = engine(new PostingRuleDTO()
+                .name("one-a-minute")
+                .type(PostingRuleType.COUNT_PER_WINDOW)
+                .windowSeconds(60)
+                .limit(BigDecimal.ONE));
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE);
+
+        assertThrows(InvalidPostingRuleException.class, () -> subject.reload(Collections.singletonList(
+                new PostingRuleDTO().name("no-window").type(PostingRuleType.COUNT_PER_WINDOW).limit(BigDecimal.ONE))));
+        assertThrows(PostingRejectedException.class, () -> subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE));
+
+        subject.reload(Collections.emptyList());
+        subject.check(7, PostingKind.DEPOSIT, BigDecimal.ONE);
+        assertThat(subject.getRules().isEmpty(), is(true));
+    }
+
+    private PostingRulesEngine engine(PostingRuleDTO... rules) {
+        return new PostingRulesEngine(Arrays.asList(rules), 8, IDLE_MILLIS, now::get);
+    }
+}
@@ -0,0 +1,86 @@
+package com.ippon.bankapp.service.search;
+
+import com.ippon.bankapp.domain.Account;
+import com.ippon.bankapp.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class AccountSearchIndexTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private AccountSearchIndex subject;
+
+    @BeforeEach
+    public void before() {
+        subject = new AccountSearchIndex(accountRepository);
+        subject.add(new Account("Ben", "Scott"));
+        subject.add(new Account("Erin", "Geoghan"));
+        subject.add(new Account("Benoît", "Ortega"));
+        subject.add(new Account("Mary Ann", "Bennett"));
+    }
+
+    @Test
+    public void search_matchesFirstAndLastNamePrefixes() {
+        assertThat(subject.search("ben", 0, 10), is(Arrays.asList("Scott", "Bennett", "Ortega")));
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        assertThat(subject.search("BENOI", 0, 10), is(Collections.singletonList("Ortega")));
+    }
+
+    @Test
+    public void search_matchesInnerWords() {
+        assertThat(subject.search("ann", 0, 10), is(Collections.singletonList("Bennett")));
+    }
+
+    @Test
+    public void search_pagesOverDistinctAccounts() {
+        assertThat(subject.search("ben", 0, 2), is(Arrays.asList("Scott", "Bennett")));
+        assertThat(subject.search("ben", 1, 2), is(Collections.singletonList("Ortega")));
+        assertThat(subject.search("ben", 2, 2), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void search_blankQuery_returnsNothing() {
+        assertThat(subject.search("  ", 0, 10), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void rebuild_loadsAccountsFromRepository() {
+        given(accountRepository.findAll()).willReturn(Collections.singletonList(new Account("Jane", "Doe")));
+
+        subject.rebuild();
+
+        assertThat(subject.search("do", 0, 10), is(Collections.singletonList("Doe")));
+        assertThat(subject.search("ben", 0, 10), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void rebuild_keepsAnsweringFromCurrentIndexUntilSwapped() {
+        given(accountRepository.findAll()).willAnswer(invocation -> {
+            assertThat(subject.search("scott", 0, 10), is(Collections.singletonList("Scott")));
+            subject.add(new Account("Ada", "Lovelace"));
+            return Collections.singletonList(new Account("Ben", "Scott"));
+        });
+
+        subject.rebuild();
+
+        assertThat(subject.search("scott", 0, 10), is(Collections.singletonList("Scott")));
+        assertThat(subject.search("lov", 0, 10), is(Collections.singletonList("Lovelace")));
+        assertThat(subject.search("erin", 0, 10), is(Collections.emptyList()));
+    }
+}
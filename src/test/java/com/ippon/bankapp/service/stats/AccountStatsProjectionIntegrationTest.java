@@ -0,0 +1,142 @@
+package com.ippon.bankapp.service.stats;
+
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceSlotRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.AccountStatsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+@SpringBootTest
+public class AccountStatsProjectionIntegrationTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountStatsProjection subject;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private BalanceSlotRepository balanceSlotRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @BeforeEach
+    public void before() {
+        accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Scott"));
+        accountService.deposit("Scott", BigDecimal.valueOf(100));
+        accountService.deposit("Scott", BigDecimal.valueOf(200));
+        accountService.withdraw("Scott", BigDecimal.valueOf(50));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        accountMonthlyStatsRepository.deleteAll();
+        balanceSlotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void postings_updateMonthlyStats() {
+        assertCurrentMonth(accountService.getAccountStats("Scott"));
+    }
+
+    @Test
+    public void rebuild_recomputesSameStatsFromHistory() {
+        accountMonthlyStatsRepository.deleteAll();
+
+        assertThat(subject.rebuild(), is(1));
+
+        assertCurrentMonth(accountService.getAccountStats("Scott"));
+    }
+
+    @Test
+    public void concurrentFirstPostingsOfMonth_allCounted() throws InterruptedException {
+        accountMonthlyStatsRepository.deleteAll();
+        int withdrawals = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(withdrawals);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < withdrawals; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return accountService.withdraw("Scott", BigDecimal.ONE);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        for (Future<?> result : results) {
+            assertDoesNotThrow(() -> result.get(1, TimeUnit.MINUTES));
+        }
+
+        AccountStatsDTO month = accountService.getAccountStats("Scott").get(0);
+        assertThat(month.getWithdrawalCount(), is((long) withdrawals));
+        assertThat(month.getWithdrawalTotal(), comparesEqualTo(BigDecimal.valueOf(withdrawals)));
+    }
+
+    @Test
+    public void splitAccount_postingsSpreadOverStripes_summedPerMonth() {
+        int id = accountService.getAccountId("Scott");
+        accountService.splitBalance(id, 4);
+        for (int i = 0; i < 20; i++) {
+            accountService.withdraw(id, BigDecimal.ONE);
+        }
+
+        assertThat(accountMonthlyStatsRepository.findAllByAccountIdOrderByPeriod(id).size(), is(greaterThan(1)));
+        AccountStatsDTO month = accountService.getAccountStats("Scott").get(0);
+        assertThat(month.getDepositCount(), is(2L));
+        assertThat(month.getWithdrawalCount(), is(21L));
+        assertThat(month.getWithdrawalTotal(), comparesEqualTo(BigDecimal.valueOf(70)));
+    }
+
+    private void assertCurrentMonth(List<AccountStatsDTO> stats) {
+        assertThat(stats.size(), is(1));
+        AccountStatsDTO month = stats.get(0);
+        assertThat(month.getMonth(), is(YearMonth.now().toString()));
+        assertThat(month.getDepositCount(), is(2L));
+        assertThat(month.getDepositTotal(), comparesEqualTo(BigDecimal.valueOf(300)));
+        assertThat(month.getDepositAverage(), comparesEqualTo(BigDecimal.valueOf(150)));
+        assertThat(month.getWithdrawalCount(), is(1L));
+        assertThat(month.getWithdrawalTotal(), comparesEqualTo(BigDecimal.valueOf(50)));
+    }
+}
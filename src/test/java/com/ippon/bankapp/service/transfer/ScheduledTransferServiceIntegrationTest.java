@@ -0,0 +1,172 @@
+package com.ippon.bankapp.service.transfer;
+
+import com.ippon.bankapp.domain.ScheduledTransfer;
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.ScheduledTransferRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.dto.ScheduledTransferDTO;
+import com.ippon.bankapp.service.exception.InsufficientFundsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        "bankapp.transfers.tick-ms=3600000",
+        "bankapp.transfers.load-interval-ms=3600000"})
+public class ScheduledTransferServiceIntegrationTest {
+
+    @Autowired
+    private ScheduledTransferService subject;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ScheduledTransferRepository scheduledTransferRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @BeforeEach
+    public void before() {
+        accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Scott"));
+        accountService.createAccount(new AccountDTO().firstName("Erin").lastName("Geoghan"));
+        accountService.deposit("Scott", BigDecimal.valueOf(1000));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduledTransferRepository.deleteAll();
+        accountMonthlyStatsRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void tick_runsDueTransferOnce() throws Exception {
+        long runs = subject.getRunCount();
+        subject.schedule(transfer(Instant.now().minusSeconds(5), 0));
+
+        runDue(runs + 1);
+        subject.load();
+        subject.tick();
+        Thread.sleep(200);
+
+        assertThat(accountService.getAccountDTOByLastName("Geoghan").getBalance(), comparesEqualTo(BigDecimal.TEN));
+        assertThat(subject.getRunCount(), is(runs + 1));
+        assertThat(subject.getScheduledTransfers("Scott").isEmpty(), is(true));
+    }
+
+    @Test
+    public void load_standingOrder_catchesUpMissedRuns() throws Exception {
+        long runs = subject.getRunCount();
+        // Missed the runs of three days ago, two days ago and yesterday; the next one is tomorrow
+        subject.schedule(transfer(Instant.now().minus(Duration.ofDays(3)).plusSeconds(60), 1));
+
+        runDue(runs + 3);
+
+        assertThat(accountService.getAccountDTOByLastName("Geoghan").getBalance(),
+                comparesEqualTo(BigDecimal.valueOf(30)));
+        List<ScheduledTransferDTO> scheduled = subject.getScheduledTransfers("Scott");
+        assertThat(scheduled.size(), is(1));
+        assertThat(scheduled.get(0).getNextRunAt().isAfter(Instant.now()), is(true));
+        assertThat(scheduled.get(0).getTo(), is("Geoghan"));
+    }
+
+    @Test
+    public void cancel_stopsFutureRuns() throws Exception {
+        long runs = subject.getRunCount();
+        ScheduledTransferDTO scheduled = subject.schedule(transfer(Instant.now().minusSeconds(5), 1));
+
+        subject.cancel(scheduled.getId());
+        subject.load();
+        subject.tick();
+        Thread.sleep(200);
+
+        assertThat(subject.getRunCount(), is(runs));
+        assertThat(accountService.getAccountDTOByLastName("Geoghan").getBalance(), comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void transfer_postingFails_claimRolledBackWithIt() {
+        ScheduledTransferDTO scheduled = subject.schedule(transfer(Instant.now().minusSeconds(5), 1));
+        ScheduledTransfer before = scheduledTransferRepository.findById(scheduled.getId()).get();
+        int from = accountService.getAccountId("Scott");
+        int to = accountService.getAccountId("Geoghan");
+
+        assertThrows(InsufficientFundsException.class, () -> accountService.transfer(from, to,
+                BigDecimal.valueOf(2000), () -> scheduledTransferRepository.claim(before.getId(),
+                        before.getNextRunAt(), before.nextRunAfter(before.getNextRunAt()), true) == 1));
+
+        ScheduledTransfer after = scheduledTransferRepository.findById(scheduled.getId()).get();
+        assertThat(after.getNextRunAt(), is(before.getNextRunAt()));
+        assertThat(after.getRunCount(), is(before.getRunCount()));
+    }
+
+    @Test
+    public void tick_transferFails_runClaimedWithFailureRecorded() throws Exception {
+        ScheduledTransferDTO scheduled = subject.schedule(transfer(Instant.now().minusSeconds(5), 0)
+                .amount(BigDecimal.valueOf(2000)));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subject.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            subject.tick();
+            Thread.sleep(20);
+        }
+
+        ScheduledTransfer after = scheduledTransferRepository.findById(scheduled.getId()).get();
+        assertThat(after.isActive(), is(false));
+        assertThat(after.getFailureCount(), is(1));
+        assertThat(accountService.getAccountDTOByLastName("Geoghan").getBalance(), comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    private ScheduledTransferDTO transfer(Instant firstRunAt, int intervalDays) {
+        return new ScheduledTransferDTO()
+                .from("Scott")
+                .to("Geoghan")
+                .amount(BigDecimal.TEN)
+                .nextRunAt(firstRunAt)
+                .intervalDays(intervalDays);
+    }
+
+    private void runDue(long expectedRuns) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subject.getRunCount() < expectedRuns && System.currentTimeMillis() < deadline) {
+            subject.load();
+            subject.tick();
+            Thread.sleep(20);
+        }
+    }
+}
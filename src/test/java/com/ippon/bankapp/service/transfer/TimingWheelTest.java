@@ -0,0 +1,85 @@
+package com.ippon.bankapp.service.transfer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimingWheelTest {
+
+    @Test
+    public void advance_returnsIdsOnceDue() {
+        TimingWheel subject = new TimingWheel(10, 8, 1000);
+        subject.add(1, 1025);
+        subject.add(2, 1045);
+
+        assertThat(subject.advance(1019), is(Collections.<Integer>emptyList()));
+        assertThat(subject.advance(1030), is(Collections.singletonList(1)));
+        assertThat(subject.advance(1050), is(Collections.singletonList(2)));
+        assertThat(subject.size(), is(0));
+    }
+
+    @Test
+    public void advance_withinTick_returnsOnlyIdsDueByNow() {
+        TimingWheel subject = new TimingWheel(10, 8, 1000);
+        subject.add(1, 1002);
+        subject.add(2, 1008);
+
+        assertThat(subject.advance(1005), is(Collections.singletonList(1)));
+        assertThat(subject.advance(1007), is(Collections.<Integer>emptyList()));
+        assertThat(subject.advance(1008), is(Collections.singletonList(2)));
+    }
+
+    @Test
+    public void add_overdue_isReturnedByNextAdvance() {
+        TimingWheel subject = new TimingWheel(10, 8, 1000);
+        subject.add(1, 500);
+
+        assertThat(subject.advance(1000), is(Collections.singletonList(1)));
+    }
+
+    @Test
+    public void advance_cascadesFromHigherLevels() {
+        TimingWheel subject = new TimingWheel(10, 4, 0);
+        // Level 0 spans 40ms, level 1 160ms, level 2 640ms
+        subject.add(1, 35);
+        subject.add(2, 150);
+        subject.add(3, 600);
+        subject.add(4, 5000);
+
+        List<Integer> fired = new ArrayList<>();
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 0; now <= 5000; now += 10) {
+            for (Integer id : subject.advance(now)) {
+                fired.add(id);
+                firedAt.add(now);
+            }
+        }
+
+        assertThat(fired, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(firedAt, is(Arrays.asList(40L, 150L, 600L, 5000L)));
+    }
+
+    @Test
+    public void advance_largeJump_returnsEverythingDue() {
+        TimingWheel subject = new TimingWheel(1, 16, 0);
+        for (int id = 0; id < 1000; id++) {
+            subject.add(id, id * 7L);
+        }
+
+        assertThat(subject.advance(3500).size(), is(501));
+        assertThat(subject.advance(7000).size(), is(499));
+        assertThat(subject.size(), is(0));
+    }
+
+    @Test
+    public void constructor_rejectsInvalidTick() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, 8, 0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ippon.bankapp.service.warmup;
+
+import com.ippon.bankapp.repository.AccountMonthlyStatsRepository;
+import com.ippon.bankapp.repository.AccountRepository;
+import com.ippon.bankapp.repository.BalanceCheckpointRepository;
+import com.ippon.bankapp.repository.JournalEntryRepository;
+import com.ippon.bankapp.repository.OutboxNotificationRepository;
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(properties = {
+        "bankapp.notification.relay.poll-interval-ms=3600000",
+        "bankapp.warm-up.enabled=false"
+})
+public class AccountWarmUpIntegrationTest {
+
+    @Autowired
+    private AccountWarmUp subject;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private BalanceCheckpointRepository balanceCheckpointRepository;
+
+    @Autowired
+    private AccountMonthlyStatsRepository accountMonthlyStatsRepository;
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @AfterEach
+    public void tearDown() {
+        balanceCheckpointRepository.deleteAll();
+        accountMonthlyStatsRepository.deleteAll();
+        transactionRepository.deleteAll();
+        journalEntryRepository.deleteAll();
+        outboxNotificationRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void warmUp_preloadsMostActiveAccounts() {
+        int quiet = accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Scott")).getId();
+        int busy = accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Smith")).getId();
+        accountService.createAccount(new AccountDTO().firstName("Ben").lastName("Geoghan"));
+        accountService.deposit(quiet, BigDecimal.TEN);
+        for (int i = 0; i < 3; i++) {
+            accountService.deposit(busy, BigDecimal.TEN);
+        }
+
+        assertThat(transactionRepository.findMostActiveAccountIds(LocalDate.now().minusDays(7), PageRequest.of(0, 10)),
+                contains(busy, quiet));
+
+        subject.warmUp();
+
+        assertThat(subject.health().getStatus(), is(Status.UP));
+        assertThat(subject.health().getDetails().get("accounts"), is(2));
+    }
+}
@@ -0,0 +1,102 @@
+package com.ippon.bankapp.service.warmup;
+
+import com.ippon.bankapp.repository.TransactionRepository;
+import com.ippon.bankapp.service.AccountService;
+import com.ippon.bankapp.service.audit.AuditLog;
+import com.ippon.bankapp.service.dto.AccountDTO;
+import com.ippon.bankapp.service.exception.AccountNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountWarmUpTest {
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AuditLog auditLog;
+
+    private AccountWarmUp subject;
+
+    @BeforeEach
+    public void before() {
+        meterRegistry = new SimpleMeterRegistry();
+        auditLog = new AuditLog(meterRegistry, false, "target/audit-test", 16, 16, 1024, 100);
+        subject = new AccountWarmUp(accountService, transactionRepository, auditLog, meterRegistry, true, 10, 7, 3,
+                60_000);
+    }
+
+    @Test
+    public void warmUp_readsMostActiveAccounts_thenReportsReady() {
+        given(transactionRepository.findMostActiveAccountIds(LocalDate.now().minusDays(7), PageRequest.of(0, 10)))
+                .willReturn(Arrays.asList(4, 9));
+        given(accountService.getAccountDTO(4)).willReturn(new AccountDTO().firstName("Ben").lastName("Scott"));
+        given(accountService.getAccountDTO(9)).willThrow(new AccountNotFoundException());
+
+        assertThat(subject.health().getStatus(), is(Status.OUT_OF_SERVICE));
+
+        subject.warmUp();
+
+        verify(accountService, times(3)).getAccountDTOByLastName("Scott");
+        verify(accountService, times(3)).getAccountVersion(4);
+        verify(accountService, times(3)).getLatestTenTransaction(4);
+        assertThat(subject.health().getStatus(), is(Status.UP));
+        assertThat(subject.health().getDetails().get("accounts"), is(1));
+        assertThat(meterRegistry.timer("bankapp.warm-up.duration").count(), is(1L));
+    }
+
+    @Test
+    public void warmUp_failure_stillReportsReady() {
+        given(transactionRepository.findMostActiveAccountIds(LocalDate.now().minusDays(7), PageRequest.of(0, 10)))
+                .willThrow(new IllegalStateException("database down"));
+
+        subject.warmUp();
+
+        assertThat(subject.health().getStatus(), is(Status.UP));
+    }
+
+    @Test
+    public void warmUp_outOfTime_stopsReading_thenReportsReady() {
+        subject = new AccountWarmUp(accountService, transactionRepository, auditLog, meterRegistry, true, 10, 7, 3, 0);
+        given(transactionRepository.findMostActiveAccountIds(LocalDate.now().minusDays(7), PageRequest.of(0, 10)))
+                .willReturn(Arrays.asList(4, 9));
+
+        subject.warmUp();
+
+        verify(accountService, never()).getAccountDTO(anyInt());
+        assertThat(subject.health().getStatus(), is(Status.UP));
+        assertThat(subject.health().getDetails().get("accounts"), is(0));
+    }
+
+    @Test
+    public void start_disabled_reportsReadyAtOnce() {
+        subject = new AccountWarmUp(accountService, transactionRepository, auditLog, meterRegistry, false, 10, 7, 3,
+                60_000);
+
+        subject.start();
+
+        assertThat(subject.health().getStatus(), is(Status.UP));
+    }
+}
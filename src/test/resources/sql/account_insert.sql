@@ -1,7 +1,7 @@
-INSERT INTO ACCOUNT (ID, FIRST_NAME, LAST_NAME, BALANCE, NOTIFICATION_PREFERENCE)
-VALUES      (-10,'Ben','Scott', 145.32, 'email'),
-            (-11,'Erin','Geoghan', 1405.32, 'sms'),
-            (-12,'Hayley','Ortega', 1452.32, 'email'),
-            (-13,'Jane','Doe', 45.32, 'sms'),
-            (-14,'Katie','Smith', 5.32, 'email'),
-            (-15,'Julie','Bayern', 0.02, 'sms');
+INSERT INTO ACCOUNT (ID, FIRST_NAME, LAST_NAME, BALANCE, NOTIFICATION_PREFERENCE, VERSION, BALANCE_SLOTS)
+VALUES      (-10,'Ben','Scott', 145.32, 'email', 0, 0),
+            (-11,'Erin','Geoghan', 1405.32, 'sms', 0, 0),
+            (-12,'Hayley','Ortega', 1452.32, 'email', 0, 0),
+            (-13,'Jane','Doe', 45.32, 'sms', 0, 0),
+            (-14,'Katie','Smith', 5.32, 'email', 0, 0),
+            (-15,'Julie','Bayern', 0.02, 'sms', 0, 0);